@@ -0,0 +1,55 @@
+package com.project.URL.Shortener.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Invalidation cross-nœuds du cache local via Redis pub/sub
+ *
+ * Flow :
+ * 1. updateUrl / deleteUrl → publish(shortCode) sur le channel
+ * 2. Chaque instance (y compris l'émetteur) reçoit le message → evict du cache L1
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    private final StringRedisTemplate pubSubRedisTemplate;
+    private final LocalUrlCache localUrlCache;
+    private final String channel;
+
+    public CacheInvalidationBus(@Qualifier("pubSubRedisTemplate") StringRedisTemplate pubSubRedisTemplate,
+                                LocalUrlCache localUrlCache,
+                                @Value("${cache.local.invalidation-channel:url:invalidate}") String channel) {
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.localUrlCache = localUrlCache;
+        this.channel = channel;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void publish(String shortCode) {
+        try {
+            pubSubRedisTemplate.convertAndSend(channel, shortCode);
+        } catch (Exception e) {
+            // Pas bloquant : l'entrée locale des autres nœuds expirera avec son TTL
+            log.error("❌ Cache invalidation publish failed for {}: {}", shortCode, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String shortCode = new String(message.getBody(), StandardCharsets.UTF_8);
+        localUrlCache.invalidate(shortCode);
+        log.debug("🧹 Local cache INVALIDATED: {}", shortCode);
+    }
+}
@@ -0,0 +1,36 @@
+package com.project.URL.Shortener.cache;
+
+import com.project.URL.Shortener.entity.Url;
+
+/**
+ * Valeur en cache pour un redirect : read-only, uniquement ce dont le hot path a besoin
+ *
+ * ≠ entité JPA Url (id, clickCount, createdAt inutiles pour rediriger)
+ *
+ * expiresAtMillis / recomputeMillis : métadonnées de fraîcheur pour le refresh anticipé (XFetch, cf. CacheRefresher)
+ * → 0 = inconnues (entrée v1 / JSON, ou pas encore écrite dans Redis) : jamais de refresh anticipé
+ */
+public record CachedRedirect(String originalUrl, long expiresAtMillis, int recomputeMillis) {
+
+    public CachedRedirect(String originalUrl) {
+        this(originalUrl, 0, 0);
+    }
+
+    public static CachedRedirect from(Url url) {
+        return new CachedRedirect(url.getOriginalUrl());
+    }
+
+    /**
+     * Même redirect, avec l'échéance de l'entrée Redis qui va le porter
+     */
+    public CachedRedirect withExpiresAt(long expiresAtMillis) {
+        return new CachedRedirect(originalUrl, expiresAtMillis, recomputeMillis);
+    }
+
+    /**
+     * Même redirect, avec le temps mesuré pour le recharger depuis la DB
+     */
+    public CachedRedirect withRecomputeMillis(long recomputeMillis) {
+        return new CachedRedirect(originalUrl, expiresAtMillis, (int) Math.min(Integer.MAX_VALUE, recomputeMillis));
+    }
+}
@@ -0,0 +1,56 @@
+package com.project.URL.Shortener.cache;
+
+/**
+ * Hash 64 bits non cryptographique, sans allocation
+ *
+ * Travaille directement sur les chars de la String (pas de getBytes),
+ * finalisation "fmix64" de MurmurHash3 pour une bonne avalanche.
+ */
+public final class FastHash {
+
+    private static final long C1 = 0x9E3779B97F4A7C15L;
+    private static final long C2 = 0xBF58476D1CE4E5B9L;
+
+    private FastHash() {
+    }
+
+    public static long hash64(CharSequence key) {
+        return hash64(key, 0);
+    }
+
+    public static long hash64(CharSequence key, long seed) {
+        int length = key.length();
+        long hash = seed ^ (length * C1);
+        int i = 0;
+        // 4 chars (64 bits) par tour
+        for (; i + 4 <= length; i += 4) {
+            long block = key.charAt(i)
+                    | ((long) key.charAt(i + 1) << 16)
+                    | ((long) key.charAt(i + 2) << 32)
+                    | ((long) key.charAt(i + 3) << 48);
+            hash ^= mix(block);
+            hash = Long.rotateLeft(hash, 27) * C1 + 0x52DCE729;
+        }
+        long tail = 0;
+        for (int shift = 0; i < length; i++, shift += 16) {
+            tail |= (long) key.charAt(i) << shift;
+        }
+        hash ^= mix(tail);
+        return fmix64(hash);
+    }
+
+    private static long mix(long block) {
+        block *= C2;
+        block = Long.rotateLeft(block, 31);
+        return block * C1;
+    }
+
+    private static long fmix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
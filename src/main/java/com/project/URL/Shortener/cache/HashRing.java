@@ -0,0 +1,179 @@
+package com.project.URL.Shortener.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Ring de consistent hashing immuable, en tableaux primitifs
+ *
+ * ❌ Avant : TreeMap<Long, RedisTemplate> + MD5 (MessageDigest.getInstance + getBytes) à chaque lookup
+ * ✅ Après : long[] trié + int[] parallèle (index du shard), hash 64 bits sans allocation,
+ *    binary search → aucun objet créé par lookup
+ *
+ * Immuable : un changement de topologie = un nouveau ring (swap atomique côté appelant)
+ */
+public final class HashRing {
+
+    public enum Algorithm {
+        FAST, // FastHash : 64 bits non cryptographique, sans allocation
+        MD5   // placement historique (8 premiers octets du MD5), pour comparer / migrer
+    }
+
+    // Placement d'origine : "shard-i#j", 150 virtual nodes, MD5
+    private static final int LEGACY_VIRTUAL_NODES = 150;
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    });
+
+    private final Algorithm algorithm;
+    private final long[] points;   // positions des virtual nodes, triées
+    private final int[] owners;    // owners[i] = index du shard propriétaire de points[i]
+    private final int nodeCount;
+
+    public HashRing(List<String> nodeNames, int virtualNodes, Algorithm algorithm) {
+        if (nodeNames.isEmpty()) {
+            throw new IllegalStateException("No shards available");
+        }
+        this.algorithm = algorithm;
+        this.nodeCount = nodeNames.size();
+
+        // Construction (hors hot path) : trier les paires (hash, owner)
+        long[][] entries = new long[nodeNames.size() * virtualNodes][];
+        int n = 0;
+        for (int node = 0; node < nodeNames.size(); node++) {
+            for (int j = 0; j < virtualNodes; j++) {
+                entries[n++] = new long[]{hash(nodeNames.get(node) + "#" + j), node};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        // Collision de hash entre 2 virtual nodes → garder le dernier (comme TreeMap.put)
+        long[] sortedPoints = new long[entries.length];
+        int[] sortedOwners = new int[entries.length];
+        int size = 0;
+        for (long[] entry : entries) {
+            if (size > 0 && sortedPoints[size - 1] == entry[0]) {
+                sortedOwners[size - 1] = (int) entry[1];
+                continue;
+            }
+            sortedPoints[size] = entry[0];
+            sortedOwners[size] = (int) entry[1];
+            size++;
+        }
+        this.points = Arrays.copyOf(sortedPoints, size);
+        this.owners = Arrays.copyOf(sortedOwners, size);
+    }
+
+    /**
+     * Ring identique à l'ancien RedisShardManager (TreeMap + MD5) : mêmes clés sur les mêmes shards
+     */
+    public static HashRing legacy(int shardCount) {
+        List<String> names = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            names.add("shard-" + i);
+        }
+        return new HashRing(names, LEGACY_VIRTUAL_NODES, Algorithm.MD5);
+    }
+
+    /**
+     * Index du shard propriétaire : premier virtual node >= hash (clockwise), wrap around sinon
+     */
+    public int ownerIndex(String key) {
+        return owners[position(hash(key))];
+    }
+
+    /**
+     * Premier propriétaire disponible en partant de la position de la clé (clockwise) :
+     * si le shard propriétaire est indisponible, la clé va sur le nœud suivant du ring
+     *
+     * @return -1 si aucun shard n'est disponible
+     */
+    public int ownerIndex(String key, IntPredicate available) {
+        int start = position(hash(key));
+        long tried = 0; // bitmask des shards déjà refusés (≤ 64 shards), sinon tour complet
+        for (int step = 0; step < points.length; step++) {
+            int owner = owners[(start + step) % points.length];
+            if (owner < 64) {
+                long bit = 1L << owner;
+                if ((tried & bit) != 0) {
+                    continue;
+                }
+                tried |= bit;
+            }
+            if (available.test(owner)) {
+                return owner;
+            }
+            if (nodeCount <= 64 && Long.bitCount(tried) == nodeCount) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Propriétaire puis ses successeurs distincts sur le ring (clockwise) : réplicas d'une clé chaude
+     * Même ordre sur tous les nœuds → une écriture et une lecture choisissent les mêmes shards
+     *
+     * @return au plus min(count, nombre de shards) index, le propriétaire en premier
+     */
+    public int[] ownerIndexes(String key, int count) {
+        int wanted = Math.min(count, nodeCount);
+        int[] result = new int[wanted];
+        int found = 0;
+        int start = position(hash(key));
+        for (int step = 0; step < points.length && found < wanted; step++) {
+            int owner = owners[(start + step) % points.length];
+            boolean seen = false;
+            for (int i = 0; i < found && !seen; i++) {
+                seen = result[i] == owner;
+            }
+            if (!seen) {
+                result[found++] = owner;
+            }
+        }
+        return found == wanted ? result : Arrays.copyOf(result, found);
+    }
+
+    public long hash(String key) {
+        return algorithm == Algorithm.FAST ? FastHash.hash64(key) : md5(key);
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getVirtualNodeCount() {
+        return points.length;
+    }
+
+    private int position(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+
+    private static long md5(String key) {
+        byte[] digest = MD5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,264 @@
+package com.project.URL.Shortener.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Détection des codes "hot" sur le redirect + réplication sur plusieurs shards
+ *
+ * Pourquoi ?
+ * ❌ Consistent hashing : tout le trafic d'un code viral tombe sur 1 seul shard Redis
+ * ✅ Code détecté hot → copié sur K shards (propriétaire + successeurs du ring),
+ *    chaque lecture choisit un réplica au hasard → charge du code divisée par K
+ *
+ * Détection (mémoire fixe) :
+ * 1. record() échantillonne 1 redirect sur sample-every, tryLock : jamais d'attente sur le hot path
+ *    (échantillon tiré mais lock pris → perdu, compté dans skippedSamples)
+ * 2. SpaceSavingSketch (capacity compteurs) sur la fenêtre courante
+ * 3. Fin de fenêtre : débit = compte × (échantillons tirés / échantillons enregistrés) × sample-every
+ *    ❌ × sample-every seul : sous contention, les échantillons perdus font sous-estimer le débit
+ *    ✅ Facteur recalculé par fenêtre avec les échantillons réellement enregistrés
+ *    hot si la borne basse du débit ≥ threshold-per-second
+ *    (reste hot tant qu'il dépasse threshold / 2 : pas de clignotement à la limite)
+ * 4. Nouveau code hot → valeur du propriétaire poussée sur les réplicas (TTL court)
+ *
+ * ⚠️ Cohérence : une invalidation supprime la clé sur les K shards, hot ou non (le code a pu refroidir).
+ *    Réplica manquant ou expiré → lu chez le propriétaire puis recopié (read-repair).
+ *    Copie orpheline (changement de topologie) : au pire jusqu'à replica-ttl-seconds.
+ */
+@Component
+@Slf4j
+public class HotKeyTracker {
+
+    public record HotKey(String code, double ratePerSecond, double guaranteedRatePerSecond, long hotSince) {
+    }
+
+    private final RedisShardManager shardManager;
+    private final boolean enabled;
+    private final int sampleEvery;
+    private final double thresholdPerSecond;
+    private final int replicaCount;
+    private final long replicaTtlSeconds;
+
+    private final SpaceSavingSketch sketch;
+    private final ReentrantLock sketchLock = new ReentrantLock();
+    private long windowStartedAt = System.currentTimeMillis();
+
+    // Snapshot immuable, remplacé à chaque fin de fenêtre
+    private volatile Map<String, HotKey> hotKeys = Map.of();
+
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder skippedSamples = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+    private volatile long lastWindowSamples;
+    private volatile long lastWindowSkippedSamples;
+    private volatile double lastWindowScale;
+    private long skippedAtWindowStart; // lu / écrit par rotateWindow uniquement (sous sketchLock)
+
+    public HotKeyTracker(RedisShardManager shardManager,
+                         @Value("${hotkeys.enabled:true}") boolean enabled,
+                         @Value("${hotkeys.capacity:256}") int capacity,
+                         @Value("${hotkeys.sample-every:8}") int sampleEvery,
+                         @Value("${hotkeys.threshold-per-second:500}") double thresholdPerSecond,
+                         @Value("${hotkeys.replicas:3}") int replicaCount,
+                         @Value("${hotkeys.replica-ttl-seconds:300}") long replicaTtlSeconds) {
+        this.shardManager = shardManager;
+        this.enabled = enabled;
+        this.sketch = new SpaceSavingSketch(capacity);
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.thresholdPerSecond = thresholdPerSecond;
+        this.replicaCount = Math.max(1, replicaCount);
+        this.replicaTtlSeconds = replicaTtlSeconds;
+    }
+
+    /**
+     * Hot path : 1 tirage aléatoire, et pour 1 appel sur sample-every un tryLock + incrément
+     */
+    public void record(String code) {
+        if (!enabled || ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return;
+        }
+        if (!sketchLock.tryLock()) {
+            skippedSamples.increment(); // un autre thread met à jour le sketch : échantillon perdu
+            return;
+        }
+        try {
+            sketch.offer(code);
+        } finally {
+            sketchLock.unlock();
+        }
+        samples.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${hotkeys.window-ms:10000}")
+    public void rotateWindow() {
+        if (!enabled) {
+            return;
+        }
+        List<SpaceSavingSketch.Entry> entries;
+        long elapsedMs;
+        long recorded;
+        long skipped;
+        sketchLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            elapsedMs = Math.max(1, now - windowStartedAt);
+            windowStartedAt = now;
+            recorded = sketch.getTotal();
+            long skippedTotal = skippedSamples.sum();
+            skipped = skippedTotal - skippedAtWindowStart;
+            skippedAtWindowStart = skippedTotal;
+            entries = sketch.drain();
+        } finally {
+            sketchLock.unlock();
+        }
+        // Échantillons perdus répartis comme les enregistrés → chaque compte représente drawn / recorded tirages
+        double scale = recorded == 0 ? sampleEvery : (double) sampleEvery * (recorded + skipped) / recorded;
+        lastWindowSamples = recorded;
+        lastWindowSkippedSamples = skipped;
+        lastWindowScale = scale;
+
+        Map<String, HotKey> previous = hotKeys;
+        Map<String, HotKey> next = new LinkedHashMap<>();
+        double seconds = elapsedMs / 1000.0;
+        for (SpaceSavingSketch.Entry entry : entries) {
+            double rate = entry.count() * scale / seconds;
+            double guaranteed = entry.guaranteed() * scale / seconds;
+            HotKey wasHot = previous.get(entry.key());
+            if (guaranteed >= thresholdPerSecond || (wasHot != null && guaranteed >= thresholdPerSecond / 2)) {
+                long since = wasHot != null ? wasHot.hotSince() : System.currentTimeMillis();
+                next.put(entry.key(), new HotKey(entry.key(), rate, guaranteed, since));
+            }
+        }
+        hotKeys = next;
+
+        for (String code : next.keySet()) {
+            if (!previous.containsKey(code)) {
+                log.info("🔥 Hot key detected: {} (~{}/s), replicating on {} shards",
+                        code, Math.round(next.get(code).ratePerSecond()), replicaCount);
+                replicate(code);
+            }
+        }
+        previous.keySet().stream()
+                .filter(code -> !next.containsKey(code))
+                .forEach(code -> log.info("🧊 Hot key cooled down: {}", code));
+    }
+
+    /**
+     * Copie la valeur du propriétaire sur les autres réplicas (sans écraser une copie existante)
+     */
+    private void replicate(String code) {
+        List<RedisShard> replicas = shardManager.replicas(code, replicaCount);
+        RedisShard owner = replicas.get(0);
+        if (replicas.size() < 2 || !owner.isAvailable()) {
+            return;
+        }
+        try {
+            CachedRedirect redirect = owner.execute(template -> template.opsForValue().get(code));
+            if (redirect == null) {
+                return; // pas encore en cache : les réplicas se rempliront par read-repair
+            }
+            for (RedisShard replica : replicas.subList(1, replicas.size())) {
+                repair(replica, code, redirect);
+            }
+        } catch (Exception e) {
+            log.error("❌ Hot key replication failed for {}: {}", code, e.getMessage());
+        }
+    }
+
+    /**
+     * Shard de lecture d'un code hot : un réplica disponible au hasard
+     *
+     * @return null si le code n'est pas hot (routage normal)
+     */
+    public RedisShard readReplica(String code) {
+        if (!hotKeys.containsKey(code)) {
+            return null;
+        }
+        List<RedisShard> replicas = shardManager.replicas(code, replicaCount);
+        int start = ThreadLocalRandom.current().nextInt(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            RedisShard replica = replicas.get((start + i) % replicas.size());
+            if (replica.isAvailable()) {
+                replicaReads.increment();
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tous les shards pouvant porter une copie (invalidation), hot ou non
+     */
+    public List<RedisShard> replicaShards(String code) {
+        return replicaCount > 1 ? shardManager.replicas(code, replicaCount) : List.of();
+    }
+
+    /**
+     * Read-repair d'un réplica (TTL court, sans écraser une copie plus récente)
+     */
+    public void repair(RedisShard replica, String code, CachedRedirect redirect) {
+        if (replica == shardManager.owner(code) || !replica.isAvailable()) {
+            return;
+        }
+        // La copie ne survit pas à l'entrée du propriétaire : son échéance (refresh anticipé) resterait dépassée
+        long ttlSeconds = replicaTtlSeconds;
+        if (redirect.expiresAtMillis() > 0) {
+            ttlSeconds = Math.min(ttlSeconds, (redirect.expiresAtMillis() - System.currentTimeMillis()) / 1000);
+            if (ttlSeconds <= 0) {
+                return;
+            }
+        }
+        long ttl = ttlSeconds;
+        try {
+            replica.execute(template -> template.opsForValue()
+                    .setIfAbsent(code, redirect, ttl, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            log.error("❌ Hot key replica write failed for {} on {}: {}", code, replica.getName(), e.getMessage());
+        }
+    }
+
+    public List<Map<String, Object>> getHotKeys() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (HotKey hotKey : hotKeys.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("code", hotKey.code());
+            entry.put("ratePerSecond", Math.round(hotKey.ratePerSecond()));
+            entry.put("guaranteedRatePerSecond", Math.round(hotKey.guaranteedRatePerSecond()));
+            entry.put("hotSince", hotKey.hotSince());
+            entry.put("replicas", shardManager.replicas(hotKey.code(), replicaCount).stream()
+                    .map(RedisShard::getName).toList());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hotKeys", getHotKeys());
+        stats.put("thresholdPerSecond", thresholdPerSecond);
+        stats.put("sampleEvery", sampleEvery);
+        stats.put("sketchCapacity", sketch.capacity());
+        stats.put("replicas", replicaCount);
+        stats.put("samples", samples.sum());
+        stats.put("skippedSamples", skippedSamples.sum());
+        stats.put("lastWindowSamples", lastWindowSamples);
+        stats.put("lastWindowSkippedSamples", lastWindowSkippedSamples);
+        // Redirects estimés sur la dernière fenêtre (échantillons enregistrés × facteur corrigé)
+        stats.put("lastWindowEstimatedRequests", Math.round(lastWindowSamples * lastWindowScale));
+        stats.put("replicaReads", replicaReads.sum());
+        return stats;
+    }
+}
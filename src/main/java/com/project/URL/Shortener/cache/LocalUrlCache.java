@@ -0,0 +1,136 @@
+package com.project.URL.Shortener.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache local (L1) dans la JVM, devant les shards Redis
+ *
+ * Pourquoi ?
+ * ✅ Quelques codes "hot" prennent la majorité du trafic (cf. test3.js)
+ * ✅ Un hit L1 évite un aller-retour réseau vers Redis
+ *
+ * Eviction : W-TinyLFU (Caffeine) → tient compte de la fréquence, pas seulement de l'ordre d'accès.
+ * Taille bornée en nombre d'entrées OU en octets (estimation), TTL par entrée.
+ *
+ * ⚠️ Cohérence : un update/delete est propagé à tous les nœuds via Redis pub/sub
+ *    (cf. CacheInvalidationBus). Si un message est perdu, l'entrée reste au pire jusqu'à son TTL.
+ */
+@Component
+public class LocalUrlCache {
+
+    // Overhead approximatif d'une entrée (CachedRedirect + Strings + noeud Caffeine)
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final boolean enabled;
+    private final Duration defaultTtl;
+    private final Cache<String, CachedRedirect> cache;
+    private final LongAdder invalidations = new LongAdder();
+
+    public LocalUrlCache(@Value("${cache.local.enabled:true}") boolean enabled,
+                         @Value("${cache.local.max-entries:100000}") long maxEntries,
+                         @Value("${cache.local.max-bytes:0}") long maxBytes,
+                         @Value("${cache.local.ttl-seconds:60}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.defaultTtl = Duration.ofSeconds(ttlSeconds);
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+
+        // Caffeine : maximumSize et maximumWeight sont exclusifs → max-bytes prend le dessus s'il est défini
+        if (maxBytes > 0) {
+            builder.maximumWeight(maxBytes)
+                    .weigher((Object code, Object url) -> estimateBytes((String) code, (CachedRedirect) url));
+        } else {
+            builder.maximumSize(maxEntries);
+        }
+
+        this.cache = builder
+                .expireAfter(new Expiry<String, CachedRedirect>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedRedirect value, long currentTime) {
+                        return defaultTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedRedirect value, long currentTime, long currentDuration) {
+                        return defaultTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedRedirect value, long currentTime, long currentDuration) {
+                        return currentDuration; // une lecture ne prolonge pas l'entrée
+                    }
+                })
+                .build();
+    }
+
+    public CachedRedirect get(String shortCode) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.getIfPresent(shortCode);
+    }
+
+    public void put(String shortCode, CachedRedirect url) {
+        if (enabled) {
+            cache.put(shortCode, url);
+        }
+    }
+
+    /**
+     * Put avec un TTL spécifique (ex : ne pas survivre plus longtemps que l'entrée Redis)
+     */
+    public void put(String shortCode, CachedRedirect url, Duration ttl) {
+        if (!enabled) {
+            return;
+        }
+        cache.policy().expireVariably()
+                .ifPresentOrElse(
+                        policy -> policy.put(shortCode, url, ttl.compareTo(defaultTtl) < 0 ? ttl : defaultTtl),
+                        () -> cache.put(shortCode, url));
+    }
+
+    public void invalidate(String shortCode) {
+        cache.invalidate(shortCode);
+        invalidations.increment();
+    }
+
+    /**
+     * Stats pour dimensionner le cache (hits / misses / evictions)
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("size", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction -> {
+            result.put("maximum", eviction.getMaximum());
+            eviction.weightedSize().ifPresent(weight -> result.put("weightedSizeBytes", weight));
+        });
+        result.put("ttlSeconds", defaultTtl.toSeconds());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictionWeight", stats.evictionWeight());
+        result.put("invalidations", invalidations.sum());
+        return result;
+    }
+
+    private static int estimateBytes(String shortCode, CachedRedirect url) {
+        int chars = shortCode.length();
+        if (url.originalUrl() != null) {
+            chars += url.originalUrl().length();
+        }
+        return ENTRY_OVERHEAD_BYTES + chars * 2;
+    }
+}
@@ -0,0 +1,170 @@
+package com.project.URL.Shortener.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Format binaire compact et versionné pour les entrées de cache
+ *
+ * Layout v1 : [version = 0x01][longueur URL : varint][URL : UTF-8]
+ * → ~2 octets d'overhead au lieu d'un JSON complet de l'entité (id, clickCount, createdAt...)
+ * → décodage = 1 new String(), pas de Jackson réflexif
+ *
+ * Layout v2 : v1 + [expiresAt : 8 octets, epoch ms][temps de recalcul : varint, ms]
+ * → métadonnées du refresh anticipé (XFetch) sans commande PTTL en plus. Écrit seulement si
+ *   l'entrée en porte (expiresAt > 0), sinon v1.
+ *
+ * Migration : le 1er octet d'un JSON est toujours '{' (jamais un numéro de version)
+ * → les anciennes entrées JSON restent lisibles pendant le rollout.
+ * write-format=json (ou binary-v1) permet de continuer à écrire l'ancien format tant que
+ * d'anciens nœuds tournent encore : une version inconnue est lue comme un miss.
+ */
+public class RedirectCodec implements RedisSerializer<CachedRedirect> {
+
+    public static final byte VERSION_1 = 0x01;
+    public static final byte VERSION_2 = 0x02;
+    private static final byte JSON_START = '{';
+
+    public enum WriteFormat {
+        JSON, BINARY_V1, BINARY;
+
+        /**
+         * cache.codec.write-format : binary | binary-v1 | json
+         */
+        public static WriteFormat parse(String value) {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final WriteFormat writeFormat;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public RedirectCodec(boolean writeJson) {
+        this(writeJson ? WriteFormat.JSON : WriteFormat.BINARY);
+    }
+
+    public RedirectCodec(WriteFormat writeFormat) {
+        this.writeFormat = writeFormat;
+    }
+
+    @Override
+    public byte[] serialize(CachedRedirect value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (writeFormat == WriteFormat.JSON) {
+            return serializeLegacyJson(value);
+        }
+
+        boolean v2 = writeFormat == WriteFormat.BINARY && value.expiresAtMillis() > 0;
+        byte[] url = value.originalUrl().getBytes(StandardCharsets.UTF_8);
+        int size = 1 + varIntSize(url.length) + url.length;
+        if (v2) {
+            size += Long.BYTES + varIntSize(value.recomputeMillis());
+        }
+        byte[] bytes = new byte[size];
+        bytes[0] = v2 ? VERSION_2 : VERSION_1;
+        int position = writeVarInt(bytes, 1, url.length);
+        System.arraycopy(url, 0, bytes, position, url.length);
+        if (v2) {
+            position += url.length;
+            long expiresAt = value.expiresAtMillis();
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[position++] = (byte) (expiresAt >>> shift);
+            }
+            writeVarInt(bytes, position, value.recomputeMillis());
+        }
+        return bytes;
+    }
+
+    @Override
+    public CachedRedirect deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        switch (bytes[0]) {
+            case VERSION_1:
+                return decodeV1(bytes);
+            case VERSION_2:
+                return decodeV2(bytes);
+            case JSON_START:
+                return decodeLegacyJson(bytes);
+            default:
+                // Version inconnue (écrite par un nœud plus récent) → traité comme un cache miss
+                return null;
+        }
+    }
+
+    private static CachedRedirect decodeV1(byte[] bytes) {
+        int length = readVarInt(bytes, 1);
+        int position = 1 + varIntSize(length);
+        return new CachedRedirect(new String(bytes, position, length, StandardCharsets.UTF_8));
+    }
+
+    private static CachedRedirect decodeV2(byte[] bytes) {
+        int length = readVarInt(bytes, 1);
+        int position = 1 + varIntSize(length);
+        String url = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        long expiresAt = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            expiresAt = (expiresAt << 8) | (bytes[position++] & 0xFF);
+        }
+        return new CachedRedirect(url, expiresAt, readVarInt(bytes, position));
+    }
+
+    private CachedRedirect decodeLegacyJson(byte[] bytes) {
+        try {
+            JsonNode node = objectMapper.readTree(bytes);
+            JsonNode originalUrl = node.get("originalUrl");
+            return (originalUrl == null || originalUrl.isNull()) ? null : new CachedRedirect(originalUrl.asText());
+        } catch (IOException e) {
+            throw new SerializationException("Cannot read legacy JSON cache entry", e);
+        }
+    }
+
+    private byte[] serializeLegacyJson(CachedRedirect value) {
+        try {
+            // Même forme que l'entité Url sérialisée par Jackson → lisible par les anciens nœuds
+            return objectMapper.writeValueAsBytes(objectMapper.createObjectNode()
+                    .put("originalUrl", value.originalUrl()));
+        } catch (IOException e) {
+            throw new SerializationException("Cannot write legacy JSON cache entry", e);
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int readVarInt(byte[] bytes, int position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = bytes[position++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,216 @@
+package com.project.URL.Shortener.cache;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.metrics.MicrometerCommandLatencyRecorder;
+import io.lettuce.core.metrics.MicrometerOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.lettuce.core.resource.NettyCustomizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.Channel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Couche de connexion Redis unique : 1 ClientResources partagé par le primary (pub/sub) et tous les shards
+ *
+ * Pourquoi ?
+ * ❌ 1 LettuceConnectionFactory = 1 DefaultClientResources = ses propres event loops + timers
+ *    → N shards = N pools de threads Netty, et chaque commande fait son propre flush (1 syscall write)
+ * ✅ Ici : event loops / computation threads partagés, options de connexion au même endroit
+ *
+ * Options :
+ * - auto-batch : FlushConsolidationHandler sur chaque canal → les commandes envoyées en même temps
+ *   par plusieurs threads de requête partent en 1 seul flush (moins de syscalls, plus de débit,
+ *   au prix d'un tour d'event loop de latence quand le canal est peu chargé)
+ * - réglages par shard : redis.connection.shard.<host>-<port>.<réglage> remplace redis.connection.<réglage>
+ *   (command-timeout-ms, connect-timeout-ms, request-queue-size)
+ *
+ * Métriques (/actuator/prometheus) :
+ * - lettuce.command.completion / firstresponse {command, remote} : histogramme de latence par commande et par shard
+ * - redis.shard.inflight {shard} : commandes (ou pipelines) en attente de réponse
+ *
+ * ⚠️ Pas de pool de connexions : Lettuce multiplexe tous les threads sur 1 connexion par shard
+ *    (commons-pool2 n'est pas dans le classpath, et aucune commande bloquante / MULTI n'en a besoin).
+ *    request-queue-size borne les commandes en attente, REJECT_COMMANDS : shard coupé →
+ *    échec immédiat (le breaker s'ouvre) au lieu d'une file qui grossit
+ */
+@Component
+@Slf4j
+public class RedisConnections {
+
+    private static final String SHARD_PREFIX = "redis.connection.shard.";
+
+    public record Settings(Duration commandTimeout, Duration connectTimeout, int requestQueueSize) {
+    }
+
+    private final Environment environment;
+    private final MeterRegistry registry;
+    private final Settings defaults;
+    private final boolean autoBatch;
+    private final int autoBatchFlushes;
+    private final ClientResources clientResources;
+    private final Map<String, Meter> inFlightGauges = new ConcurrentHashMap<>();
+
+    public RedisConnections(Environment environment,
+                            MeterRegistry registry,
+                            @Value("${redis.command-timeout-ms:500}") long commandTimeoutMs,
+                            @Value("${redis.connection.connect-timeout-ms:1000}") long connectTimeoutMs,
+                            @Value("${redis.connection.request-queue-size:10000}") int requestQueueSize,
+                            @Value("${redis.connection.io-threads:0}") int ioThreads,
+                            @Value("${redis.connection.computation-threads:0}") int computationThreads,
+                            @Value("${redis.connection.auto-batch.enabled:false}") boolean autoBatch,
+                            @Value("${redis.connection.auto-batch.max-pending-flushes:256}") int autoBatchFlushes,
+                            @Value("${redis.connection.latency-histograms:true}") boolean latencyHistograms) {
+        this.environment = environment;
+        this.registry = registry;
+        this.defaults = new Settings(Duration.ofMillis(commandTimeoutMs), Duration.ofMillis(connectTimeoutMs),
+                requestQueueSize);
+        this.autoBatch = autoBatch;
+        this.autoBatchFlushes = autoBatchFlushes;
+
+        DefaultClientResources.Builder builder = DefaultClientResources.builder();
+        // 0 = défaut Lettuce (nombre de cœurs)
+        if (ioThreads > 0) {
+            builder.ioThreadPoolSize(ioThreads);
+        }
+        if (computationThreads > 0) {
+            builder.computationThreadPoolSize(computationThreads);
+        }
+        if (latencyHistograms) {
+            // Tag remote = adresse du shard ; local ignoré (1 série par connexion sinon)
+            builder.commandLatencyRecorder(new MicrometerCommandLatencyRecorder(registry, MicrometerOptions.builder()
+                    .enable()
+                    .histogram(true)
+                    .localDistinction(false)
+                    .minLatency(Duration.ofNanos(50_000))
+                    .maxLatency(Duration.ofSeconds(5))
+                    .build()));
+        }
+        if (autoBatch) {
+            builder.nettyCustomizer(new NettyCustomizer() {
+                @Override
+                public void afterChannelInitialized(Channel channel) {
+                    // consolidateWhenNoReadInProgress : regroupe aussi les flushes hors lecture (écritures des threads de requête)
+                    channel.pipeline().addFirst(new FlushConsolidationHandler(autoBatchFlushes, true));
+                }
+            });
+        }
+        this.clientResources = builder.build();
+
+        log.info("✅ Redis connections: shared client resources (io threads: {}, auto-batch: {}, latency histograms: {})",
+                clientResources.ioThreadPoolSize(), autoBatch, latencyHistograms);
+    }
+
+    /**
+     * Réglages d'un shard ("host:port") : redis.connection.shard.host-port.* sinon valeurs globales
+     */
+    public Settings settingsFor(String name) {
+        String prefix = SHARD_PREFIX + name.replace(':', '-') + ".";
+        return new Settings(
+                Duration.ofMillis(environment.getProperty(prefix + "command-timeout-ms", Long.class,
+                        defaults.commandTimeout().toMillis())),
+                Duration.ofMillis(environment.getProperty(prefix + "connect-timeout-ms", Long.class,
+                        defaults.connectTimeout().toMillis())),
+                environment.getProperty(prefix + "request-queue-size", Integer.class, defaults.requestQueueSize()));
+    }
+
+    /**
+     * Factory non initialisée (bean Spring : cycle de vie géré par le conteneur)
+     */
+    public LettuceConnectionFactory factory(String host, int port, Settings settings) {
+        ClientOptions clientOptions = ClientOptions.builder()
+                .socketOptions(SocketOptions.builder().connectTimeout(settings.connectTimeout()).build())
+                .timeoutOptions(TimeoutOptions.enabled(settings.commandTimeout()))
+                .requestQueueSize(settings.requestQueueSize())
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .build();
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+                .clientResources(clientResources)
+                .clientOptions(clientOptions)
+                .commandTimeout(settings.commandTimeout())
+                .build();
+        return new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port), clientConfig);
+    }
+
+    /**
+     * Connexion d'un shard du ring ("host:port") + gauge des commandes en cours
+     */
+    public RedisShard connect(String address, RedirectCodec codec, ShardCircuitBreaker.Settings breakerSettings) {
+        String name = address.trim();
+        int separator = name.lastIndexOf(':');
+        if (separator <= 0 || separator == name.length() - 1) {
+            throw new IllegalArgumentException("Invalid shard address (expected host:port): " + address);
+        }
+        String host = name.substring(0, separator);
+        int port = Integer.parseInt(name.substring(separator + 1));
+
+        LettuceConnectionFactory factory = factory(host, port, settingsFor(name));
+        factory.afterPropertiesSet();
+        factory.start();
+
+        RedisShard shard = RedisShard.create(name, factory, codec, breakerSettings, () -> {
+            Meter gauge = inFlightGauges.remove(name);
+            if (gauge != null) {
+                registry.remove(gauge);
+            }
+        });
+        inFlightGauges.put(name, Gauge.builder("redis.shard.inflight", shard, RedisShard::getInFlight)
+                .description("Redis commands (or pipelines) awaiting a reply")
+                .tag("shard", name)
+                .register(registry));
+        return shard;
+    }
+
+    public ClientResources getClientResources() {
+        return clientResources;
+    }
+
+    public Map<String, Object> getStats(List<RedisShard> shards) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ioThreads", clientResources.ioThreadPoolSize());
+        stats.put("computationThreads", clientResources.computationThreadPoolSize());
+        stats.put("autoBatch", autoBatch);
+        stats.put("autoBatchMaxPendingFlushes", autoBatchFlushes);
+        List<Map<String, Object>> perShard = new ArrayList<>();
+        for (RedisShard shard : shards) {
+            Settings settings = settingsFor(shard.getName());
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("shard", shard.getName());
+            entry.put("inFlight", shard.getInFlight());
+            entry.put("commandTimeoutMs", settings.commandTimeout().toMillis());
+            entry.put("connectTimeoutMs", settings.connectTimeout().toMillis());
+            entry.put("requestQueueSize", settings.requestQueueSize());
+            perShard.add(entry);
+        }
+        stats.put("shards", perShard);
+        return stats;
+    }
+
+    /**
+     * Après les factories (les beans qui en dépendent sont détruits avant) : arrêt des event loops partagés
+     */
+    @PreDestroy
+    void shutdown() {
+        clientResources.shutdown(100, 2_000, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,231 @@
+package com.project.URL.Shortener.cache;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Un shard Redis du ring : son nom (= "host:port", position stable sur le ring),
+ * sa connexion, ses templates (bloquant + réactif, même connexion Lettuce) et son circuit breaker
+ *
+ * Templates String (même connexion) : rate limit (scripts GCRA) et compteurs de clics,
+ * répartis sur le ring comme les entrées de cache
+ *
+ * Créé à la demande (config ou endpoint admin) par RedisConnections → pas de bean Spring par shard
+ */
+public final class RedisShard {
+
+    private static final int MAX_DEFERRED_DELETES = 100_000;
+
+    private final String name;
+    private final LettuceConnectionFactory connectionFactory; // null si template fourni de l'extérieur
+    private final RedisTemplate<String, CachedRedirect> template;
+    private final ReactiveRedisTemplate<String, CachedRedirect> reactiveTemplate; // null si template externe
+    private final StringRedisTemplate stringTemplate; // null si template externe
+    private final ReactiveStringRedisTemplate reactiveStringTemplate; // null si template externe
+    private final ShardCircuitBreaker breaker;
+    private final Runnable onClose;
+    // Commandes (ou pipelines) en attente de réponse : gauge redis.shard.inflight
+    private final LongAdder inFlight = new LongAdder();
+    // Invalidations reçues pendant que le shard était indisponible
+    private final Set<String> deferredDeletes = ConcurrentHashMap.newKeySet();
+
+    private RedisShard(String name, LettuceConnectionFactory connectionFactory,
+                       RedisTemplate<String, CachedRedirect> template,
+                       ReactiveRedisTemplate<String, CachedRedirect> reactiveTemplate,
+                       ShardCircuitBreaker.Settings breakerSettings, Runnable onClose) {
+        this.name = name;
+        this.onClose = onClose;
+        this.connectionFactory = connectionFactory;
+        this.template = template;
+        this.reactiveTemplate = reactiveTemplate;
+        this.stringTemplate = connectionFactory != null ? new StringRedisTemplate(connectionFactory) : null;
+        this.reactiveStringTemplate = connectionFactory != null ? new ReactiveStringRedisTemplate(connectionFactory) : null;
+        this.breaker = new ShardCircuitBreaker(name, breakerSettings);
+    }
+
+    /**
+     * @param connectionFactory démarrée, ressources Lettuce partagées (cf. RedisConnections)
+     * @param onClose           appelé après la fermeture de la connexion (retrait des métriques)
+     */
+    static RedisShard create(String name, LettuceConnectionFactory connectionFactory, RedisSerializer<CachedRedirect> codec,
+                             ShardCircuitBreaker.Settings breakerSettings, Runnable onClose) {
+        RedisTemplate<String, CachedRedirect> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(codec);
+        template.afterPropertiesSet();
+
+        RedisSerializationContext<String, CachedRedirect> context = RedisSerializationContext
+                .<String, CachedRedirect>newSerializationContext(new StringRedisSerializer())
+                .value(codec)
+                .build();
+        ReactiveRedisTemplate<String, CachedRedirect> reactiveTemplate =
+                new ReactiveRedisTemplate<>(connectionFactory, context);
+        return new RedisShard(name, connectionFactory, template, reactiveTemplate, breakerSettings, onClose);
+    }
+
+    public static RedisShard of(String name, RedisTemplate<String, CachedRedirect> template) {
+        return new RedisShard(name, null, template, null, ShardCircuitBreaker.Settings.defaults(), () -> {
+        });
+    }
+
+    /**
+     * Exécute une commande en alimentant le breaker (durée + succès / erreur)
+     * Le permis du breaker est pris ici, juste avant l'appel : refus → RedisConnectionFailureException (fallback appelant)
+     */
+    public <T> T execute(Function<RedisTemplate<String, CachedRedirect>, T> command) {
+        acquire();
+        long start = System.nanoTime();
+        inFlight.increment();
+        try {
+            T result = command.apply(template);
+            breaker.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onError(System.nanoTime() - start);
+            throw e;
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    /**
+     * Variante réactive : le breaker est alimenté à la complétion, sans bloquer de thread
+     */
+    public <T> Mono<T> executeReactive(Function<ReactiveRedisTemplate<String, CachedRedirect>, Mono<T>> command) {
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Mono.error(rejected());
+            }
+            long start = System.nanoTime();
+            inFlight.increment();
+            return command.apply(reactiveTemplate)
+                    .doOnSuccess(result -> breaker.onSuccess(System.nanoTime() - start))
+                    .doOnError(error -> breaker.onError(System.nanoTime() - start))
+                    .doFinally(signal -> inFlight.decrement());
+        });
+    }
+
+    /**
+     * Commandes sur des valeurs String (rate limit, compteurs), breaker alimenté comme pour execute
+     */
+    public <T> T executeString(Function<StringRedisTemplate, T> command) {
+        acquire();
+        long start = System.nanoTime();
+        inFlight.increment();
+        try {
+            T result = command.apply(stringTemplate);
+            breaker.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onError(System.nanoTime() - start);
+            throw e;
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    public <T> Mono<T> executeStringReactive(Function<ReactiveStringRedisTemplate, Mono<T>> command) {
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Mono.error(rejected());
+            }
+            long start = System.nanoTime();
+            inFlight.increment();
+            return command.apply(reactiveStringTemplate)
+                    .doOnSuccess(result -> breaker.onSuccess(System.nanoTime() - start))
+                    .doOnError(error -> breaker.onError(System.nanoTime() - start))
+                    .doFinally(signal -> inFlight.decrement());
+        });
+    }
+
+    /**
+     * Shard routable (breaker non ouvert) : sans effet de bord, aucun permis d'essai consommé
+     */
+    public boolean isAvailable() {
+        return breaker.isRoutable();
+    }
+
+    private void acquire() {
+        if (!breaker.tryAcquire()) {
+            throw rejected();
+        }
+    }
+
+    private RedisConnectionFailureException rejected() {
+        return new RedisConnectionFailureException("Shard " + name + " unavailable (circuit " + breaker.getState() + ")");
+    }
+
+    /**
+     * DEL impossible (breaker ouvert) : à rejouer au retour du shard, sinon il resservirait l'ancienne valeur
+     */
+    public void deferDelete(String key) {
+        if (deferredDeletes.size() < MAX_DEFERRED_DELETES) {
+            deferredDeletes.add(key);
+        }
+    }
+
+    public int replayDeferredDeletes() {
+        if (deferredDeletes.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = new ArrayList<>(deferredDeletes);
+        execute(t -> t.delete(keys));
+        keys.forEach(deferredDeletes::remove);
+        return keys.size();
+    }
+
+    public int getDeferredDeleteCount() {
+        return deferredDeletes.size();
+    }
+
+    public ShardCircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RedisTemplate<String, CachedRedirect> getTemplate() {
+        return template;
+    }
+
+    /**
+     * Accès direct sans breaker (jobs de fond longs : SCAN, drain des compteurs)
+     */
+    public StringRedisTemplate getStringTemplate() {
+        return stringTemplate;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public void close() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        onClose.run();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
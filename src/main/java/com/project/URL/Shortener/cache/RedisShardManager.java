@@ -1,56 +1,218 @@
 package com.project.URL.Shortener.cache;
 
-import com.project.URL.Shortener.entity.Url;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 /**
  * Redis Shard Manager avec Consistent Hashing
  *
  * ✅ Résout le problème : si on ajoute/enlève un shard,
- *    seulement ~25% des clés migrent (vs 75% avec modulo)
+ *    seulement ~1/N des clés migrent (vs presque toutes avec modulo)
+ * ✅ Routage sans allocation : cf. HashRing (long[] trié + binary search)
+ * ✅ Topologie pilotée par la config (redis.shards, N shards) et modifiable à chaud :
+ *    1. add / remove → nouveau ring publié atomiquement (volatile ShardTopology)
+ *    2. Diffusion pub/sub → tous les nœuds basculent sur le même ring et l'acquittent (canal <channel>:ack)
+ *    3. Tous les acquittements reçus (+ settle-ms pour les commandes déjà parties sur l'ancien ring)
+ *       → migration en fond (ShardMigrator), dual-read ancien/nouveau propriétaire en attendant
+ *    4. Fin de migration → ring stable, connexions des shards retirés fermées
+ *
+ * ✅ Routage conscient de la santé : 1 circuit breaker par shard (erreurs, latence, probes PING)
+ *    → shard OPEN sauté sans attendre de timeout : nœud suivant du ring (NEXT_NODE) ou DB (DATABASE)
+ *
+ * ⚠️ Un nœud qui redémarre relit redis.shards : mettre la config à jour après un changement à chaud
  */
 @Component
-public class RedisShardManager {
+@Slf4j
+public class RedisShardManager implements MessageListener {
+
+    private static final int VIRTUAL_NODES = 1500; // ±2% par shard (150 → ±15% mesuré sur 200k clés)
+
+    private static final String MIGRATING = "MIGRATING";
+    private static final String STABLE = "STABLE";
+
+    public enum Failover {
+        NEXT_NODE, // shard suivant sur le ring (cache chaud pour les clés populaires)
+        DATABASE   // miss direct → DB
+    }
 
-    private static final int VIRTUAL_NODES = 150; // Pour distribution uniforme
+    private final HashRing.Algorithm algorithm;
+    private final Failover failover;
+    private final RedisConnections connections;
+    private final ShardCircuitBreaker.Settings breakerSettings;
+    private final RedirectCodec codec;
+    private final ShardMigrator migrator;
+    private final StringRedisTemplate pubSubRedisTemplate;
+    private final String channel;
+    private final String ackChannel;
+    private final long ackTimeoutMs;
+    private final long settleMs;
+    private final long probeIntervalMs; // 0 = pas de probes planifiées (tests)
 
-    // Le "ring" : TreeMap pour clockwise lookup en O(log n)
-    private final TreeMap<Long, RedisTemplate<String, Url>> ring = new TreeMap<>();
+    // Acquittements attendus par changement de topologie (token du message MIGRATING)
+    private final Map<String, Semaphore> pendingAcks = new ConcurrentHashMap<>();
+
+    private volatile ShardTopology topology;
+    private final ReentrantLock topologyLock = new ReentrantLock();
+
+    /**
+     * Planification des probes hors du pool @Scheduled partagé
+     *
+     * ❌ @Scheduled : la probe attend derrière un rebuild du bloom, un warm-up ou une sync
+     *    → un shard revenu reste OPEN (ou un shard bloqué reste CLOSED) le temps que ces jobs finissent
+     * ✅ Thread dédié, qui ne fait que distribuer les PING (probeExecutor) → intervalle tenu
+     */
+    private final ScheduledExecutorService probeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-probe-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    // Pour health checks
-    private final Map<String, RedisTemplate<String, Url>> shardMap = new HashMap<>();
+    // Probes PING : 1 thread par shard au plus (cf. ShardCircuitBreaker.tryStartProbe)
+    private final ExecutorService probeExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public RedisShardManager(
-            @Qualifier("redisShard1") RedisTemplate<String, Url> shard1,
-            @Qualifier("redisShard2") RedisTemplate<String, Url> shard2,
-            @Qualifier("redisShard3") RedisTemplate<String, Url> shard3,
-            @Qualifier("redisShard4") RedisTemplate<String, Url> shard4
-    ) {
-        List<RedisTemplate<String, Url>> shards = List.of(shard1, shard2, shard3, shard4);
+    /**
+     * Topologie fixe, sans migration ni diffusion (tests)
+     */
+    public RedisShardManager(List<RedisShard> shards) {
+        this.algorithm = HashRing.Algorithm.FAST;
+        this.failover = Failover.NEXT_NODE;
+        this.connections = null;
+        this.breakerSettings = ShardCircuitBreaker.Settings.defaults();
+        this.codec = null;
+        this.migrator = null;
+        this.pubSubRedisTemplate = null;
+        this.channel = null;
+        this.ackChannel = null;
+        this.ackTimeoutMs = 0;
+        this.settleMs = 0;
+        this.probeIntervalMs = 0;
+        this.topology = new ShardTopology(shards, VIRTUAL_NODES, algorithm, null);
+    }
+
+    /**
+     * Topologie modifiable sans connexion à créer (retrait de shard uniquement), diffusion via le template fourni (tests)
+     */
+    public RedisShardManager(List<RedisShard> shards, ShardMigrator migrator, StringRedisTemplate pubSubRedisTemplate,
+                             String channel, long ackTimeoutMs) {
+        this.algorithm = HashRing.Algorithm.FAST;
+        this.failover = Failover.NEXT_NODE;
+        this.connections = null;
+        this.breakerSettings = ShardCircuitBreaker.Settings.defaults();
+        this.codec = null;
+        this.migrator = migrator;
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.channel = channel;
+        this.ackChannel = channel + ":ack";
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.settleMs = 0;
+        this.probeIntervalMs = 0;
+        this.topology = new ShardTopology(shards, VIRTUAL_NODES, algorithm, null);
+    }
+
+    @Autowired
+    public RedisShardManager(RedisConnections connections,
+                             RedirectCodec codec,
+                             ShardMigrator migrator,
+                             @Qualifier("pubSubRedisTemplate") StringRedisTemplate pubSubRedisTemplate,
+                             @Value("${redis.shards:localhost:6379,localhost:6380,localhost:6381,localhost:6382}") String[] addresses,
+                             @Value("${redis.shard.hash:FAST}") HashRing.Algorithm algorithm,
+                             @Value("${redis.shards.channel:shards:topology}") String channel,
+                             @Value("${redis.migration.ack-timeout-ms:10000}") long ackTimeoutMs,
+                             @Value("${redis.migration.settle-ms:1000}") long settleMs,
+                             @Value("${redis.breaker.probe-interval-ms:1000}") long probeIntervalMs,
+                             @Value("${redis.breaker.failover:NEXT_NODE}") Failover failover,
+                             @Value("${redis.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                             @Value("${redis.breaker.slow-call-ms:200}") long slowCallMs,
+                             @Value("${redis.breaker.open-duration-ms:5000}") long openDurationMs) {
+        this.algorithm = algorithm;
+        this.failover = failover;
+        this.connections = connections;
+        ShardCircuitBreaker.Settings defaults = ShardCircuitBreaker.Settings.defaults();
+        this.breakerSettings = new ShardCircuitBreaker.Settings(defaults.windowSize(), defaults.minimumCalls(),
+                failureRateThreshold, slowCallMs, defaults.slowCallRateThreshold(), openDurationMs,
+                defaults.halfOpenTrialCalls(), defaults.probeFailuresToOpen());
+        this.codec = codec;
+        this.migrator = migrator;
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.channel = channel;
+        this.ackChannel = channel + ":ack";
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.settleMs = settleMs;
+        this.probeIntervalMs = probeIntervalMs;
+
+        List<RedisShard> shards = new ArrayList<>();
+        for (String address : addresses) {
+            shards.add(connect(address));
+        }
+        this.topology = new ShardTopology(shards, VIRTUAL_NODES, algorithm, null);
 
-        // Placer chaque shard sur le ring avec virtual nodes
-        for (int i = 0; i < shards.size(); i++) {
-            String shardName = "shard-" + i;
-            RedisTemplate<String, Url> shard = shards.get(i);
+        log.info("✅ RedisShardManager initialized with {} shards {} and {} virtual nodes ({})",
+                shards.size(), topology.getShardNames(), topology.getRing().getVirtualNodeCount(), algorithm);
+    }
 
-            shardMap.put(shardName, shard);
+    private RedisShard connect(String address) {
+        return connections.connect(address, codec, breakerSettings);
+    }
 
-            // Créer 150 virtual nodes par shard
-            for (int j = 0; j < VIRTUAL_NODES; j++) {
-                String virtualNodeName = shardName + "#" + j;
-                long hash = hash(virtualNodeName);
-                ring.put(hash, shard);
+    @PostConstruct
+    void startProbes() {
+        if (probeIntervalMs <= 0) {
+            return;
+        }
+        probeScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                probeShards();
+            } catch (Exception e) {
+                // Une exception annulerait les exécutions suivantes
+                log.error("❌ Shard probe round failed: {}", e.getMessage());
             }
+        }, probeIntervalMs, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        probeScheduler.shutdownNow();
+        probeExecutor.shutdownNow();
+        ShardTopology current = topology;
+        Set<RedisShard> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        all.addAll(current.getShards());
+        if (current.getPrevious() != null) {
+            all.addAll(current.getPrevious().getShards());
         }
+        all.forEach(RedisShard::close);
+    }
 
-        System.out.println("✅ RedisShardManager initialized with " + shards.size() +
-                " shards and " + ring.size() + " virtual nodes");
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getAckChannel() {
+        return ackChannel;
     }
 
     /**
@@ -61,64 +223,415 @@ public class RedisShardManager {
      * 2. Clockwise lookup : trouve le premier virtual node >= hash
      * 3. Retourne le shard correspondant
      */
-    public RedisTemplate<String, Url> getShard(String key) {
-        if (ring.isEmpty()) {
-            throw new IllegalStateException("No shards available");
+    public RedisTemplate<String, CachedRedirect> getShard(String key) {
+        return topology.owner(key).getTemplate();
+    }
+
+    /**
+     * Propriétaire sur le ring, quel que soit l'état de son breaker
+     */
+    public RedisShard owner(String key) {
+        return topology.owner(key);
+    }
+
+    /**
+     * Shards portant une copie d'une clé chaude : propriétaire + successeurs sur le ring (cf. HotKeyTracker)
+     */
+    public List<RedisShard> replicas(String key, int count) {
+        return topology.replicas(key, count);
+    }
+
+    /**
+     * Shard à utiliser pour une clé en tenant compte des breakers
+     *
+     * @return null si le propriétaire est indisponible (et pas de failover possible) → DB
+     */
+    public RedisShard route(String key) {
+        return topology.liveOwner(key, failover == Failover.NEXT_NODE);
+    }
+
+    /**
+     * Dual-read : ancien propriétaire de la clé si une migration est en cours et qu'elle a bougé, sinon null
+     */
+    public RedisShard routePrevious(String key) {
+        return topology.previousOwner(key);
+    }
+
+    /**
+     * Probes PING actives : détectent un shard bloqué (ou revenu) même sans trafic
+     * Toutes les probe-interval-ms sur probeScheduler (pas le pool @Scheduled)
+     */
+    public void probeShards() {
+        ShardTopology current = topology;
+        probe(current.getShards());
+        if (current.getPrevious() != null) {
+            probe(current.getPrevious().getShards());
         }
+    }
 
-        long hash = hash(key);
+    private void probe(List<RedisShard> shards) {
+        for (RedisShard shard : shards) {
+            ShardCircuitBreaker breaker = shard.getBreaker();
+            if (!breaker.tryStartProbe()) {
+                continue; // probe précédente encore bloquée
+            }
+            probeExecutor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    shard.getTemplate().execute((RedisCallback<String>) connection -> connection.ping());
+                    breaker.onProbe(true, System.nanoTime() - start);
+                } catch (Exception e) {
+                    breaker.onProbe(false, System.nanoTime() - start);
+                } finally {
+                    breaker.endProbe();
+                }
+                replayDeferredDeletes(shard);
+            });
+        }
+    }
 
-        // Chercher le premier node >= hash (clockwise)
-        Map.Entry<Long, RedisTemplate<String, Url>> entry = ring.ceilingEntry(hash);
+    /**
+     * Invalidations en attente rejouées dès que le shard est routable (hors probe : un refus du breaker
+     * ou une erreur du DEL ne doit pas compter comme une probe en échec)
+     */
+    private void replayDeferredDeletes(RedisShard shard) {
+        if (shard.getDeferredDeleteCount() == 0 || !shard.isAvailable()) {
+            return;
+        }
+        try {
+            int replayed = shard.replayDeferredDeletes();
+            if (replayed > 0) {
+                log.info("🧹 Replayed {} deferred deletes on {}", replayed, shard.getName());
+            }
+        } catch (Exception e) {
+            log.debug("Deferred deletes on {} not replayed yet: {}", shard.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * État des breakers + dernières transitions
+     */
+    public List<Map<String, Object>> getBreakerStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (RedisShard shard : topology.getShards()) {
+            Map<String, Object> breakerStats = shard.getBreaker().getStats();
+            breakerStats.put("deferredDeletes", shard.getDeferredDeleteCount());
+            stats.add(breakerStats);
+        }
+        return stats;
+    }
+
+    /**
+     * Charge par shard (INFO stats) : ops/sec instantanées, part du total, nombre de clés
+     * → vérifie que cache + rate limit + compteurs sont bien répartis sur le ring
+     */
+    public List<Map<String, Object>> getShardLoad() {
+        List<Map<String, Object>> load = new ArrayList<>();
+        long totalOps = 0;
+        for (RedisShard shard : topology.getShards()) {
+            Map<String, Object> shardLoad = new LinkedHashMap<>();
+            shardLoad.put("shard", shard.getName());
+            try {
+                Properties info = shard.execute(template -> template.execute(
+                        (RedisCallback<Properties>) connection -> connection.serverCommands().info("stats")));
+                Long keys = shard.execute(template -> template.execute(
+                        (RedisCallback<Long>) connection -> connection.serverCommands().dbSize()));
+                long ops = Long.parseLong(info.getProperty("instantaneous_ops_per_sec", "0"));
+                totalOps += ops;
+                shardLoad.put("opsPerSec", ops);
+                shardLoad.put("totalCommands", Long.parseLong(info.getProperty("total_commands_processed", "0")));
+                shardLoad.put("keys", keys);
+            } catch (Exception e) {
+                shardLoad.put("error", e.getMessage());
+            }
+            load.add(shardLoad);
+        }
+        for (Map<String, Object> shardLoad : load) {
+            if (shardLoad.get("opsPerSec") instanceof Long ops) {
+                shardLoad.put("opsShare", totalOps == 0 ? 0.0 : (double) ops / totalOps);
+            }
+        }
+        return load;
+    }
 
-        // Si aucun trouvé, wrap around (prendre le premier du ring)
-        if (entry == null) {
-            entry = ring.firstEntry();
+    /**
+     * Connexions des shards : commandes en cours, timeouts effectifs, options partagées
+     */
+    public Map<String, Object> getConnectionStats() {
+        if (connections == null) {
+            return Map.of();
         }
+        return connections.getStats(topology.getShards());
+    }
 
-        return entry.getValue();
+    public ShardTopology getTopology() {
+        return topology;
     }
 
     /**
-     * Hash function : MD5
-     *
-     * Pourquoi MD5 ?
-     * ✅ Rapide (important pour des millions de req/sec)
-     * ✅ Bonne distribution uniforme
-     * ✅ Disponible nativement en Java
+     * Ajout d'un shard à chaud ("host:port")
+     */
+    public Map<String, Object> addShard(String address) {
+        topologyLock.lock();
+        try {
+            ShardTopology current = requireStable();
+            String name = address.trim();
+            if (current.find(name) != null) {
+                throw new IllegalArgumentException("Shard already present: " + name);
+            }
+            List<RedisShard> shards = new ArrayList<>(current.getShards());
+            shards.add(connect(name));
+            return changeTopology(current, shards);
+        } finally {
+            topologyLock.unlock();
+        }
+    }
+
+    /**
+     * Retrait d'un shard à chaud : ses clés sont migrées avant la fermeture de sa connexion
+     */
+    public Map<String, Object> removeShard(String address) {
+        topologyLock.lock();
+        try {
+            ShardTopology current = requireStable();
+            RedisShard removed = current.find(address.trim());
+            if (removed == null) {
+                throw new IllegalArgumentException("Unknown shard: " + address);
+            }
+            if (current.getShards().size() == 1) {
+                throw new IllegalStateException("Cannot remove the last shard");
+            }
+            List<RedisShard> shards = new ArrayList<>(current.getShards());
+            shards.remove(removed);
+            return changeTopology(current, shards);
+        } finally {
+            topologyLock.unlock();
+        }
+    }
+
+    /**
+     * Relance la migration après un échec (clés restées sur l'ancien propriétaire)
+     */
+    public Map<String, Object> retryMigration() {
+        topologyLock.lock();
+        try {
+            ShardTopology current = topology;
+            if (migrator == null || !current.isMigrating()) {
+                throw new IllegalStateException("No migration in progress");
+            }
+            if (migrator.isRunning()) {
+                throw new IllegalStateException("Migration already running");
+            }
+            // Nouveau tour d'acquittements : un nœud a pu redémarrer ou rater le premier message
+            migrator.start(current, publishMigrating(current), success -> onMigrationFinished(current, success));
+            return getStatus();
+        } finally {
+            topologyLock.unlock();
+        }
+    }
+
+    private ShardTopology requireStable() {
+        if (migrator == null) {
+            throw new IllegalStateException("Topology changes are disabled");
+        }
+        ShardTopology current = topology;
+        if (current.isMigrating()) {
+            throw new IllegalStateException("A shard migration is already in progress");
+        }
+        return current;
+    }
+
+    private Map<String, Object> changeTopology(ShardTopology current, List<RedisShard> shards) {
+        ShardTopology next = new ShardTopology(shards, VIRTUAL_NODES, algorithm, current);
+        topology = next; // swap atomique : les lectures suivantes voient le nouveau ring + dual-read
+        log.info("🔀 Shard topology changed: {} → {}", current.getShardNames(), next.getShardNames());
+
+        migrator.start(next, publishMigrating(next), success -> onMigrationFinished(next, success));
+        return getStatus();
+    }
+
+    /**
+     * Diffuse MIGRATING avec un token, renvoie l'attente des acquittements (exécutée par le thread du migrator :
+     * ce nœud acquitte lui-même via onMessage, qui prend topologyLock)
      *
-     * Pourquoi pas SHA-256 ? Trop lent (2x plus lent que MD5)
-     * Pourquoi pas hashCode() ? Mauvaise distribution
+     * PUBLISH renvoie le nombre d'abonnés qui ont reçu le message = nombre de nœuds à attendre
+     */
+    private BooleanSupplier publishMigrating(ShardTopology next) {
+        String token = UUID.randomUUID().toString();
+        Semaphore acks = new Semaphore(0);
+        pendingAcks.put(token, acks); // avant PUBLISH : un acquittement peut arriver avant le retour
+        long receivers;
+        try {
+            Long count = pubSubRedisTemplate.convertAndSend(channel,
+                    MIGRATING + "|" + String.join(",", next.getShardNames()) + "|" + token);
+            receivers = count == null ? 0 : count;
+        } catch (Exception e) {
+            log.error("❌ Shard topology publish failed: {}", e.getMessage());
+            receivers = -1;
+        }
+        long expected = receivers;
+        return () -> {
+            try {
+                if (expected <= 0) {
+                    return false; // personne n'a reçu la topologie (pas même ce nœud) → pas de copie
+                }
+                if (!acks.tryAcquire((int) expected, ackTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    log.error("❌ Shard topology acknowledged by {}/{} nodes after {}ms",
+                            acks.availablePermits(), expected, ackTimeoutMs);
+                    return false;
+                }
+                log.info("✅ Shard topology acknowledged by {} nodes", expected);
+                TimeUnit.MILLISECONDS.sleep(settleMs); // commandes routées sur l'ancien ring juste avant l'acquittement
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                pendingAcks.remove(token);
+            }
+        };
+    }
+
+    private void onMigrationFinished(ShardTopology migrating, boolean success) {
+        if (!success) {
+            // Dual-read conservé : rien n'est perdu, retry via l'endpoint admin
+            log.warn("⚠️ Shard migration incomplete, dual-read kept until retry");
+            return;
+        }
+        topologyLock.lock();
+        try {
+            if (topology != migrating) {
+                return;
+            }
+            ShardTopology stable = migrating.stable();
+            topology = stable;
+            closeRemoved(migrating.getPrevious(), stable);
+            publish(STABLE, stable);
+        } finally {
+            topologyLock.unlock();
+        }
+    }
+
+    /**
+     * Message "ÉTAT|host:port,host:port,...[|token]" reçu des autres nœuds (et de soi-même : déjà appliqué)
+     * MIGRATING → acquitté (token) une fois le nouveau ring en place, même s'il l'était déjà
+     * Canal d'acquittement : body = token
      */
-    private long hash(String key) {
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (ackChannel.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            Semaphore acks = pendingAcks.get(body);
+            if (acks != null) {
+                acks.release();
+            }
+            return;
+        }
+        String[] parts = body.split("\\|");
+        if (parts.length < 2) {
+            return;
+        }
+        boolean migrating = MIGRATING.equals(parts[0]);
+        List<String> names = List.of(parts[1].split(","));
+        String token = parts.length > 2 ? parts[2] : null;
+
+        topologyLock.lock();
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(key.getBytes(StandardCharsets.UTF_8));
+            ShardTopology current = topology;
+            if (current.getShardNames().equals(names) && current.isMigrating() == migrating) {
+                acknowledge(token);
+                return;
+            }
+            List<RedisShard> shards = new ArrayList<>(names.size());
+            for (String name : names) {
+                RedisShard shard = findKnown(current, name);
+                shards.add(shard != null ? shard : connect(name));
+            }
 
-            // Convertir les 8 premiers bytes en long (64 bits)
-            long hash = 0;
-            for (int i = 0; i < 8; i++) {
-                hash = (hash << 8) | (digest[i] & 0xFF);
+            ShardTopology next;
+            if (migrating) {
+                next = new ShardTopology(shards, VIRTUAL_NODES, algorithm, current);
+            } else {
+                next = new ShardTopology(shards, VIRTUAL_NODES, algorithm, null);
+                closeRemoved(current.getPrevious(), next);
+                closeRemoved(current.stable(), next);
             }
-            return hash;
+            topology = next;
+            log.info("🔀 Shard topology received ({}): {}", migrating ? MIGRATING : STABLE, names);
+            acknowledge(token);
         } catch (Exception e) {
-            throw new RuntimeException("Hash generation failed", e);
+            log.error("❌ Failed to apply shard topology '{}': {}", body, e.getMessage());
+        } finally {
+            topologyLock.unlock();
         }
     }
 
     /**
-     * Health check : vérifier si tous les shards sont alive
+     * Après le swap du ring : les écritures suivantes de ce nœud partent vers les nouveaux propriétaires
      */
-    public Map<String, Boolean> getShardHealth() {
-        Map<String, Boolean> health = new HashMap<>();
-        for (Map.Entry<String, RedisTemplate<String, Url>> entry : shardMap.entrySet()) {
-            try {
-                entry.getValue().hasKey("health-check");
-                health.put(entry.getKey(), true);
-            } catch (Exception e) {
-                health.put(entry.getKey(), false);
+    private void acknowledge(String token) {
+        if (token == null) {
+            return;
+        }
+        try {
+            pubSubRedisTemplate.convertAndSend(ackChannel, token);
+        } catch (Exception e) {
+            log.error("❌ Shard topology acknowledgement failed: {}", e.getMessage());
+        }
+    }
+
+    private static RedisShard findKnown(ShardTopology current, String name) {
+        RedisShard shard = current.find(name);
+        if (shard == null && current.getPrevious() != null) {
+            shard = current.getPrevious().find(name);
+        }
+        return shard;
+    }
+
+    private static void closeRemoved(ShardTopology previous, ShardTopology next) {
+        if (previous == null) {
+            return;
+        }
+        for (RedisShard shard : previous.getShards()) {
+            if (next.find(shard.getName()) != shard) {
+                shard.close();
             }
         }
+    }
+
+    private void publish(String state, ShardTopology next) {
+        try {
+            pubSubRedisTemplate.convertAndSend(channel, state + "|" + String.join(",", next.getShardNames()));
+        } catch (Exception e) {
+            log.error("❌ Shard topology publish failed: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        ShardTopology current = topology;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("shards", current.getShardNames());
+        status.put("migrating", current.isMigrating());
+        if (current.isMigrating()) {
+            status.put("previousShards", current.getPrevious().getShardNames());
+        }
+        status.put("hash", algorithm);
+        status.put("failover", failover);
+        status.put("virtualNodesPerShard", VIRTUAL_NODES);
+        if (migrator != null) {
+            status.put("migration", migrator.getProgress());
+        }
+        return status;
+    }
+
+    /**
+     * Health check : vérifier si tous les shards sont alive (état du breaker, sans commande bloquante)
+     */
+    public Map<String, Boolean> getShardHealth() {
+        Map<String, Boolean> health = new LinkedHashMap<>();
+        for (RedisShard shard : topology.getShards()) {
+            health.put(shard.getName(), shard.getBreaker().getState() != ShardCircuitBreaker.State.OPEN);
+        }
         return health;
     }
 
@@ -126,17 +639,31 @@ public class RedisShardManager {
      * Pour debugging : voir quelle clé va sur quel shard
      */
     public String getShardDebugInfo(String key) {
-        RedisTemplate<String, Url> shard = getShard(key);
-        int shardIndex = -1;
+        ShardTopology current = topology;
+        return String.format("Key '%s' → Shard %s (hash: %d)", key, current.owner(key), current.getRing().hash(key));
+    }
 
-        // Trouver l'index du shard
-        for (Map.Entry<String, RedisTemplate<String, Url>> entry : shardMap.entrySet()) {
-            if (entry.getValue() == shard) {
-                shardIndex = Integer.parseInt(entry.getKey().replace("shard-", ""));
-                break;
+    /**
+     * Mode migration : combien de clés changeraient de shard entre le placement MD5 historique
+     * et le ring courant (→ autant de cache miss au déploiement)
+     */
+    public Map<String, Object> compareWithMd5Placement(Iterable<String> keys) {
+        ShardTopology current = topology;
+        HashRing legacy = HashRing.legacy(current.getShards().size());
+        long total = 0;
+        long moved = 0;
+        for (String key : keys) {
+            total++;
+            if (current.getShards().get(legacy.ownerIndex(key)) != current.owner(key)) {
+                moved++;
             }
         }
 
-        return String.format("Key '%s' → Shard %d (hash: %d)", key, shardIndex, hash(key));
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("currentAlgorithm", algorithm);
+        report.put("keysSampled", total);
+        report.put("keysMoved", moved);
+        report.put("movedRatio", total == 0 ? 0.0 : (double) moved / total);
+        return report;
     }
-}
\ No newline at end of file
+}
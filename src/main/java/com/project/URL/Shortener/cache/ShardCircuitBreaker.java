@@ -0,0 +1,243 @@
+package com.project.URL.Shortener.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker d'un shard Redis (taux d'erreur + appels lents + probes PING)
+ *
+ * Pourquoi ?
+ * ❌ Shard bloqué → chaque requête attend le timeout Lettuce avant le fallback DB → threads bloqués
+ * ✅ Breaker OPEN → le shard est sauté immédiatement (nœud suivant du ring ou DB)
+ *
+ * États :
+ * - CLOSED    : trafic normal, fenêtre glissante (par nombre d'appels) erreurs / appels lents
+ * - OPEN      : aucun trafic ; après open-duration, une probe PING réussie → HALF_OPEN
+ * - HALF_OPEN : quelques appels d'essai (1 permis par commande, cf. tryAcquire) ; tous OK → CLOSED, un seul échec → OPEN
+ */
+public final class ShardCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public record Settings(int windowSize,
+                           int minimumCalls,
+                           double failureRateThreshold,
+                           long slowCallThresholdMs,
+                           double slowCallRateThreshold,
+                           long openDurationMs,
+                           int halfOpenTrialCalls,
+                           int probeFailuresToOpen) {
+
+        public static Settings defaults() {
+            return new Settings(100, 20, 0.5, 200, 0.5, 5000, 5, 3);
+        }
+    }
+
+    private static final int MAX_TRANSITIONS = 20;
+
+    private final String name;
+    private final Settings settings;
+    private final long slowCallThresholdNanos;
+
+    private volatile State state = State.CLOSED;
+    private volatile long stateSince = System.currentTimeMillis();
+
+    // Fenêtre courante (tumbling, remise à zéro tous les windowSize appels)
+    private final AtomicInteger windowCalls = new AtomicInteger();
+    private final AtomicInteger windowFailures = new AtomicInteger();
+    private final AtomicInteger windowSlowCalls = new AtomicInteger();
+
+    private final AtomicInteger trialPermits = new AtomicInteger();
+    private final AtomicInteger trialSuccesses = new AtomicInteger();
+    private final AtomicInteger consecutiveProbeFailures = new AtomicInteger();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private volatile long lastProbeLatencyMs = -1;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final ReentrantLock transitionLock = new ReentrantLock();
+    private final Deque<Map<String, Object>> transitions = new ArrayDeque<>();
+
+    public ShardCircuitBreaker(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(settings.slowCallThresholdMs());
+    }
+
+    /**
+     * Le shard peut-il être choisi par le routage ? (lecture seule : pas de lock, pas d'allocation, aucun permis pris)
+     *
+     * Pour filtrer / comparer des shards (ring, réplicas, jobs de fond) : appelable autant de fois que nécessaire
+     */
+    public boolean isRoutable() {
+        State current = state;
+        return current == State.CLOSED || (current == State.HALF_OPEN && trialPermits.get() > 0);
+    }
+
+    /**
+     * Autorisation d'envoyer UNE commande, juste avant l'appel Redis (cf. RedisShard.execute)
+     *
+     * ❌ Permis pris au moment du routage : chaque filtre / comparaison consommait un appel d'essai
+     *    → HALF_OPEN épuisé sans aucune commande envoyée
+     * ✅ CLOSED : lecture volatile ; HALF_OPEN : 1 permis d'essai consommé, suivi d'un onSuccess / onError
+     */
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.HALF_OPEN && trialPermits.getAndDecrement() > 0) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void onSuccess(long durationNanos) {
+        successes.increment();
+        boolean slow = durationNanos >= slowCallThresholdNanos;
+        if (slow) {
+            slowCalls.increment();
+        }
+        if (state == State.HALF_OPEN) {
+            if (slow) {
+                transition(State.HALF_OPEN, State.OPEN, "slow trial call");
+            } else if (trialSuccesses.incrementAndGet() >= settings.halfOpenTrialCalls()) {
+                transition(State.HALF_OPEN, State.CLOSED, "trial calls succeeded");
+            }
+            return;
+        }
+        record(false, slow);
+    }
+
+    public void onError(long durationNanos) {
+        failures.increment();
+        if (state == State.HALF_OPEN) {
+            transition(State.HALF_OPEN, State.OPEN, "trial call failed");
+            return;
+        }
+        record(true, durationNanos >= slowCallThresholdNanos);
+    }
+
+    /**
+     * Résultat d'une probe PING active (indépendante du trafic)
+     */
+    public void onProbe(boolean success, long durationNanos) {
+        lastProbeLatencyMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        boolean healthy = success && durationNanos < slowCallThresholdNanos;
+        if (!healthy) {
+            if (consecutiveProbeFailures.incrementAndGet() >= settings.probeFailuresToOpen()) {
+                // Shard bloqué détecté même sans trafic
+                transition(State.CLOSED, State.OPEN, "probe failures");
+                transition(State.HALF_OPEN, State.OPEN, "probe failures");
+            }
+            return;
+        }
+        consecutiveProbeFailures.set(0);
+        long elapsed = System.currentTimeMillis() - stateSince;
+        if (state == State.OPEN && elapsed >= settings.openDurationMs()) {
+            transition(State.OPEN, State.HALF_OPEN, "probe succeeded");
+        } else if (state == State.HALF_OPEN && elapsed >= settings.openDurationMs() && trialPermits.get() <= 0) {
+            // Permis consommés sans résultat (commande réactive annulée) → nouvel essai
+            trialPermits.set(settings.halfOpenTrialCalls());
+        }
+    }
+
+    /**
+     * Une seule probe à la fois : un shard bloqué ne doit pas accumuler de PING en attente
+     */
+    public boolean tryStartProbe() {
+        return probeInFlight.compareAndSet(false, true);
+    }
+
+    public void endProbe() {
+        probeInFlight.set(false);
+    }
+
+    private void record(boolean failure, boolean slow) {
+        int calls = windowCalls.incrementAndGet();
+        int failed = failure ? windowFailures.incrementAndGet() : windowFailures.get();
+        int slowed = slow ? windowSlowCalls.incrementAndGet() : windowSlowCalls.get();
+
+        if (calls >= settings.minimumCalls()) {
+            if ((double) failed / calls >= settings.failureRateThreshold()) {
+                transition(State.CLOSED, State.OPEN, String.format("failure rate %d/%d", failed, calls));
+                return;
+            }
+            if ((double) slowed / calls >= settings.slowCallRateThreshold()) {
+                transition(State.CLOSED, State.OPEN, String.format("slow call rate %d/%d", slowed, calls));
+                return;
+            }
+        }
+        if (calls >= settings.windowSize()) {
+            resetWindow();
+        }
+    }
+
+    private void resetWindow() {
+        windowCalls.set(0);
+        windowFailures.set(0);
+        windowSlowCalls.set(0);
+    }
+
+    private void transition(State from, State to, String reason) {
+        transitionLock.lock();
+        try {
+            if (state != from) {
+                return;
+            }
+            resetWindow();
+            trialSuccesses.set(0);
+            trialPermits.set(to == State.HALF_OPEN ? settings.halfOpenTrialCalls() : 0);
+            stateSince = System.currentTimeMillis();
+            state = to;
+
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("at", stateSince);
+            event.put("from", from);
+            event.put("to", to);
+            event.put("reason", reason);
+            transitions.addFirst(event);
+            if (transitions.size() > MAX_TRANSITIONS) {
+                transitions.removeLast();
+            }
+        } finally {
+            transitionLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shard", name);
+        stats.put("state", state);
+        stats.put("stateSince", stateSince);
+        stats.put("successes", successes.sum());
+        stats.put("failures", failures.sum());
+        stats.put("slowCalls", slowCalls.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("lastProbeLatencyMs", lastProbeLatencyMs);
+        stats.put("consecutiveProbeFailures", consecutiveProbeFailures.get());
+        transitionLock.lock();
+        try {
+            stats.put("transitions", new ArrayList<>(transitions));
+        } finally {
+            transitionLock.unlock();
+        }
+        return stats;
+    }
+}
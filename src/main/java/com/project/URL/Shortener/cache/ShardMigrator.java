@@ -0,0 +1,362 @@
+package com.project.URL.Shortener.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Migration en ligne des clés après un changement de topologie
+ *
+ * Flow (1 thread de fond) :
+ * 0. Attente de l'acquittement de la nouvelle topologie par tous les nœuds (cf. RedisShardManager)
+ *    ❌ Sans : un nœud encore sur l'ancien ring écrit chez l'ancien propriétaire (INCRBY click:{code}, SET...)
+ *       entre le DUMP et le DEL → écriture supprimée avec la clé, perdue
+ *    ✅ Copie seulement quand plus aucun nœud n'écrit sur la source ; pas d'acquittement → FAILED, rien n'est copié
+ * 1. SCAN de chaque shard de l'ancienne topologie, par chunks
+ * 2. Clés dont le propriétaire a changé → DUMP + PTTL pipelinés sur la source
+ * 3. RESTORE pipeliné (sans REPLACE) sur la cible : une valeur écrite entre-temps
+ *    sur le nouveau propriétaire est plus fraîche → BUSYKEY, on la garde
+ *    Sauf les agrégats, fusionnés pour ne perdre aucun clic :
+ *    - compteurs (click:{code}, stats:{code}:m:…) → INCRBY de la valeur source
+ *    - HyperLogLogs (stats:{code}:mu:…) → RESTORE temporaire + PFMERGE
+ * 4. DEL pipeliné sur la source
+ * 5. Débit borné (redis.migration.keys-per-second) pour ne pas saturer les shards
+ *
+ * Pendant toute la migration, les lectures regardent aussi l'ancien propriétaire (dual-read)
+ */
+@Component
+@Slf4j
+public class ShardMigrator {
+
+    public enum State { IDLE, RUNNING, COMPLETED, FAILED }
+
+    private final int batchSize;
+    private final int keysPerSecond;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-migrator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Progression
+    private volatile State state = State.IDLE;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile long estimatedKeys;
+    private volatile String currentSource;
+    private volatile String lastError;
+    private volatile boolean awaitingAcks;
+    private final AtomicLong scannedKeys = new AtomicLong();
+    private final AtomicLong movedKeys = new AtomicLong();
+    private final AtomicLong keptOnTarget = new AtomicLong();
+    private final AtomicLong mergedKeys = new AtomicLong();
+    private final AtomicLong failedKeys = new AtomicLong();
+
+    public ShardMigrator(@Value("${redis.migration.batch-size:500}") int batchSize,
+                         @Value("${redis.migration.keys-per-second:5000}") int keysPerSecond) {
+        this.batchSize = batchSize;
+        this.keysPerSecond = keysPerSecond;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    /**
+     * @param acknowledged bloquant : true quand tous les nœuds routent sur la nouvelle topologie
+     * @param onFinished   appelé avec true si toutes les clés ont été déplacées
+     */
+    public void start(ShardTopology topology, BooleanSupplier acknowledged, Consumer<Boolean> onFinished) {
+        state = State.RUNNING;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        lastError = null;
+        scannedKeys.set(0);
+        movedKeys.set(0);
+        keptOnTarget.set(0);
+        mergedKeys.set(0);
+        failedKeys.set(0);
+        executor.submit(() -> run(topology, acknowledged, onFinished));
+    }
+
+    private void run(ShardTopology topology, BooleanSupplier acknowledged, Consumer<Boolean> onFinished) {
+        boolean success = true;
+        try {
+            awaitingAcks = true;
+            boolean ready = acknowledged.getAsBoolean();
+            awaitingAcks = false;
+            if (!ready) {
+                throw new IllegalStateException("New topology not acknowledged by every node, nothing copied");
+            }
+
+            List<RedisShard> sources = topology.getPrevious().getShards();
+            estimatedKeys = estimateKeys(sources);
+            log.info("🔀 Shard migration started: {} → {} (~{} keys)",
+                    topology.getPrevious().getShardNames(), topology.getShardNames(), estimatedKeys);
+
+            for (RedisShard source : sources) {
+                currentSource = source.getName();
+                success &= migrateFrom(source, topology);
+            }
+        } catch (Exception e) {
+            success = false;
+            lastError = e.getMessage();
+            log.error("❌ Shard migration failed: {}", e.getMessage());
+        } finally {
+            awaitingAcks = false;
+            currentSource = null;
+            finishedAt = System.currentTimeMillis();
+            state = success ? State.COMPLETED : State.FAILED;
+        }
+
+        log.info("🔀 Shard migration {} in {}ms: scanned={}, moved={}, keptOnTarget={}, merged={}, failed={}",
+                state, finishedAt - startedAt, scannedKeys.get(), movedKeys.get(), keptOnTarget.get(),
+                mergedKeys.get(), failedKeys.get());
+        onFinished.accept(success);
+    }
+
+    private boolean migrateFrom(RedisShard source, ShardTopology topology) throws InterruptedException {
+        boolean success = true;
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+
+        try (Cursor<String> cursor = source.getTemplate().scan(options)) {
+            List<String> chunk = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() >= batchSize) {
+                    success &= moveChunk(source, chunk, topology);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                success &= moveChunk(source, chunk, topology);
+            }
+        }
+        return success;
+    }
+
+    private boolean moveChunk(RedisShard source, List<String> keys, ShardTopology topology) throws InterruptedException {
+        long chunkStart = System.nanoTime();
+        scannedKeys.addAndGet(keys.size());
+
+        Map<RedisShard, List<String>> byTarget = new IdentityHashMap<>();
+        for (String key : keys) {
+            RedisShard target = topology.owner(ShardTopology.routingKey(key));
+            if (!target.getName().equals(source.getName())) {
+                byTarget.computeIfAbsent(target, shard -> new ArrayList<>()).add(key);
+            }
+        }
+
+        boolean success = true;
+        for (Map.Entry<RedisShard, List<String>> entry : byTarget.entrySet()) {
+            try {
+                moveKeys(source, entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                // Clés laissées sur la source : toujours lisibles (dual-read), retry possible
+                success = false;
+                lastError = e.getMessage();
+                failedKeys.addAndGet(entry.getValue().size());
+                log.error("❌ Migration of {} keys {} → {} failed: {}", entry.getValue().size(),
+                        source.getName(), entry.getKey().getName(), e.getMessage());
+            }
+        }
+
+        throttle(keys.size(), chunkStart);
+        return success;
+    }
+
+    private void moveKeys(RedisShard source, RedisShard target, List<String> keys) {
+        // 1. DUMP + PTTL pipelinés (résultats bruts : pas de désérialisation par le codec)
+        List<Object> dumps = source.getTemplate().executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                connection.keyCommands().dump(rawKey);
+                connection.keyCommands().pTtl(rawKey);
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+
+        List<byte[]> present = new ArrayList<>(keys.size());
+        List<byte[]> payloads = new ArrayList<>(keys.size());
+        List<Long> ttls = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (dumps.get(2 * i) instanceof byte[] payload && dumps.get(2 * i + 1) instanceof Long ttl && ttl != -2) {
+                present.add(keys.get(i).getBytes(StandardCharsets.UTF_8));
+                payloads.add(payload);
+                ttls.add(ttl > 0 ? ttl : 0); // -1 = pas d'expiration → 0 pour RESTORE
+            }
+        }
+        if (present.isEmpty()) {
+            return;
+        }
+
+        // 2. RESTORE pipeliné sans REPLACE
+        List<Integer> busy = new ArrayList<>();
+        try {
+            target.getTemplate().executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < present.size(); i++) {
+                    connection.keyCommands().restore(present.get(i), ttls.get(i), payloads.get(i), false);
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            // BUSYKEY = la cible a déjà une valeur plus récente → OK ; toute autre erreur → échec du chunk
+            List<Object> results = e.getPipelineResult();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) instanceof Exception error) {
+                    if (error.getMessage() == null || !error.getMessage().contains("BUSYKEY")) {
+                        throw e;
+                    }
+                    busy.add(i);
+                }
+            }
+        }
+        long merged = mergeBusy(source, target, busy, present, payloads);
+        long kept = busy.size() - merged;
+
+        // 3. DEL sur la source
+        source.getTemplate().executePipelined((RedisCallback<Object>) connection -> {
+            connection.keyCommands().del(present.toArray(new byte[0][]));
+            return null;
+        });
+
+        movedKeys.addAndGet(present.size() - busy.size());
+        keptOnTarget.addAndGet(kept);
+        mergedKeys.addAndGet(merged);
+    }
+
+    /**
+     * Clés déjà présentes sur la cible (écrites depuis le changement de ring) : les agrégats sont fusionnés,
+     * les autres (cache, rate limit) gardent la valeur de la cible
+     *
+     * @return nombre de clés fusionnées
+     */
+    private long mergeBusy(RedisShard source, RedisShard target, List<Integer> busy,
+                           List<byte[]> keys, List<byte[]> payloads) {
+        List<Integer> counters = new ArrayList<>();
+        List<Integer> hyperLogLogs = new ArrayList<>();
+        for (int index : busy) {
+            switch (mergeKind(new String(keys.get(index), StandardCharsets.UTF_8))) {
+                case COUNTER -> counters.add(index);
+                case HYPERLOGLOG -> hyperLogLogs.add(index);
+                default -> {
+                }
+            }
+        }
+        if (counters.isEmpty() && hyperLogLogs.isEmpty()) {
+            return 0;
+        }
+
+        // Valeurs source des compteurs (la source n'est plus écrite : le ring pointe déjà vers la cible)
+        List<Object> values = counters.isEmpty() ? List.of() : source.getTemplate().executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    counters.forEach(index -> connection.stringCommands().get(keys.get(index)));
+                    return null;
+                }, RedisSerializer.string());
+
+        target.getTemplate().executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < counters.size(); i++) {
+                if (values.get(i) instanceof String value) {
+                    connection.stringCommands().incrBy(keys.get(counters.get(i)), Long.parseLong(value));
+                }
+            }
+            for (int index : hyperLogLogs) {
+                byte[] temporary = (new String(keys.get(index), StandardCharsets.UTF_8) + ":migrating")
+                        .getBytes(StandardCharsets.UTF_8);
+                connection.keyCommands().restore(temporary, 0, payloads.get(index), true);
+                connection.hyperLogLogCommands().pfMerge(keys.get(index), temporary);
+                connection.keyCommands().del(temporary);
+            }
+            return null;
+        });
+        return counters.size() + hyperLogLogs.size();
+    }
+
+    private enum MergeKind { NONE, COUNTER, HYPERLOGLOG }
+
+    /**
+     * Formats de ClickAccumulator.key et ClickStatsService (suffixe "u" = visiteurs uniques)
+     */
+    private static MergeKind mergeKind(String key) {
+        if (key.startsWith("click:")) {
+            return MergeKind.COUNTER;
+        }
+        if (!key.startsWith("stats:")) {
+            return MergeKind.NONE;
+        }
+        int granularityStart = key.indexOf("}:");
+        int granularityEnd = granularityStart < 0 ? -1 : key.indexOf(':', granularityStart + 2);
+        if (granularityEnd < 0) {
+            return MergeKind.NONE;
+        }
+        return key.charAt(granularityEnd - 1) == 'u' ? MergeKind.HYPERLOGLOG : MergeKind.COUNTER;
+    }
+
+    private void throttle(int keys, long chunkStartNanos) throws InterruptedException {
+        if (keysPerSecond <= 0) {
+            return;
+        }
+        long minNanos = TimeUnit.SECONDS.toNanos(keys) / keysPerSecond;
+        long remaining = minNanos - (System.nanoTime() - chunkStartNanos);
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private long estimateKeys(List<RedisShard> sources) {
+        long total = 0;
+        for (RedisShard source : sources) {
+            try {
+                Long size = source.getTemplate().execute((RedisCallback<Long>) connection -> connection.serverCommands().dbSize());
+                total += size == null ? 0 : size;
+            } catch (Exception e) {
+                log.warn("⚠️ DBSIZE failed on {}: {}", source.getName(), e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        long scanned = scannedKeys.get();
+        progress.put("state", state);
+        progress.put("awaitingAcks", awaitingAcks);
+        progress.put("currentSource", currentSource);
+        progress.put("estimatedKeys", estimatedKeys);
+        progress.put("scannedKeys", scanned);
+        progress.put("percent", estimatedKeys == 0 ? 0.0 : Math.min(100.0, 100.0 * scanned / estimatedKeys));
+        progress.put("movedKeys", movedKeys.get());
+        progress.put("keptOnTarget", keptOnTarget.get());
+        progress.put("mergedKeys", mergedKeys.get());
+        progress.put("failedKeys", failedKeys.get());
+        progress.put("keysPerSecondLimit", keysPerSecond);
+        progress.put("startedAt", startedAt);
+        progress.put("finishedAt", finishedAt);
+        progress.put("lastError", lastError);
+        return progress;
+    }
+}
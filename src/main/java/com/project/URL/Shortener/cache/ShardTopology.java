@@ -0,0 +1,131 @@
+package com.project.URL.Shortener.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Snapshot immuable de la topologie : shards + ring, et pendant une migration
+ * la topologie précédente (pour lire aussi chez l'ancien propriétaire)
+ *
+ * Un changement = une nouvelle instance publiée d'un coup (volatile) → jamais de ring à moitié construit
+ */
+public final class ShardTopology {
+
+    private final List<RedisShard> shards;
+    private final HashRing ring;
+    private final ShardTopology previous; // null = topologie stable
+    private final IntPredicate available;  // breaker du shard i fermé / half-open
+
+    ShardTopology(List<RedisShard> shards, int virtualNodes, HashRing.Algorithm algorithm, ShardTopology previous) {
+        this.shards = List.copyOf(shards);
+        if (algorithm == HashRing.Algorithm.MD5) {
+            // Placement historique (par position dans la liste) : rollout sans cache froid
+            this.ring = HashRing.legacy(shards.size());
+        } else {
+            // Position sur le ring = nom du shard ("host:port") → stable quand on ajoute / retire un shard
+            this.ring = new HashRing(getShardNames(), virtualNodes, algorithm);
+        }
+        this.previous = previous == null ? null : previous.stable();
+        this.available = index -> this.shards.get(index).isAvailable();
+    }
+
+    private ShardTopology(List<RedisShard> shards, HashRing ring) {
+        this.shards = shards;
+        this.ring = ring;
+        this.previous = null;
+        this.available = index -> this.shards.get(index).isAvailable();
+    }
+
+    public RedisShard owner(String key) {
+        return shards.get(ring.ownerIndex(key));
+    }
+
+    /**
+     * Hash tag (même convention que Redis Cluster) : "stats:{abc123}:m:42" est placé comme "abc123"
+     * → toutes les clés dérivées d'un short code vivent sur le shard propriétaire de ce code
+     * Sans accolades (entrées de cache) : la clé entière
+     */
+    public static String routingKey(String key) {
+        int open = key.indexOf('{');
+        if (open < 0) {
+            return key;
+        }
+        int close = key.indexOf('}', open + 1);
+        return close > open + 1 ? key.substring(open + 1, close) : key;
+    }
+
+    /**
+     * Propriétaire si son breaker le permet, sinon (failover) le prochain shard disponible du ring
+     *
+     * @return null si aucun shard n'est disponible
+     */
+    public RedisShard liveOwner(String key, boolean failover) {
+        if (!failover) {
+            RedisShard owner = owner(key);
+            return owner.isAvailable() ? owner : null;
+        }
+        int index = ring.ownerIndex(key, available);
+        return index < 0 ? null : shards.get(index);
+    }
+
+    /**
+     * Propriétaire + (count - 1) successeurs distincts, quel que soit l'état des breakers
+     */
+    public List<RedisShard> replicas(String key, int count) {
+        int[] indexes = ring.ownerIndexes(key, count);
+        List<RedisShard> replicas = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            replicas.add(shards.get(index));
+        }
+        return replicas;
+    }
+
+    /**
+     * Ancien propriétaire si la clé a changé de shard pendant la migration en cours, sinon null
+     */
+    public RedisShard previousOwner(String key) {
+        if (previous == null) {
+            return null;
+        }
+        RedisShard old = previous.owner(key);
+        return old.getName().equals(owner(key).getName()) || !old.isAvailable() ? null : old;
+    }
+
+    public boolean isMigrating() {
+        return previous != null;
+    }
+
+    public ShardTopology getPrevious() {
+        return previous;
+    }
+
+    public ShardTopology stable() {
+        return previous == null ? this : new ShardTopology(shards, ring);
+    }
+
+    public List<RedisShard> getShards() {
+        return shards;
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    public RedisShard find(String name) {
+        for (RedisShard shard : shards) {
+            if (shard.getName().equals(name)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    public List<String> getShardNames() {
+        List<String> names = new ArrayList<>(shards.size());
+        for (RedisShard shard : shards) {
+            names.add(shard.getName());
+        }
+        return names;
+    }
+}
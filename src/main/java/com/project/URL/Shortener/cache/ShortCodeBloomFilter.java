@@ -0,0 +1,366 @@
+package com.project.URL.Shortener.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloom filter (cache négatif) de tous les short codes existants
+ *
+ * Pourquoi ?
+ * ❌ Un code inexistant (scanner, typo) = cache miss + requête DB à chaque fois
+ * ✅ "Définitivement absent" → 404 immédiat, sans Redis ni DB
+ *
+ * Cycle de vie :
+ * - Construit au démarrage en streamant la table url, puis reconstruit périodiquement
+ *   (un bloom classique ne supporte pas la suppression : les codes supprimés restent des
+ *   faux positifs jusqu'au prochain rebuild → fallback DB normal)
+ * - saveUrl → add local + pub/sub "url:created" → add sur tous les autres nœuds
+ * - Tant que le premier build n'est pas terminé, tout est considéré "peut-être présent"
+ *
+ * ⚠️ Pub/sub = at-most-once : un message perdu (publish en échec, coupure du subscriber)
+ *    donnerait un faux négatif (404 sur un code existant) jusqu'au prochain rebuild. Rattrapage :
+ * - catch-up (bloom.catch-up-interval-ms) : SELECT des lignes d'id > dernier id vu (index PK), chaque
+ *   plage relue sur 2 tours pour les transactions committées en retard
+ *   → faux négatif borné à ~1 intervalle de catch-up, quel que soit le message perdu
+ * - (ré)abonnement après une coupure : tout négatif devient "peut-être présent" (fallback cache / DB)
+ *   jusqu'au rebuild complet déclenché au tour de catch-up suivant
+ */
+@Component
+@Slf4j
+public class ShortCodeBloomFilter implements MessageListener, SubscriptionListener {
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final String CODE_SEPARATOR = "\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final StringRedisTemplate pubSubRedisTemplate;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final String channel;
+    private final byte[] channelBytes;
+
+    private volatile Filter current;   // null tant que le premier build n'est pas fini
+    private volatile Filter building;  // reçoit aussi les ajouts pendant un rebuild
+
+    // Rebuild et catch-up jamais en même temps (pool @Scheduled à plusieurs threads)
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile long lastSeenId;     // plus grand id lu (écrit sous syncLock)
+    private long scanFromId;              // prochain catch-up : id > scanFromId (syncLock)
+
+    // Resync : demandé à chaque (ré)abonnement après le premier, fait par le rebuild suivant
+    private final AtomicBoolean subscribedOnce = new AtomicBoolean();
+    private final AtomicLong resyncRequested = new AtomicLong();
+    private volatile long resyncDone;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder caughtUp = new LongAdder();
+    private volatile long lastRebuildDurationMs;
+    private volatile long lastRebuildAt;
+
+    public ShortCodeBloomFilter(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                @Qualifier("pubSubRedisTemplate") StringRedisTemplate pubSubRedisTemplate,
+                                @Value("${bloom.enabled:true}") boolean enabled,
+                                @Value("${bloom.expected-insertions:10000000}") long expectedInsertions,
+                                @Value("${bloom.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${bloom.channel:url:created}") String channel) {
+        // JdbcTemplate dédié : le fetch size ne doit pas s'appliquer au reste de l'app
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        // PostgreSQL ne streame (curseur) qu'en dehors de l'autocommit
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.channel = channel;
+        this.channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * false = le code n'existe pas (au catch-up près, cf. doc de la classe)
+     */
+    public boolean mightContain(String shortCode) {
+        Filter filter = current;
+        if (!enabled || filter == null || resyncPending()) {
+            return true;
+        }
+        boolean result = filter.mightContain(shortCode);
+        if (!result) {
+            rejected.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Nouveau code : ajout local + diffusion aux autres nœuds
+     */
+    public void addAndPublish(String shortCode) {
+        add(shortCode);
+        try {
+            pubSubRedisTemplate.convertAndSend(channel, shortCode);
+        } catch (Exception e) {
+            // Les autres nœuds le récupèreront au prochain catch-up
+            log.error("❌ Bloom filter publish failed for {}: {}", shortCode, e.getMessage());
+        }
+    }
+
+    /**
+     * Import en masse : 1 seul message pub/sub par lot (codes séparés par '\n')
+     */
+    public void addAllAndPublish(Collection<String> shortCodes) {
+        if (shortCodes.isEmpty()) {
+            return;
+        }
+        shortCodes.forEach(this::add);
+        try {
+            pubSubRedisTemplate.convertAndSend(channel, String.join(CODE_SEPARATOR, shortCodes));
+        } catch (Exception e) {
+            log.error("❌ Bloom filter publish failed for {} codes: {}", shortCodes.size(), e.getMessage());
+        }
+    }
+
+    public void add(String shortCode) {
+        // Lire "building" AVANT "current" : rebuild() publie current puis remet building à null,
+        // donc l'un des deux voit forcément le nouveau filtre
+        Filter next = building;
+        if (next != null) {
+            next.add(shortCode);
+        }
+        Filter filter = current;
+        if (filter != null && filter != next) {
+            filter.add(shortCode);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.indexOf('\n') < 0) {
+            add(body);
+            return;
+        }
+        for (String shortCode : body.split(CODE_SEPARATOR)) {
+            add(shortCode);
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] subscribedChannel, long count) {
+        // Le premier abonnement précède (ou accompagne) le build initial : rien à rattraper
+        if (Arrays.equals(subscribedChannel, channelBytes) && !subscribedOnce.compareAndSet(false, true)) {
+            log.warn("⚠️ Bloom filter channel resubscribed: messages may have been lost, full rebuild scheduled");
+            resyncRequested.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] unsubscribedChannel, long count) {
+        if (Arrays.equals(unsubscribedChannel, channelBytes)) {
+            resyncRequested.incrementAndGet();
+        }
+    }
+
+    private boolean resyncPending() {
+        return resyncRequested.get() != resyncDone;
+    }
+
+    /**
+     * (Re)construction depuis la table url, en streaming (fetch size) → mémoire constante
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${bloom.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        syncLock.lock();
+        long startTime = System.currentTimeMillis();
+        long resyncTarget = resyncRequested.get();
+        try {
+            Filter next = new Filter(expectedInsertions, falsePositiveRate);
+            building = next;
+            long[] maxId = {0};
+
+            readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query("SELECT id, short_code FROM url WHERE short_code IS NOT NULL",
+                            rs -> {
+                                maxId[0] = Math.max(maxId[0], rs.getLong(1));
+                                next.add(rs.getString(2));
+                            }));
+
+            current = next;
+            // Catch-up suivant : relit depuis l'ancien plus grand id (commits en retard pendant le rebuild)
+            scanFromId = lastSeenId == 0 ? maxId[0] : Math.min(lastSeenId, maxId[0]);
+            lastSeenId = Math.max(lastSeenId, maxId[0]);
+            resyncDone = resyncTarget;
+            lastRebuildAt = System.currentTimeMillis();
+            lastRebuildDurationMs = lastRebuildAt - startTime;
+            log.info("✅ Bloom filter rebuilt in {}ms ({} bits, {} hash functions)",
+                    lastRebuildDurationMs, next.bitCount, next.hashFunctions);
+        } catch (Exception e) {
+            // On garde l'ancien filtre (ou aucun → tout passe)
+            log.error("❌ Bloom filter rebuild failed: {}", e.getMessage());
+        } finally {
+            building = null;
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Rattrapage des codes dont le message pub/sub a été perdu : lignes d'id > scanFromId (index PK)
+     *
+     * Chaque plage est lue sur 2 tours : un INSERT committé après un tour (id alloué avant) est vu au suivant
+     */
+    @Scheduled(initialDelayString = "${bloom.catch-up-interval-ms:5000}",
+            fixedDelayString = "${bloom.catch-up-interval-ms:5000}")
+    public void catchUp() {
+        if (!enabled || current == null) {
+            return;
+        }
+        if (resyncPending()) {
+            rebuild();
+            return;
+        }
+        if (!syncLock.tryLock()) {
+            return; // rebuild en cours
+        }
+        try {
+            long from = scanFromId;
+            long[] maxId = {lastSeenId};
+            long[] rows = {0};
+            readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query("SELECT id, short_code FROM url WHERE id > ? AND short_code IS NOT NULL",
+                            rs -> {
+                                maxId[0] = Math.max(maxId[0], rs.getLong(1));
+                                add(rs.getString(2));
+                                rows[0]++;
+                            }, from));
+            scanFromId = lastSeenId;
+            lastSeenId = maxId[0];
+            caughtUp.add(rows[0]);
+        } catch (Exception e) {
+            log.error("❌ Bloom filter catch-up failed: {}", e.getMessage());
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Filter filter = current;
+        stats.put("enabled", enabled);
+        stats.put("ready", filter != null);
+        stats.put("expectedInsertions", expectedInsertions);
+        stats.put("targetFalsePositiveRate", falsePositiveRate);
+        if (filter != null) {
+            long setBits = filter.cardinality();
+            double fillRatio = (double) setBits / filter.bitCount;
+            stats.put("bits", filter.bitCount);
+            stats.put("memoryBytes", filter.bitCount / 8);
+            stats.put("hashFunctions", filter.hashFunctions);
+            stats.put("fillRatio", fillRatio);
+            // n ≈ -m/k · ln(1 - X/m)
+            stats.put("approximateElements",
+                    Math.round(-filter.bitCount / (double) filter.hashFunctions * Math.log(1 - fillRatio)));
+            // fpp ≈ (X/m)^k
+            stats.put("estimatedFalsePositiveRate", Math.pow(fillRatio, filter.hashFunctions));
+        }
+        stats.put("rejected", rejected.sum());
+        stats.put("resyncPending", resyncPending());
+        stats.put("caughtUpRows", caughtUp.sum());
+        stats.put("lastSeenId", lastSeenId);
+        stats.put("lastRebuildAt", lastRebuildAt);
+        stats.put("lastRebuildDurationMs", lastRebuildDurationMs);
+        return stats;
+    }
+
+    /**
+     * Bits dans un AtomicLongArray → add / mightContain thread-safe sans lock
+     */
+    private static final class Filter {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashFunctions;
+
+        private Filter(long expectedInsertions, double falsePositiveRate) {
+            // m = -n·ln(p) / ln(2)², k = m/n · ln(2)
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount * 64;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        private void add(String key) {
+            long hash = FastHash.hash64(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = index(h1 + (long) i * h2);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value;
+                while (((value = words.get(word)) & mask) == 0) {
+                    if (words.compareAndSet(word, value, value | mask)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private boolean mightContain(String key) {
+            long hash = FastHash.hash64(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = index(h1 + (long) i * h2);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Double hashing (Kirsch-Mitzenmacher) : k positions à partir de 2 hash 32 bits
+        private long index(long combined) {
+            return (combined & Long.MAX_VALUE) % bitCount;
+        }
+
+        private long cardinality() {
+            long count = 0;
+            for (int i = 0; i < words.length(); i++) {
+                count += Long.bitCount(words.get(i));
+            }
+            return count;
+        }
+    }
+}
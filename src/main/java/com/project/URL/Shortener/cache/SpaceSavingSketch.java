@@ -0,0 +1,94 @@
+package com.project.URL.Shortener.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top-k approximatif en mémoire fixe (algorithme Space-Saving, Metwally et al.)
+ *
+ * Pourquoi ?
+ * ❌ 1 compteur par short code : mémoire proportionnelle au nombre de codes vus (millions)
+ * ✅ Ici : au plus capacity compteurs. Une clé non suivie remplace la plus petite,
+ *    en héritant de son compte (count = min + 1, error = min)
+ *
+ * Garanties (N = éléments vus dans la fenêtre) :
+ * - count - error ≤ fréquence réelle ≤ count
+ * - toute clé de fréquence > N / capacity est forcément suivie → aucun heavy hitter manqué
+ *
+ * ⚠️ Non thread-safe : l'appelant synchronise (cf. HotKeyTracker)
+ */
+public final class SpaceSavingSketch {
+
+    public record Entry(String key, long count, long error) {
+
+        /**
+         * Borne basse de la fréquence réelle
+         */
+        public long guaranteed() {
+            return count - error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, long[]> counters; // [count, error]
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Sketch capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String key) {
+        total++;
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{1, 0});
+            return;
+        }
+
+        // Scan linéaire du minimum : O(capacity), seulement pour une clé non suivie
+        String victim = null;
+        long min = Long.MAX_VALUE;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (entry.getValue()[0] < min) {
+                min = entry.getValue()[0];
+                victim = entry.getKey();
+            }
+        }
+        counters.remove(victim);
+        counters.put(key, new long[]{min + 1, min});
+    }
+
+    /**
+     * Compteurs triés par count décroissant, puis remise à zéro (nouvelle fenêtre)
+     */
+    public List<Entry> drain() {
+        List<Entry> entries = new ArrayList<>(counters.size());
+        counters.forEach((key, counter) -> entries.add(new Entry(key, counter[0], counter[1])));
+        entries.sort((a, b) -> Long.compare(b.count(), a.count()));
+        counters.clear();
+        total = 0;
+        return entries;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
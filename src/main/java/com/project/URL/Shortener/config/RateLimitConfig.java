@@ -15,4 +15,22 @@ public class RateLimitConfig {
     public static RateLimitConfig perHour(int requests) {
         return new RateLimitConfig(requests, 3_600_000);
     }
+
+    public boolean isEnabled() {
+        return maxRequests > 0;
+    }
+
+    /**
+     * GCRA : intervalle minimal entre 2 requêtes au débit nominal (µs)
+     */
+    public long getEmissionIntervalMicros() {
+        return windowMs * 1000 / maxRequests;
+    }
+
+    /**
+     * GCRA : tolérance (µs) → autorise un burst de maxRequests, puis le débit nominal
+     */
+    public long getToleranceMicros() {
+        return windowMs * 1000;
+    }
 }
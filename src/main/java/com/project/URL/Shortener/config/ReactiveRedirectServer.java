@@ -0,0 +1,69 @@
+package com.project.URL.Shortener.config;
+
+import com.project.URL.Shortener.controller.ReactiveRedirectHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * Serveur reactor-netty dédié au redirect non bloquant, à côté de Tomcat (stack MVC inchangée)
+ *
+ * Pourquoi un port séparé ?
+ * ✅ MVC et WebFlux ne cohabitent pas dans le même serveur : Spring Boot garde Tomcat dès que MVC est présent
+ * ✅ Bascule / A-B progressive côté load balancer : même chemin /api/url/{code}, autre port
+ *
+ * reactive.redirect.enabled=false → aucun port ouvert
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "reactive.redirect.enabled", havingValue = "true", matchIfMissing = true)
+public class ReactiveRedirectServer {
+
+    private final ReactiveRedirectHandler handler;
+    private final String host;
+    private final int port;
+
+    private DisposableServer server;
+
+    public ReactiveRedirectServer(ReactiveRedirectHandler handler,
+                                  @Value("${reactive.redirect.host:0.0.0.0}") String host,
+                                  @Value("${reactive.redirect.port:8090}") int port) {
+        this.handler = handler;
+        this.host = host;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() {
+        RouterFunction<ServerResponse> routes = RouterFunctions.route(GET("/api/url/{code}"), handler::redirect);
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(routes);
+
+        server = HttpServer.create()
+                .host(host)
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow(Duration.ofSeconds(10));
+        log.info("✅ Reactive redirect server listening on {}:{}", host, server.port());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.disposeNow(Duration.ofSeconds(5));
+        }
+    }
+}
@@ -1,49 +1,53 @@
 package com.project.URL.Shortener.config;
 
-import com.project.URL.Shortener.entity.Url;
+import com.project.URL.Shortener.cache.CacheInvalidationBus;
+import com.project.URL.Shortener.cache.RedirectCodec;
+import com.project.URL.Shortener.cache.RedisConnections;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import io.lettuce.core.resource.ClientResources;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
-import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 public class RedisConfig {
 
-    // 🔹 Configuration pour éviter les conflits avec Spring Boot 3.5+
-
-    // Shard 1 - Le marquer comme PRIMARY pour l'auto-configuration
+    // Format des entrées de cache : binary (défaut, v2), binary-v1 ou json (rollout : tant que d'anciens nœuds tournent)
     @Bean
-    @Primary  // ⬅️ TRÈS IMPORTANT
-    public RedisConnectionFactory redisConnectionFactory() {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("localhost", 6379);
-        return new LettuceConnectionFactory(config);
+    public RedirectCodec redirectCodec(@Value("${cache.codec.write-format:binary}") String writeFormat) {
+        return new RedirectCodec(RedirectCodec.WriteFormat.parse(writeFormat));
     }
 
-    // Shard 2 - Avec un nom spécifique
-    @Bean
-    public RedisConnectionFactory shard2ConnectionFactory() {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("localhost", 6380);
-        return new LettuceConnectionFactory(config);
-    }
+    // 🔹 Configuration pour éviter les conflits avec Spring Boot 3.5+
 
-    // Shard 3 - Avec un nom spécifique
-    @Bean
-    public RedisConnectionFactory shard3ConnectionFactory() {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("localhost", 6381);
-        return new LettuceConnectionFactory(config);
+    // Ressources Lettuce partagées exposées en bean : l'auto-configuration Spring Boot n'en crée pas d'autres
+    // destroyMethod vide : arrêtées par RedisConnections, après les factories
+    @Bean(destroyMethod = "")
+    public ClientResources lettuceClientResources(RedisConnections redisConnections) {
+        return redisConnections.getClientResources();
     }
 
-    // Shard 4 - Avec un nom spécifique
+    // Redis "principal" (pub/sub) - PRIMARY pour l'auto-configuration
+    // Les shards (cache, rate limit, compteurs de clics) sont créés par RedisShardManager à partir de redis.shards
+    // Mêmes event loops que les shards (RedisConnections)
     @Bean
-    public RedisConnectionFactory shard4ConnectionFactory() {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("localhost", 6382);
-        return new LettuceConnectionFactory(config);
+    @Primary  // ⬅️ TRÈS IMPORTANT
+    public LettuceConnectionFactory redisConnectionFactory(
+            RedisConnections redisConnections,
+            @Value("${spring.redis.host:localhost}") String host,
+            @Value("${spring.redis.port:6379}") int port) {
+        return redisConnections.factory(host, port, redisConnections.settingsFor(host + ":" + port));
     }
 
     // 🔹 AJOUTER CE BEAN - redisTemplate par défaut (pour Spring)
@@ -59,59 +63,25 @@ public class RedisConfig {
         return template;
     }
 
-    // RedisTemplates avec qualifiers explicites
-    @Bean("redisShard1")
-    public RedisTemplate<String, Url> redisShard1(
+    // Pub/sub (invalidation du cache local) - sur le primary
+    @Bean("pubSubRedisTemplate")
+    public StringRedisTemplate pubSubRedisTemplate(
             @Qualifier("redisConnectionFactory") RedisConnectionFactory connectionFactory) {
-        return createTemplate(connectionFactory);
+        return new StringRedisTemplate(connectionFactory);
     }
 
-    @Bean("redisShard2")
-    public RedisTemplate<String, Url> redisShard2(
-            @Qualifier("shard2ConnectionFactory") RedisConnectionFactory connectionFactory) {
-        return createTemplate(connectionFactory);
-    }
-
-    @Bean("redisShard3")
-    public RedisTemplate<String, Url> redisShard3(
-            @Qualifier("shard3ConnectionFactory") RedisConnectionFactory connectionFactory) {
-        return createTemplate(connectionFactory);
-    }
-
-    @Bean("redisShard4")
-    public RedisTemplate<String, Url> redisShard4(
-            @Qualifier("shard4ConnectionFactory") RedisConnectionFactory connectionFactory) {
-        return createTemplate(connectionFactory);
-    }
-
-    // RedisTemplate pour compteur - utiliser le primary
-    @Bean("clickCounterRedisTemplate")
-    public RedisTemplate<String, Long> counterRedisTemplate(
-            @Qualifier("redisConnectionFactory") RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Long> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new org.springframework.data.redis.serializer.GenericToStringSerializer<>(Long.class));
-        template.afterPropertiesSet();
-        return template;
-    }
-
-    private RedisTemplate<String, Url> createTemplate(RedisConnectionFactory factory) {
-        RedisTemplate<String, Url> template = new RedisTemplate<>();
-        template.setConnectionFactory(factory);
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new Jackson2JsonRedisSerializer<>(Url.class));
-        template.afterPropertiesSet();
-        return template;
-    }
-    @Bean("rateLimitRedisTemplate")
-    public RedisTemplate<String, String> rateLimitRedisTemplate(
-            @Qualifier("redisConnectionFactory") RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, String> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new StringRedisSerializer());
-        template.afterPropertiesSet();
-        return template;
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            @Qualifier("redisConnectionFactory") RedisConnectionFactory connectionFactory,
+            CacheInvalidationBus cacheInvalidationBus,
+            ShortCodeBloomFilter shortCodeBloomFilter,
+            RedisShardManager redisShardManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(cacheInvalidationBus.getChannel()));
+        container.addMessageListener(shortCodeBloomFilter, new ChannelTopic(shortCodeBloomFilter.getChannel()));
+        container.addMessageListener(redisShardManager, new ChannelTopic(redisShardManager.getChannel()));
+        container.addMessageListener(redisShardManager, new ChannelTopic(redisShardManager.getAckChannel()));
+        return container;
     }
-}
\ No newline at end of file
+}
@@ -1,71 +1,282 @@
 package com.project.URL.Shortener.config;
 
-import com.project.URL.Shortener.repository.UrlRepo;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShardTopology;
+import com.project.URL.Shortener.service.ClickAccumulator;
 import com.project.URL.Shortener.service.PerformanceLogService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Sync des compteurs de clics Redis → PostgreSQL
+ *
+ * ❌ Avant : KEYS click:* (bloque Redis) puis GET / findByShortCode / save / DELETE clé par clé,
+ *    et les clics arrivés entre le GET et le DELETE étaient perdus
+ * ✅ Après :
+ *    1. SCAN incrémental par chunks (Redis jamais bloqué)
+ *    2. GETDEL pipeliné par chunk → lecture + reset atomiques, aucun clic perdu
+ *    3. 1 seul UPDATE batché (JDBC) par chunk : click_count = click_count + ?
+ *    4. Les chunks sont appliqués en parallèle (sync.clicks.parallelism)
+ *    5. Tous les shards du ring sont scannés en parallèle (compteurs répartis par hash tag,
+ *       + anciens shards pendant une migration, + compteurs écrits sur un shard de failover)
+ */
 @Component
 public class SyncJob {
     @Autowired
-    private UrlRepo urlRepo;
+    private JdbcTemplate jdbcTemplate;
     @Autowired
-    private RedisTemplate<String, Long> redisTemplate;
+    private RedisShardManager shardManager;
     @Autowired
     private PerformanceLogService performanceLogService;
 
-    @Scheduled(fixedRate = 60000) // toutes les 1 minute
+    @Value("${sync.clicks.chunk-size:1000}")
+    private int chunkSize;
+    @Value("${sync.clicks.parallelism:4}")
+    private int parallelism;
+    @Value(VirtualThreads.ENABLED_PROPERTY)
+    private boolean virtualThreads;
+
+    private static final String UPDATE_SQL =
+            "UPDATE url SET click_count = COALESCE(click_count, 0) + ? WHERE short_code = ?";
+
+    private ExecutorService scanExecutor;
+    private ExecutorService chunkExecutor;
+    private Semaphore inFlightChunks;
+
+    // Stats
+    private final AtomicLong totalKeysSynced = new AtomicLong();
+    private final AtomicLong totalClicksSynced = new AtomicLong();
+    private final AtomicLong failedChunks = new AtomicLong();
+    private volatile long lastRunStartedAt;
+    private volatile long lastRunDurationMs;
+    private volatile long lastRunKeys;
+    private volatile Map<String, Long> lastRunKeysByShard = Map.of();
+    private volatile long lastSuccessfulRunStartedAt = System.currentTimeMillis();
+
+    @PostConstruct
+    void init() {
+        // Virtual threads : 1 thread par chunk, la concurrence reste bornée par le sémaphore
+        scanExecutor = VirtualThreads.newExecutor("sync-scan", parallelism, virtualThreads);
+        chunkExecutor = VirtualThreads.newExecutor("sync-clicks", parallelism, virtualThreads);
+        // Borne le nombre de chunks en mémoire : le SCAN attend si les workers sont en retard
+        inFlightChunks = new Semaphore(parallelism * 2);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scanExecutor.shutdown();
+        chunkExecutor.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${sync.clicks.interval-ms:60000}")
     public void syncClicksToDatabase() {
         long startTime = System.currentTimeMillis();
-        int processedKeys = 0;
-        int totalClicksProcessed = 0;
+        lastRunStartedAt = startTime;
+        long processedKeys = 0;
+        boolean success = true;
 
         try {
             performanceLogService.logRequestStart("SYNC_BATCH", "N/A", "SCHEDULER");
 
-            Set<String> keys = redisTemplate.keys("click:*");
-            if (keys == null || keys.isEmpty()) {
-                performanceLogService.logRequestComplete("SYNC_BATCH", "N/A",
-                        System.currentTimeMillis() - startTime);
-                return;
+            // 1 SCAN par shard en parallèle, chacun alimente le même pool de chunks
+            Map<String, Future<ShardDrain>> scans = new LinkedHashMap<>();
+            for (RedisShard shard : shardsToDrain()) {
+                scans.put(shard.getName(), scanExecutor.submit(() -> scanShard(shard)));
             }
 
-            for (String key : keys) {
+            Map<String, Long> keysByShard = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<ShardDrain>> scan : scans.entrySet()) {
                 try {
-                    Long count = redisTemplate.opsForValue().get(key);
-                    if (count == null || count <= 0) continue;
-
-                    String code = key.substring(6); // enlever "click:" prefix
-
-                    long dbStartTime = System.currentTimeMillis();
-                    urlRepo.findByShortCode(code).ifPresent(url -> {
-                        url.setClickCount(url.getClickCount() + count);
-                        urlRepo.save(url);
-                        performanceLogService.logDatabaseQuery(code, "BATCH_UPDATE",
-                                System.currentTimeMillis() - dbStartTime);
-                    });
-
-                    redisTemplate.delete(key); // reset le compteur Redis
-                    processedKeys++;
-                    totalClicksProcessed += count.intValue();
-
-                } catch (Exception e) {
-                    performanceLogService.logError("SYNC_BATCH_ITEM",
-                            key.substring(6), e);
+                    ShardDrain drain = scan.getValue().get();
+                    keysByShard.put(scan.getKey(), drain.keys());
+                    processedKeys += drain.keys();
+                    for (Future<Boolean> chunk : drain.chunks()) {
+                        success &= chunk.get();
+                    }
+                } catch (ExecutionException e) {
+                    // Shard injoignable : ses compteurs restent en place pour le prochain run
+                    success = false;
+                    keysByShard.put(scan.getKey(), -1L);
+                    performanceLogService.logError("SYNC_BATCH_SCAN", scan.getKey(), e);
                 }
             }
+            lastRunKeysByShard = keysByShard;
 
-            long totalTime = System.currentTimeMillis() - startTime;
-            performanceLogService.logRequestComplete("SYNC_BATCH",
-                    "Processed " + processedKeys + " keys, " + totalClicksProcessed + " clicks",
-                    totalTime);
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
         } catch (Exception e) {
+            success = false;
             performanceLogService.logError("SYNC_BATCH", "N/A", e);
         }
+
+        if (success) {
+            lastSuccessfulRunStartedAt = startTime;
+        }
+        lastRunKeys = processedKeys;
+        lastRunDurationMs = System.currentTimeMillis() - startTime;
+        performanceLogService.logRequestComplete("SYNC_BATCH",
+                "Processed " + processedKeys + " keys, lag " + getLagMs() + "ms",
+                lastRunDurationMs);
+    }
+
+    /**
+     * Shards courants + anciens propriétaires si une migration est en cours (dédoublonnés par nom)
+     */
+    private List<RedisShard> shardsToDrain() {
+        ShardTopology topology = shardManager.getTopology();
+        Map<String, RedisShard> shards = new LinkedHashMap<>();
+        topology.getShards().forEach(shard -> shards.put(shard.getName(), shard));
+        if (topology.getPrevious() != null) {
+            topology.getPrevious().getShards().forEach(shard -> shards.putIfAbsent(shard.getName(), shard));
+        }
+        return new ArrayList<>(shards.values());
+    }
+
+    private ShardDrain scanShard(RedisShard shard) throws InterruptedException {
+        if (!shard.isAvailable()) {
+            throw new IllegalStateException("Shard " + shard.getName() + " unavailable (circuit open)");
+        }
+        List<Future<Boolean>> chunks = new ArrayList<>();
+        long keys = 0;
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(ClickAccumulator.KEY_PREFIX + "*")
+                .count(chunkSize)
+                .build();
+
+        try (Cursor<String> cursor = shard.getStringTemplate().scan(options)) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() >= chunkSize) {
+                    chunks.add(submitChunk(shard, chunk));
+                    keys += chunk.size();
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunks.add(submitChunk(shard, chunk));
+                keys += chunk.size();
+            }
+        }
+        return new ShardDrain(keys, chunks);
+    }
+
+    private Future<Boolean> submitChunk(RedisShard shard, List<String> keys) throws InterruptedException {
+        inFlightChunks.acquire();
+        return chunkExecutor.submit(() -> {
+            try {
+                return syncChunk(shard, keys);
+            } finally {
+                inFlightChunks.release();
+            }
+        });
+    }
+
+    /**
+     * 1 chunk = 1 pipeline GETDEL + 1 batch UPDATE
+     */
+    private boolean syncChunk(RedisShard shard, List<String> keys) {
+        // 1. Lecture + reset atomiques (GETDEL) → les nouveaux clics recréent la clé
+        List<Object> counts = shard.getStringTemplate().executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.stringCommands().getDel(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (counts.get(i) instanceof String count && Long.parseLong(count) > 0) {
+                // Ancien format click:code et nouveau click:{code} → même ligne
+                deltas.merge(ClickAccumulator.shortCodeOf(keys.get(i)), Long.parseLong(count), Long::sum);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return true;
+        }
+
+        // 2. 1 UPDATE batché pour tout le chunk
+        try {
+            long dbStartTime = System.currentTimeMillis();
+            List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+            deltas.forEach((code, delta) -> batchArgs.add(new Object[]{delta, code}));
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs);
+            performanceLogService.logDatabaseQuery("N/A", "BATCH_UPDATE(" + deltas.size() + ")",
+                    System.currentTimeMillis() - dbStartTime);
+
+            totalKeysSynced.addAndGet(deltas.size());
+            totalClicksSynced.addAndGet(deltas.values().stream().mapToLong(Long::longValue).sum());
+            return true;
+
+        } catch (Exception e) {
+            // 3. Échec DB → remettre les deltas dans Redis pour le prochain run
+            failedChunks.incrementAndGet();
+            performanceLogService.logError("SYNC_BATCH_CHUNK", "N/A", e);
+            restore(deltas);
+            return false;
+        }
+    }
+
+    /**
+     * Deltas remis sur le shard courant de chaque code (pas forcément celui d'où ils ont été lus)
+     */
+    private void restore(Map<String, Long> deltas) {
+        deltas.forEach((code, delta) -> {
+            RedisShard shard = shardManager.route(code);
+            try {
+                if (shard == null) {
+                    throw new IllegalStateException("No Redis shard available");
+                }
+                shard.executeString(template -> template.opsForValue().increment(ClickAccumulator.key(code), delta));
+            } catch (Exception e) {
+                performanceLogService.logError("SYNC_BATCH_RESTORE", code, e);
+            }
+        });
+    }
+
+    /**
+     * Lag : âge max des clics pas encore en base (depuis le début du dernier run réussi)
+     */
+    public long getLagMs() {
+        return System.currentTimeMillis() - lastSuccessfulRunStartedAt;
+    }
+
+    private record ShardDrain(long keys, List<Future<Boolean>> chunks) {
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chunkSize", chunkSize);
+        stats.put("parallelism", parallelism);
+        stats.put("lagMs", getLagMs());
+        stats.put("lastRunStartedAt", lastRunStartedAt);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        stats.put("lastRunKeys", lastRunKeys);
+        stats.put("lastRunKeysByShard", lastRunKeysByShard);
+        stats.put("totalKeysSynced", totalKeysSynced.get());
+        stats.put("totalClicksSynced", totalClicksSynced.get());
+        stats.put("failedChunks", failedChunks.get());
+        return stats;
     }
-}
\ No newline at end of file
+}
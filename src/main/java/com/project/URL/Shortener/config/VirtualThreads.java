@@ -0,0 +1,47 @@
+package com.project.URL.Shortener.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors de l'app (batch shards, sync clics, probes) en mode virtual threads ou platform threads
+ *
+ * Pourquoi ?
+ * ✅ spring.threads.virtual.enabled=true couvre Tomcat, @Async et @Scheduled,
+ *    mais pas nos propres executors → même switch pour eux
+ * ⚠️ Le code reste compilable en Java 17 : l'API virtual threads (Java 21) est appelée par réflexion,
+ *    fallback sur un pool classique si la JVM ne la supporte pas
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    public static final String ENABLED_PROPERTY = "${spring.threads.virtual.enabled:false}";
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param platformThreads taille du pool en mode platform threads (ignorée en mode virtual : 1 thread par tâche)
+     */
+    public static ExecutorService newExecutor(String name, int platformThreads, boolean virtual) {
+        if (virtual) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("⚠️ Virtual threads not supported by this JVM ({}), '{}' uses platform threads",
+                        Runtime.version(), name);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,250 @@
+package com.project.URL.Shortener.controller;
+
+import com.project.URL.Shortener.cache.HotKeyTracker;
+import com.project.URL.Shortener.cache.LocalUrlCache;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import com.project.URL.Shortener.config.SyncJob;
+import com.project.URL.Shortener.repository.UrlRepo;
+import com.project.URL.Shortener.service.CacheRefresher;
+import com.project.URL.Shortener.service.CacheWarmer;
+import com.project.URL.Shortener.service.ClickAccumulator;
+import com.project.URL.Shortener.service.ClickEventPipeline;
+import com.project.URL.Shortener.service.ClickStatsService;
+import com.project.URL.Shortener.service.RedisRateLimitService;
+import com.project.URL.Shortener.service.UrlImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Endpoints d'exploitation (stats, dimensionnement)
+ *
+ * Hors de /api/url/** → pas soumis au rate limiting
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final LocalUrlCache localUrlCache;
+    private final ClickAccumulator clickAccumulator;
+    private final SyncJob syncJob;
+    private final ShortCodeBloomFilter bloomFilter;
+    private final RedisShardManager shardManager;
+    private final UrlRepo urlRepo;
+    private final UrlImportService urlImportService;
+    private final CacheWarmer cacheWarmer;
+    private final ClickEventPipeline clickEventPipeline;
+    private final ClickStatsService clickStatsService;
+    private final RedisRateLimitService rateLimitService;
+    private final HotKeyTracker hotKeyTracker;
+    private final CacheRefresher cacheRefresher;
+
+    private static final int MAX_MIGRATION_SAMPLE = 1_000_000;
+
+    public AdminController(LocalUrlCache localUrlCache, ClickAccumulator clickAccumulator, SyncJob syncJob,
+                           ShortCodeBloomFilter bloomFilter, RedisShardManager shardManager, UrlRepo urlRepo,
+                           UrlImportService urlImportService, CacheWarmer cacheWarmer,
+                           ClickEventPipeline clickEventPipeline, ClickStatsService clickStatsService,
+                           RedisRateLimitService rateLimitService, HotKeyTracker hotKeyTracker,
+                           CacheRefresher cacheRefresher) {
+        this.localUrlCache = localUrlCache;
+        this.clickAccumulator = clickAccumulator;
+        this.syncJob = syncJob;
+        this.bloomFilter = bloomFilter;
+        this.shardManager = shardManager;
+        this.urlRepo = urlRepo;
+        this.urlImportService = urlImportService;
+        this.cacheWarmer = cacheWarmer;
+        this.clickEventPipeline = clickEventPipeline;
+        this.clickStatsService = clickStatsService;
+        this.rateLimitService = rateLimitService;
+        this.hotKeyTracker = hotKeyTracker;
+        this.cacheRefresher = cacheRefresher;
+    }
+
+    /**
+     * Stats du cache local L1 : hits / misses / evictions
+     */
+    @GetMapping("/cache/local")
+    public ResponseEntity<Map<String, Object>> getLocalCacheStats() {
+        return ResponseEntity.ok(localUrlCache.getStats());
+    }
+
+    /**
+     * Codes hot détectés sur le redirect : débit estimé + shards qui portent une copie
+     */
+    @GetMapping("/cache/hot-keys")
+    public ResponseEntity<Map<String, Object>> getHotKeys() {
+        return ResponseEntity.ok(hotKeyTracker.getStats());
+    }
+
+    /**
+     * Refresh anticipé (XFetch) : déclenchés / réussis / entrées déjà expirées
+     */
+    @GetMapping("/cache/refresh")
+    public ResponseEntity<Map<String, Object>> getCacheRefreshStats() {
+        return ResponseEntity.ok(cacheRefresher.getStats());
+    }
+
+    /**
+     * Dernier warm-up du cache (démarrage ou shard redémarré à vide)
+     */
+    @GetMapping("/cache/warmup")
+    public ResponseEntity<Map<String, Object>> getCacheWarmUpStats() {
+        return ResponseEntity.ok(cacheWarmer.getStats());
+    }
+
+    /**
+     * Stats de l'accumulateur de clics : en attente / flushés / droppés
+     */
+    @GetMapping("/clicks")
+    public ResponseEntity<Map<String, Object>> getClickStats() {
+        return ResponseEntity.ok(clickAccumulator.getStats());
+    }
+
+    /**
+     * Pipeline d'événements de clic : débit, profondeur du ring, drops, latence des lots
+     */
+    @GetMapping("/clicks/events")
+    public ResponseEntity<Map<String, Object>> getClickEventStats() {
+        return ResponseEntity.ok(clickEventPipeline.getStats());
+    }
+
+    /**
+     * Stats des pré-agrégats par lien : événements agrégés / ignorés (shard indisponible), rétention
+     */
+    @GetMapping("/clicks/stats")
+    public ResponseEntity<Map<String, Object>> getClickStatsRollup() {
+        return ResponseEntity.ok(clickStatsService.getStats());
+    }
+
+    /**
+     * Tier local du rate limiting : décisions sans I/O vs leases Redis, jetons achetés
+     */
+    @GetMapping("/ratelimit")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimitService.getLocalStats());
+    }
+
+    /**
+     * Stats du sync clics Redis → DB : lag, taille des chunks, clés traitées
+     */
+    @GetMapping("/sync")
+    public ResponseEntity<Map<String, Object>> getSyncStats() {
+        return ResponseEntity.ok(syncJob.getStats());
+    }
+
+    /**
+     * Bloom filter : mémoire, taux de faux positifs estimé, codes rejetés
+     */
+    @GetMapping("/bloom")
+    public ResponseEntity<Map<String, Object>> getBloomFilterStats() {
+        return ResponseEntity.ok(bloomFilter.getStats());
+    }
+
+    /**
+     * Mode migration du ring : combien de codes (échantillon DB) changeraient de shard
+     * entre le placement MD5 historique et le hash courant
+     */
+    @GetMapping("/shards/hash-migration")
+    public ResponseEntity<Map<String, Object>> getHashMigrationReport(
+            @RequestParam(defaultValue = "100000") int sample) {
+        int size = Math.max(1, Math.min(sample, MAX_MIGRATION_SAMPLE));
+        return ResponseEntity.ok(shardManager.compareWithMd5Placement(
+                urlRepo.findShortCodes(PageRequest.of(0, size))));
+    }
+
+    /**
+     * Topologie courante des shards + progression de la migration
+     */
+    @GetMapping("/shards")
+    public ResponseEntity<Map<String, Object>> getShards() {
+        return ResponseEntity.ok(shardManager.getStatus());
+    }
+
+    /**
+     * Charge par shard (ops/sec, part du total) : cache, rate limit et compteurs de clics
+     */
+    @GetMapping("/shards/load")
+    public ResponseEntity<List<Map<String, Object>>> getShardLoad() {
+        return ResponseEntity.ok(shardManager.getShardLoad());
+    }
+
+    /**
+     * Connexions des shards : commandes en cours, timeouts, event loops partagés, auto-batch
+     */
+    @GetMapping("/shards/connections")
+    public ResponseEntity<Map<String, Object>> getShardConnections() {
+        return ResponseEntity.ok(shardManager.getConnectionStats());
+    }
+
+    /**
+     * Circuit breakers par shard : état, compteurs, dernières transitions
+     */
+    @GetMapping("/shards/breakers")
+    public ResponseEntity<List<Map<String, Object>>> getShardBreakers() {
+        return ResponseEntity.ok(shardManager.getBreakerStats());
+    }
+
+    /**
+     * Ajout d'un shard à chaud : POST /api/admin/shards?address=host:port
+     */
+    @PostMapping("/shards")
+    public ResponseEntity<Map<String, Object>> addShard(@RequestParam String address) {
+        return changeTopology(() -> shardManager.addShard(address));
+    }
+
+    /**
+     * Retrait d'un shard à chaud : DELETE /api/admin/shards?address=host:port
+     */
+    @DeleteMapping("/shards")
+    public ResponseEntity<Map<String, Object>> removeShard(@RequestParam String address) {
+        return changeTopology(() -> shardManager.removeShard(address));
+    }
+
+    /**
+     * Relance de la migration après un échec
+     */
+    @PostMapping("/shards/migration/retry")
+    public ResponseEntity<Map<String, Object>> retryMigration() {
+        return changeTopology(shardManager::retryMigration);
+    }
+
+    /**
+     * Import en masse (migration depuis un autre shortener), lu en streaming :
+     * curl -X POST -H "Content-Type: text/csv" --data-binary @urls.csv /api/admin/urls/import
+     *
+     * CSV : originalUrl[,shortCode] (en-tête optionnel) ; NDJSON (application/x-ndjson) : {"originalUrl", "shortCode"}
+     * Réponse : compteurs + erreurs par ligne (l'import ne s'arrête pas sur une ligne invalide)
+     */
+    @PostMapping(value = "/urls/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<Map<String, Object>> importUrls(HttpServletRequest request) throws IOException {
+        UrlImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? UrlImportService.Format.CSV
+                : UrlImportService.Format.NDJSON;
+        return ResponseEntity.ok(urlImportService.importStream(request.getInputStream(), format));
+    }
+
+    private ResponseEntity<Map<String, Object>> changeTopology(Supplier<Map<String, Object>> change) {
+        try {
+            return ResponseEntity.accepted().body(change.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
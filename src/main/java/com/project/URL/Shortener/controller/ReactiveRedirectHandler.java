@@ -0,0 +1,193 @@
+package com.project.URL.Shortener.controller;
+
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.HotKeyTracker;
+import com.project.URL.Shortener.cache.LocalUrlCache;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import com.project.URL.Shortener.entity.Url;
+import com.project.URL.Shortener.service.CacheRefresher;
+import com.project.URL.Shortener.service.ClickAccumulator;
+import com.project.URL.Shortener.service.ClickEventPipeline;
+import com.project.URL.Shortener.service.RedirectMetrics;
+import com.project.URL.Shortener.service.RedisRateLimitService;
+import com.project.URL.Shortener.service.UrlService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/**
+ * Redirect non bloquant (Lettuce réactif), servi par ReactiveRedirectServer sur un port séparé
+ *
+ * Pourquoi ?
+ * ❌ Redirect MVC : 1 thread Tomcat bloqué par requête pendant les allers-retours Redis (rate limit + GET)
+ * ✅ Ici les event loops Netty enchaînent les commandes Redis sans attendre → beaucoup plus de
+ *    connexions concurrentes avec quelques threads
+ * ⚠️ Gain attendu, pas encore mesuré : aucun run de test7.js (MVC vs réactif) n'a été fait
+ *
+ * Flow (même sémantique que UrlController.redirect) :
+ * 0. Rate limit GCRA (même script, fail-open)
+ * 1. Bloom filter → 404 sans I/O
+ * 2. Cache L1 (Caffeine)
+ * 3. Code hot : réplica au hasard (HotKeyTracker), sinon shard du ring (health-aware)
+ *    puis ancien propriétaire pendant une migration
+ *    Hit proche de l'échéance → refresh anticipé en arrière-plan (CacheRefresher)
+ * 4. Miss → PostgreSQL sur boundedElastic (JPA est bloquant, single-flight + remplissage cache par le service)
+ * 5. Clic compté en mémoire (ClickAccumulator + ClickEventPipeline, pas d'I/O) → 302
+ */
+@Component
+@Slf4j
+public class ReactiveRedirectHandler {
+
+    private static final String RATE_LIMIT_BODY =
+            "{\"error\": \"Rate limit exceeded\", \"message\": \"Too many requests, please try again later.\"}";
+
+    private final RedisRateLimitService rateLimitService;
+    private final ShortCodeBloomFilter bloomFilter;
+    private final LocalUrlCache localUrlCache;
+    private final RedisShardManager shardManager;
+    private final UrlService urlService;
+    private final ClickAccumulator clickAccumulator;
+    private final RedirectMetrics redirectMetrics;
+    private final ClickEventPipeline clickEventPipeline;
+    private final HotKeyTracker hotKeyTracker;
+    private final CacheRefresher cacheRefresher;
+
+    public ReactiveRedirectHandler(RedisRateLimitService rateLimitService,
+                                   ShortCodeBloomFilter bloomFilter,
+                                   LocalUrlCache localUrlCache,
+                                   RedisShardManager shardManager,
+                                   UrlService urlService,
+                                   ClickAccumulator clickAccumulator,
+                                   RedirectMetrics redirectMetrics,
+                                   ClickEventPipeline clickEventPipeline,
+                                   HotKeyTracker hotKeyTracker,
+                                   CacheRefresher cacheRefresher) {
+        this.rateLimitService = rateLimitService;
+        this.bloomFilter = bloomFilter;
+        this.localUrlCache = localUrlCache;
+        this.shardManager = shardManager;
+        this.urlService = urlService;
+        this.clickAccumulator = clickAccumulator;
+        this.redirectMetrics = redirectMetrics;
+        this.clickEventPipeline = clickEventPipeline;
+        this.hotKeyTracker = hotKeyTracker;
+        this.cacheRefresher = cacheRefresher;
+    }
+
+    public Mono<ServerResponse> redirect(ServerRequest request) {
+        long startNanos = System.nanoTime();
+        String code = request.pathVariable("code");
+        String clientIp = getClientIp(request);
+
+        return rateLimitService.checkAllRateLimitsReactive(clientIp, code)
+                .doOnNext(allowed -> redirectMetrics.record(RedirectMetrics.Stage.RATE_LIMIT, startNanos))
+                .flatMap(allowed -> {
+                    if (!allowed) {
+                        log.warn("🚨 Rate limit exceeded - IP: {}, ShortCode: {}", clientIp, code);
+                        return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .bodyValue(RATE_LIMIT_BODY);
+                    }
+                    if (!bloomFilter.mightContain(code)) {
+                        return ServerResponse.notFound().build();
+                    }
+                    hotKeyTracker.record(code);
+                    return resolve(code)
+                            .flatMap(redirect -> {
+                                clickEventPipeline.publish(code, request.headers().firstHeader("Referer"),
+                                        request.headers().firstHeader("User-Agent"), clientIp);
+                                // Jamais bloquant sur l'event loop (accumulateur désactivé → INCR réactif)
+                                return clickAccumulator.recordReactive(code)
+                                        .then(ServerResponse.status(HttpStatus.FOUND)
+                                                .location(URI.create(redirect.originalUrl()))
+                                                .build());
+                            })
+                            .switchIfEmpty(Mono.defer(() -> ServerResponse.notFound().build()));
+                })
+                .doOnSuccess(response -> redirectMetrics.record(RedirectMetrics.Stage.REACTIVE_TOTAL, startNanos));
+    }
+
+    private Mono<CachedRedirect> resolve(String code) {
+        CachedRedirect local = localUrlCache.get(code);
+        if (local != null) {
+            cacheRefresher.onHit(code, local);
+            return Mono.just(local);
+        }
+        return fromShards(code)
+                .doOnNext(redirect -> {
+                    localUrlCache.put(code, redirect);
+                    cacheRefresher.onHit(code, redirect);
+                })
+                .switchIfEmpty(Mono.defer(() -> fromDatabase(code)));
+    }
+
+    /**
+     * Réplica d'un code hot, shard routé puis, pendant une migration, l'ancien propriétaire (dual-read)
+     * Erreur Redis → vide (fallback DB), comme RedisService.get
+     */
+    private Mono<CachedRedirect> fromShards(String code) {
+        RedisShard shard = shardManager.route(code);
+        RedisShard replica = hotKeyTracker.readReplica(code);
+        if (replica != null && replica != shard) {
+            // Miss sur le réplica : lecture normale puis read-repair (hors du chemin de la réponse)
+            return readShard(replica, code)
+                    .onErrorResume(e -> Mono.empty())
+                    .switchIfEmpty(Mono.defer(() -> fromRing(shard, code)
+                            .doOnNext(redirect -> Mono.fromRunnable(() -> hotKeyTracker.repair(replica, code, redirect))
+                                    .subscribeOn(Schedulers.boundedElastic())
+                                    .subscribe())));
+        }
+        return fromRing(shard, code);
+    }
+
+    private Mono<CachedRedirect> fromRing(RedisShard shard, String code) {
+        return readShard(shard, code)
+                .switchIfEmpty(Mono.defer(() -> readShard(shardManager.routePrevious(code), code)))
+                .onErrorResume(e -> {
+                    log.error("❌ Reactive cache GET failed for {}: {}", code, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<CachedRedirect> readShard(RedisShard shard, String code) {
+        if (shard == null) {
+            return Mono.empty();
+        }
+        return shard.executeReactive(template -> template.opsForValue().get(code));
+    }
+
+    private Mono<CachedRedirect> fromDatabase(String code) {
+        return Mono.fromCallable(() -> {
+                    Url url = urlService.getUrlByShortCode(code);
+                    return url != null ? CachedRedirect.from(url) : null;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private String getClientIp(ServerRequest request) {
+        String xForwardedFor = request.headers().firstHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+
+        String xRealIp = request.headers().firstHeader("X-Real-IP");
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            return xRealIp;
+        }
+
+        return request.remoteAddress()
+                .map(InetSocketAddress::getAddress)
+                .map(address -> address.getHostAddress())
+                .orElse("unknown");
+    }
+}
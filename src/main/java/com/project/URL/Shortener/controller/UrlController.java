@@ -1,34 +1,95 @@
 package com.project.URL.Shortener.controller;
 
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.HotKeyTracker;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
 import com.project.URL.Shortener.entity.Url;
+import com.project.URL.Shortener.service.CacheRefresher;
+import com.project.URL.Shortener.service.ClickAccumulator;
+import com.project.URL.Shortener.service.ClickEventPipeline;
+import com.project.URL.Shortener.service.ClickStatsService;
+import com.project.URL.Shortener.service.UrlExportService;
 import com.project.URL.Shortener.service.UrlService;
 import com.project.URL.Shortener.service.PerformanceLogService;
+import com.project.URL.Shortener.service.RedirectMetrics;
 import com.project.URL.Shortener.service.RedisService;
+import com.project.URL.Shortener.service.ShortCodeGenerator;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/url")
 public class UrlController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    // Batch resolve : au-delà, utiliser le mode streaming (Accept: application/x-ndjson)
+    private static final int MAX_RESOLVE_BATCH = 1000;
+    private static final int RESOLVE_CHUNK_SIZE = 500;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UrlService urlService;
     private final RedisService redisService;
     private final PerformanceLogService performanceLogService;
+    private final ClickAccumulator clickAccumulator;
+    private final ShortCodeBloomFilter bloomFilter;
+    private final ObjectMapper objectMapper;
+    private final UrlExportService urlExportService;
+    private final RedirectMetrics redirectMetrics;
+    private final ClickEventPipeline clickEventPipeline;
+    private final ClickStatsService clickStatsService;
+    private final HotKeyTracker hotKeyTracker;
+    private final CacheRefresher cacheRefresher;
 
     @Autowired
     public UrlController(UrlService urlService,
                          RedisService redisService,
-                         PerformanceLogService performanceLogService) {
+                         PerformanceLogService performanceLogService,
+                         ClickAccumulator clickAccumulator,
+                         ShortCodeBloomFilter bloomFilter,
+                         ObjectMapper objectMapper,
+                         UrlExportService urlExportService,
+                         RedirectMetrics redirectMetrics,
+                         ClickEventPipeline clickEventPipeline,
+                         ClickStatsService clickStatsService,
+                         HotKeyTracker hotKeyTracker,
+                         CacheRefresher cacheRefresher) {
         this.urlService = urlService;
         this.redisService = redisService;
         this.performanceLogService = performanceLogService;
+        this.clickAccumulator = clickAccumulator;
+        this.bloomFilter = bloomFilter;
+        this.objectMapper = objectMapper;
+        this.urlExportService = urlExportService;
+        this.redirectMetrics = redirectMetrics;
+        this.clickEventPipeline = clickEventPipeline;
+        this.clickStatsService = clickStatsService;
+        this.hotKeyTracker = hotKeyTracker;
+        this.cacheRefresher = cacheRefresher;
     }
 
     // ---------------------- PRODUCTION ENDPOINTS ----------------------
@@ -37,46 +98,71 @@ public class UrlController {
      * Redirect (avec Redis cache + DB fallback)
      *
      * Flow :
+     * 0. Bloom filter : code définitivement inexistant → 404 sans Redis ni DB
      * 1. Check Redis cache
-     * 2. If miss → Query PostgreSQL
-     * 3. Save to cache for next time
+     * 2. If miss → Query PostgreSQL (une seule requête DB par code à la fois)
+     * 3. Save to cache for next time (fait par le service)
+     * 4. Compter le clic en mémoire (flush batch vers Redis, pas d'I/O ici)
      */
     @GetMapping("/{code}")
     public ResponseEntity<Void> redirect(@PathVariable String code, HttpServletRequest request) {
-        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         String clientIp = getClientIp(request);
         performanceLogService.logRequestStart("REDIRECT", code, clientIp);
 
+        // 0. Negative cache
+        if (!bloomFilter.mightContain(code)) {
+            return ResponseEntity.notFound().build();
+        }
+        hotKeyTracker.record(code);
+
         // 1. Try cache first
-        Url url = redisService.get(code);
+        long cacheStartNanos = System.nanoTime();
+        CachedRedirect redirect = redisService.get(code);
+        redirectMetrics.record(RedirectMetrics.Stage.CACHE, cacheStartNanos);
 
-        // 2. Cache miss → fallback to DB
-        if (url == null) {
-            url = urlService.getUrlByShortCode(code);
+        // 2. Cache miss → fallback to DB (single-flight, le service re-remplit le cache)
+        if (redirect == null) {
+            long dbStartNanos = System.nanoTime();
+            Url url = urlService.getUrlByShortCode(code);
+            redirectMetrics.record(RedirectMetrics.Stage.DATABASE, dbStartNanos);
 
             if (url == null) {
                 performanceLogService.logError("REDIRECT", code,
                         new RuntimeException("Short code not found: " + code));
                 return ResponseEntity.notFound().build();
             }
-
-            // 3. Populate cache (write-through)
-            redisService.set(code, url);
+            redirect = CachedRedirect.from(url);
+        } else {
+            // 3. Hit proche de l'échéance → rechargement DB en arrière-plan, réponse servie sans attendre
+            cacheRefresher.onHit(code, redirect);
         }
 
-        long totalTime = System.currentTimeMillis() - startTime;
-        performanceLogService.logRequestComplete("REDIRECT", code, totalTime);
+        // 4. Click tracking (hit ou miss) : compteur + événement analytics, sans I/O
+        clickAccumulator.record(code);
+        clickEventPipeline.publish(code, request.getHeader("Referer"), request.getHeader("User-Agent"), clientIp);
+
+        redirectMetrics.record(RedirectMetrics.Stage.TOTAL, startNanos);
+        performanceLogService.logRequestComplete("REDIRECT", code,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
 
         return ResponseEntity.status(302)
-                .location(URI.create(url.getOriginalUrl()))
+                .location(URI.create(redirect.originalUrl()))
                 .build();
     }
 
     /**
      * Create URL (save to DB + cache)
+     *
+     * shortCode optionnel : s'il est absent, il est généré côté serveur (base62, 6-8 caractères)
+     * Un shortCode fourni ne peut pas commencer par "0" (réservé aux codes générés) → 400
      */
     @PostMapping("/create")
-    public ResponseEntity<Url> createUrl(@Valid @RequestBody Url url, HttpServletRequest request) {
+    public ResponseEntity<?> createUrl(@Valid @RequestBody Url url, HttpServletRequest request) {
+        if (ShortCodeGenerator.isReserved(url.getShortCode())) {
+            return ResponseEntity.badRequest().body(Map.of("shortCode",
+                    "Short codes starting with '" + ShortCodeGenerator.GENERATED_PREFIX + "' are reserved"));
+        }
         String clientIp = getClientIp(request);
         performanceLogService.logRequestStart("CREATE", url.getShortCode(), clientIp);
 
@@ -86,7 +172,7 @@ public class UrlController {
         // 2. Save to cache (write-through)
         redisService.set(savedUrl.getShortCode(), savedUrl);
 
-        performanceLogService.logRequestComplete("CREATE", url.getShortCode(), 0);
+        performanceLogService.logRequestComplete("CREATE", savedUrl.getShortCode(), 0);
         return ResponseEntity.ok(savedUrl);
     }
 
@@ -130,35 +216,191 @@ public class UrlController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Statistiques d'un lien depuis les pré-agrégats Redis (pas de scan des événements)
+     *
+     * GET /api/url/{code}/stats?from=2026-10-17T00:00:00Z&to=2026-10-17T23:59:59Z&granularity=HOUR
+     * Par défaut : les 24 dernières heures, par heure
+     */
+    @GetMapping("/{code}/stats")
+    public ResponseEntity<Map<String, Object>> getStats(
+            @PathVariable String code,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "HOUR") ClickStatsService.Granularity granularity) {
+        if (!bloomFilter.mightContain(code)) {
+            return ResponseEntity.notFound().build();
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        try {
+            return ResponseEntity.ok(clickStatsService.query(code, start, end, granularity));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (DataAccessException e) {
+            // Shard du code indisponible (breaker ouvert ou erreur) : pas de failover (les buckets ne vivent que sur ce shard)
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Stats temporarily unavailable"));
+        }
+    }
+
+    /**
+     * Listing paginé par curseur (keyset sur id)
+     *
+     * GET /api/url/all?after={nextCursor}&size=100
+     * Réponse : { urls, nextCursor } ; nextCursor = null → dernière page
+     * Table entière : GET /api/url/export (NDJSON en streaming)
+     */
     @GetMapping("/all")
-    public ResponseEntity<List<Url>> getAllUrls(HttpServletRequest request) {
+    public ResponseEntity<Map<String, Object>> getAllUrls(@RequestParam(defaultValue = "0") long after,
+                                                          @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                                                          HttpServletRequest request) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "Page size must be between 1 and " + MAX_PAGE_SIZE + ", use /api/url/export for a full dump"));
+        }
+
+        long startTime = System.currentTimeMillis();
+        String clientIp = getClientIp(request);
+        performanceLogService.logRequestStart("GET_ALL", "after=" + after, clientIp);
+
+        List<Url> urls = urlService.getPage(after, size);
+        Long nextCursor = urls.size() < size ? null : urls.get(urls.size() - 1).getId();
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("urls", urls);
+        page.put("nextCursor", nextCursor);
+
+        performanceLogService.logRequestComplete("GET_ALL", "after=" + after, System.currentTimeMillis() - startTime);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Export complet en NDJSON, lu par curseur DB forward-only → mémoire constante quelle que soit la table
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportUrls(HttpServletRequest request) {
         String clientIp = getClientIp(request);
-        performanceLogService.logRequestStart("GET_ALL", "N/A", clientIp);
+        performanceLogService.logRequestStart("EXPORT", "N/A", clientIp);
+
+        StreamingResponseBody body = outputStream -> {
+            long startTime = System.currentTimeMillis();
+            long rows = urlExportService.exportNdjson(outputStream);
+            performanceLogService.logRequestComplete("EXPORT", rows + " rows", System.currentTimeMillis() - startTime);
+        };
+        return ResponseEntity.ok().header("Content-Type", NDJSON).body(body);
+    }
+
+    /**
+     * Batch resolve : N codes en 1 requête (1 seule requête pour le rate limiting)
+     *
+     * Flow :
+     * 1. Bloom filter (codes inexistants écartés)
+     * 2. Cache : groupé par shard, 1 MGET par shard en parallèle
+     * 3. Miss : 1 seule requête IN (...) en base
+     *
+     * Réponse : { code → originalUrl | null }
+     */
+    @PostMapping(value = "/resolve", produces = "application/json")
+    public ResponseEntity<?> resolve(@RequestBody List<String> codes, HttpServletRequest request) {
+        if (codes.size() > MAX_RESOLVE_BATCH) {
+            return ResponseEntity.badRequest().body(Map.of("error",
+                    "Batch too large (max " + MAX_RESOLVE_BATCH + "), use Accept: " + NDJSON));
+        }
 
-        List<Url> urls = urlService.getAll();
-        performanceLogService.logRequestComplete("GET_ALL", "N/A", 0);
+        long startTime = System.currentTimeMillis();
+        String clientIp = getClientIp(request);
+        performanceLogService.logRequestStart("RESOLVE", codes.size() + " codes", clientIp);
 
-        return ResponseEntity.ok(urls);
+        Map<String, String> resolved = urlService.resolveAll(codes);
+
+        performanceLogService.logRequestComplete("RESOLVE", codes.size() + " codes",
+                System.currentTimeMillis() - startTime);
+        return ResponseEntity.ok(resolved);
+    }
+
+    /**
+     * Batch resolve en streaming : traité par chunks, 1 ligne JSON par code écrite au fil de l'eau
+     * → mémoire constante quelle que soit la taille du batch
+     *
+     * Le corps (tableau JSON de codes) est lu au fil de l'eau (JsonParser sur l'InputStream de la requête),
+     * jamais matérialisé en List : au plus RESOLVE_CHUNK_SIZE codes en mémoire, en entrée comme en sortie.
+     * ⚠️ Élément invalide au milieu du tableau : le statut 200 est déjà parti → dernière ligne {"error": ...}
+     */
+    @PostMapping(value = "/resolve", produces = NDJSON)
+    public ResponseEntity<?> resolveStream(HttpServletRequest request) throws IOException {
+        String clientIp = getClientIp(request);
+        JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream());
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.close();
+                return ResponseEntity.badRequest().body(Map.of("error", "Expected a JSON array of short codes"));
+            }
+        } catch (JsonProcessingException e) {
+            parser.close();
+            return ResponseEntity.badRequest().body(Map.of("error", "Malformed JSON body"));
+        }
+        performanceLogService.logRequestStart("RESOLVE_STREAM", "streamed body", clientIp);
+
+        StreamingResponseBody body = outputStream -> {
+            long startTime = System.currentTimeMillis();
+            long total = 0;
+            List<String> chunk = new ArrayList<>(RESOLVE_CHUNK_SIZE);
+            try (parser) {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.VALUE_STRING) {
+                        throw new JsonParseException(parser, "Expected a short code string, got " + token);
+                    }
+                    chunk.add(parser.getText());
+                    if (chunk.size() == RESOLVE_CHUNK_SIZE) {
+                        total += chunk.size();
+                        writeNdjson(outputStream, urlService.resolveAll(chunk));
+                        outputStream.flush();
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    total += chunk.size();
+                    writeNdjson(outputStream, urlService.resolveAll(chunk));
+                }
+            } catch (JsonProcessingException e) {
+                outputStream.write(objectMapper.writeValueAsBytes(Map.of("error", "Malformed JSON body after "
+                        + total + " codes: " + e.getOriginalMessage())));
+                outputStream.write('\n');
+            }
+            outputStream.flush();
+            performanceLogService.logRequestComplete("RESOLVE_STREAM", total + " codes",
+                    System.currentTimeMillis() - startTime);
+        };
+        return ResponseEntity.ok().header("Content-Type", NDJSON).body(body);
     }
 
     // ---------------------- DEBUG ENDPOINTS (remove in production) ----------------------
 
     @PostMapping("/debug/set")
     public String debugSetUrl(@RequestParam String code, @RequestParam String originalUrl) {
-        Url url = new Url();
-        url.setShortCode(code);
-        url.setOriginalUrl(originalUrl);
-        redisService.set(code, url);
+        redisService.set(code, new CachedRedirect(originalUrl));
         return "✅ Saved to cache: " + code;
     }
 
     @GetMapping("/debug/get")
     public String debugGetUrl(@RequestParam String code) {
-        Url url = redisService.get(code);
-        return (url != null) ? "✅ " + url.getOriginalUrl() : "❌ Not found in cache";
+        CachedRedirect redirect = redisService.get(code);
+        return (redirect != null) ? "✅ " + redirect.originalUrl() : "❌ Not found in cache";
     }
 
     // ---------------------- Util ----------------------
+    private void writeNdjson(OutputStream outputStream, Map<String, String> resolved) throws IOException {
+        for (Map.Entry<String, String> entry : resolved.entrySet()) {
+            Map<String, String> line = new LinkedHashMap<>();
+            line.put("code", entry.getKey());
+            line.put("originalUrl", entry.getValue());
+            outputStream.write(objectMapper.writeValueAsBytes(line));
+            outputStream.write('\n');
+        }
+    }
+
     private String getClientIp(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
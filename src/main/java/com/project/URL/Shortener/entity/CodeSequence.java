@@ -0,0 +1,23 @@
+package com.project.URL.Shortener.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compteur partagé (en base) pour le générateur de short codes
+ *
+ * Chaque nœud "loue" un bloc [nextValue, nextValue + blockSize) → durable aux redémarrages,
+ * aucun bloc n'est jamais attribué 2 fois.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeSequence {
+    @Id
+    private String name;
+    private Long nextValue;
+}
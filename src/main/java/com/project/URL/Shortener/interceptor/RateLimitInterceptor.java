@@ -1,5 +1,6 @@
 package com.project.URL.Shortener.interceptor;
 
+import com.project.URL.Shortener.service.RedirectMetrics;
 import com.project.URL.Shortener.service.RedisRateLimitService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -8,12 +9,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import java.util.Set;
+
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class RateLimitInterceptor implements HandlerInterceptor {
 
+    // Segments de /api/url/** qui ne sont pas des short codes → limite par IP uniquement
+    // (sinon "create" ou "resolve" partageraient 1 seul quota global)
+    private static final Set<String> RESERVED_PATHS = Set.of("create", "resolve", "all", "export");
+
     private final RedisRateLimitService rateLimitService;
+    private final RedirectMetrics redirectMetrics;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -21,7 +29,9 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         String shortCode = extractShortCode(request);
 
         // Vérifier tous les rate limits
+        long startNanos = System.nanoTime();
         boolean allowed = rateLimitService.checkAllRateLimits(ip, shortCode);
+        redirectMetrics.record(RedirectMetrics.Stage.RATE_LIMIT, startNanos);
 
         if (!allowed) {
             log.warn("🚨 Rate limit exceeded - IP: {}, ShortCode: {}", ip, shortCode);
@@ -57,10 +67,11 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         // Extraire le shortCode de /api/url/{shortCode}
         if (path.startsWith("/api/url/")) {
             String[] parts = path.split("/");
-            if (parts.length >= 4) {
-                return parts[3];
+            // /api/url/{code}/stats : lecture des stats, ne consomme pas le quota de redirect du code
+            if (parts.length == 4) {
+                return RESERVED_PATHS.contains(parts[3]) ? null : parts[3];
             }
         }
-        return "unknown";
+        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.project.URL.Shortener.repository;
+
+import com.project.URL.Shortener.entity.CodeSequence;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CodeSequenceRepo extends JpaRepository<CodeSequence, String> {
+
+    // SELECT ... FOR UPDATE : 2 nœuds ne peuvent pas louer le même bloc
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from CodeSequence s where s.name = :name")
+    Optional<CodeSequence> findForUpdate(@Param("name") String name);
+}
@@ -1,9 +1,21 @@
 package com.project.URL.Shortener.repository;
 
 import com.project.URL.Shortener.entity.Url;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import java.util.*;
 public interface UrlRepo extends JpaRepository<Url,Long> {
     Optional<Url> findByShortCode(String shortCode);
 
+    // Batch resolve : 1 seule requête IN (...) pour tous les miss
+    List<Url> findByShortCodeIn(Collection<String> shortCodes);
+
+    // Échantillon de codes (rapport de migration du ring) : pas d'entités chargées
+    @Query("SELECT u.shortCode FROM Url u WHERE u.shortCode IS NOT NULL")
+    List<String> findShortCodes(Pageable pageable);
+
+    // Pagination keyset : WHERE id > :afterId ORDER BY id LIMIT n → coût constant quelle que soit la page
+    List<Url> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
 }
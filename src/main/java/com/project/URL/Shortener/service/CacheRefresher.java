@@ -0,0 +1,140 @@
+package com.project.URL.Shortener.service;
+
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.config.VirtualThreads;
+import com.project.URL.Shortener.entity.Url;
+import com.project.URL.Shortener.repository.UrlRepo;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Refresh anticipé probabiliste des entrées de cache (XFetch, Vattani et al.)
+ *
+ * Pourquoi ?
+ * ❌ Entrée hot qui expire : les requêtes suivantes attendent PostgreSQL (single-flight, mais 1 attente quand même)
+ * ✅ Ici : à chaque hit (L1 ou Redis), tirage XFetch sur l'échéance portée par la valeur (codec v2).
+ *    Plus l'échéance approche, plus le tirage a de chances de déclencher → 1 rechargement DB
+ *    en arrière-plan, la requête est servie avec la valeur en cache sans attendre.
+ *
+ * Condition : now - delta × beta × ln(rand) ≥ expiresAt
+ * - delta = temps de rechargement mesuré, au moins min-delta-ms : un SELECT de quelques ms ne ferait
+ *   déclencher que les codes à plus de 1000 req/s, le plancher couvre aussi les codes à quelques req/s
+ * - beta > 1 : refresh plus tôt (plus de charge DB), beta < 1 : plus tard
+ *
+ * ⚠️ 1 seul refresh en cours par code et par nœud, max-in-flight codes au plus
+ * ⚠️ Écriture en SET XX (RedisService.refresh) : un update invalidé pendant le rechargement n'est pas écrasé
+ */
+@Service
+@Slf4j
+public class CacheRefresher {
+
+    private final UrlRepo urlRepo;
+    private final RedisService redisService;
+    private final boolean enabled;
+    private final double beta;
+    private final long minDeltaMillis;
+    private final int maxInFlight;
+    private final ExecutorService refreshExecutor;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final LongAdder triggered = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder expiredBeforeRefresh = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public CacheRefresher(UrlRepo urlRepo,
+                          RedisService redisService,
+                          @Value("${cache.xfetch.enabled:true}") boolean enabled,
+                          @Value("${cache.xfetch.beta:1.0}") double beta,
+                          @Value("${cache.xfetch.min-delta-ms:1000}") long minDeltaMillis,
+                          @Value("${cache.xfetch.max-in-flight:1000}") int maxInFlight,
+                          @Value("${cache.xfetch.threads:4}") int threads,
+                          @Value(VirtualThreads.ENABLED_PROPERTY) boolean virtualThreads) {
+        this.urlRepo = urlRepo;
+        this.redisService = redisService;
+        this.enabled = enabled;
+        this.beta = beta;
+        this.minDeltaMillis = minDeltaMillis;
+        this.maxInFlight = maxInFlight;
+        this.refreshExecutor = VirtualThreads.newExecutor("cache-refresh", threads, virtualThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Hot path (MVC et event loop réactive) : 1 tirage aléatoire, jamais d'I/O ni d'attente
+     */
+    public void onHit(String shortCode, CachedRedirect redirect) {
+        if (!enabled || redirect.expiresAtMillis() <= 0) {
+            return; // entrée sans échéance connue (v1 / JSON, ou pas encore dans Redis)
+        }
+        double delta = Math.max(redirect.recomputeMillis(), minDeltaMillis);
+        double earlyBy = -delta * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (System.currentTimeMillis() + earlyBy < redirect.expiresAtMillis()) {
+            return;
+        }
+        if (inFlight.size() >= maxInFlight || !inFlight.add(shortCode)) {
+            skipped.increment(); // refresh déjà en cours pour ce code
+            return;
+        }
+        triggered.increment();
+        try {
+            refreshExecutor.execute(() -> refresh(shortCode));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(shortCode);
+        }
+    }
+
+    private void refresh(String shortCode) {
+        try {
+            long start = System.currentTimeMillis();
+            Optional<Url> url = urlRepo.findByShortCode(shortCode);
+            long recomputeMillis = System.currentTimeMillis() - start;
+            if (url.isEmpty()) {
+                return; // supprimé entre-temps : deleteUrl invalide déjà le cache
+            }
+            CachedRedirect redirect = CachedRedirect.from(url.get()).withRecomputeMillis(recomputeMillis);
+            if (redisService.refresh(shortCode, redirect)) {
+                refreshed.increment();
+                log.debug("🔄 Early refresh: {} ({} ms)", shortCode, recomputeMillis);
+            } else {
+                expiredBeforeRefresh.increment();
+            }
+        } catch (Exception e) {
+            failed.increment();
+            log.error("❌ Early refresh failed for {}: {}", shortCode, e.getMessage());
+        } finally {
+            inFlight.remove(shortCode);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("beta", beta);
+        stats.put("minDeltaMs", minDeltaMillis);
+        stats.put("inFlight", inFlight.size());
+        stats.put("triggered", triggered.sum());
+        stats.put("refreshed", refreshed.sum());
+        stats.put("expiredBeforeRefresh", expiredBeforeRefresh.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+}
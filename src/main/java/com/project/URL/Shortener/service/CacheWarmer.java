@@ -0,0 +1,223 @@
+package com.project.URL.Shortener.service;
+
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Warm-up du cache : top-N des codes (click_count) poussés sur leurs shards + cache L1
+ *
+ * Pourquoi ?
+ * ❌ Après un déploiement ou un redémarrage Redis, chaque redirect rate le cache
+ *    → PostgreSQL prend toute la charge pendant des minutes, le temps que le trafic re-remplisse les shards
+ * ✅ Au démarrage (ApplicationRunner → avant ApplicationReadyEvent / readiness ACCEPTING_TRAFFIC) :
+ *    1. Lecture en streaming (fetch size) des N codes les plus cliqués
+ *    2. Par lots : 1 SET pipeliné par shard, shards en parallèle (RedisService.warmShards)
+ *    3. Les plus chauds remplissent aussi le cache L1 (RedisService.setAll : même valeur, même échéance que Redis)
+ * ✅ Shard redémarré (run_id Redis différent) et vide → même warm-up, limité aux clés de ce shard
+ */
+@Component
+@Slf4j
+public class CacheWarmer implements ApplicationRunner {
+
+    private static final int FETCH_SIZE = 5_000;
+
+    private static final String TOP_CODES_SQL =
+            "SELECT short_code, original_url FROM url WHERE short_code IS NOT NULL "
+                    + "ORDER BY click_count DESC NULLS LAST LIMIT ?";
+
+    private final RedisShardManager shardManager;
+    private final RedisService redisService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int topN;
+    private final int localEntries;
+    private final int batchSize;
+    private final long restartMaxKeys;
+
+    // run_id Redis connu par shard : change à chaque redémarrage du process Redis
+    private final Map<String, String> runIds = new ConcurrentHashMap<>();
+
+    private volatile long lastWarmUpAt;
+    private volatile long lastWarmUpDurationMs;
+    private volatile long lastWarmUpKeys;
+    private volatile String lastWarmUpReason;
+
+    public CacheWarmer(RedisShardManager shardManager,
+                       RedisService redisService,
+                       DataSource dataSource,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${cache.warmup.enabled:true}") boolean enabled,
+                       @Value("${cache.warmup.top-n:100000}") int topN,
+                       @Value("${cache.warmup.local-entries:10000}") int localEntries,
+                       @Value("${cache.warmup.batch-size:5000}") int batchSize,
+                       @Value("${cache.warmup.restart-max-keys:1000}") long restartMaxKeys) {
+        this.shardManager = shardManager;
+        this.redisService = redisService;
+        // JdbcTemplate dédié : le fetch size ne doit pas s'appliquer au reste de l'app
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        // PostgreSQL ne streame (curseur) qu'en dehors de l'autocommit
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.topN = topN;
+        this.localEntries = localEntries;
+        this.batchSize = batchSize;
+        this.restartMaxKeys = restartMaxKeys;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        for (RedisShard shard : shardManager.getTopology().getShards()) {
+            String runId = runId(shard);
+            if (runId != null) {
+                runIds.put(shard.getName(), runId);
+            }
+        }
+        warmUp("startup", code -> true, true);
+    }
+
+    /**
+     * Détection des shards redémarrés : run_id changé + (quasi) vide → warm-up de ses clés uniquement
+     *
+     * Un shard redémarré avec persistance (RDB / AOF) garde ses clés → pas de warm-up
+     */
+    @Scheduled(initialDelayString = "${cache.warmup.check-interval-ms:10000}",
+            fixedDelayString = "${cache.warmup.check-interval-ms:10000}")
+    public void checkRestartedShards() {
+        if (!enabled) {
+            return;
+        }
+        for (RedisShard shard : shardManager.getTopology().getShards()) {
+            if (!shard.isAvailable()) {
+                continue; // breaker ouvert : on attend son retour
+            }
+            String runId = runId(shard);
+            if (runId == null) {
+                continue;
+            }
+            String previous = runIds.put(shard.getName(), runId);
+            if (previous == null || previous.equals(runId)) {
+                continue; // nouveau shard (la migration le remplit) ou pas de redémarrage
+            }
+
+            Long size;
+            try {
+                size = shard.execute(template -> template.execute(
+                        (RedisCallback<Long>) connection -> connection.serverCommands().dbSize()));
+            } catch (Exception e) {
+                runIds.put(shard.getName(), previous); // re-tenté au prochain passage
+                continue;
+            }
+            if (size != null && size <= restartMaxKeys) {
+                log.warn("⚠️ Shard {} restarted empty ({} keys), warming up its keys", shard.getName(), size);
+                warmUp("restart " + shard.getName(), code -> shardManager.owner(code) == shard, false);
+            } else {
+                log.info("✅ Shard {} restarted with {} keys (persistence), no warm-up", shard.getName(), size);
+            }
+        }
+    }
+
+    private String runId(RedisShard shard) {
+        try {
+            Properties info = shard.execute(template -> template.execute(
+                    (RedisCallback<Properties>) connection -> connection.serverCommands().info("server")));
+            return info != null ? info.getProperty("run_id") : null;
+        } catch (Exception e) {
+            log.debug("Shard {} INFO failed: {}", shard.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param owned     codes à pousser (tous, ou ceux d'un shard)
+     * @param fillLocal remplir aussi le cache L1 avec les localEntries premiers
+     */
+    private void warmUp(String reason, Predicate<String> owned, boolean fillLocal) {
+        long startTime = System.currentTimeMillis();
+        long[] rows = {0};
+        long[] pushed = {0};
+        try {
+            Map<String, CachedRedirect> batch = new HashMap<>(batchSize * 2);
+            Map<String, CachedRedirect> hottest = new HashMap<>(batchSize * 2);
+            readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query(TOP_CODES_SQL, rs -> {
+                        String code = rs.getString(1);
+                        if (!owned.test(code)) {
+                            return;
+                        }
+                        boolean local = fillLocal && rows[0]++ < localEntries;
+                        Map<String, CachedRedirect> target = local ? hottest : batch;
+                        target.put(code, new CachedRedirect(rs.getString(2)));
+                        if (target.size() >= batchSize) {
+                            pushed[0] += push(target, local);
+                        }
+                    }, topN));
+            pushed[0] += push(hottest, true);
+            pushed[0] += push(batch, false);
+
+            lastWarmUpAt = System.currentTimeMillis();
+            lastWarmUpDurationMs = lastWarmUpAt - startTime;
+            lastWarmUpKeys = pushed[0];
+            lastWarmUpReason = reason;
+            log.info("✅ Cache warm-up ({}) : {} keys in {}ms", reason, pushed[0], lastWarmUpDurationMs);
+        } catch (Exception e) {
+            // Pas bloquant : le cache se remplira avec le trafic
+            log.error("❌ Cache warm-up ({}) failed after {} keys: {}", reason, pushed[0], e.getMessage());
+        }
+    }
+
+    /**
+     * @param local aussi dans le cache L1 (stamp unique : Redis et L1 ont la même échéance)
+     * @return nombre de codes poussés ; le lot est vidé
+     */
+    private int push(Map<String, CachedRedirect> batch, boolean local) {
+        int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+        if (local) {
+            redisService.setAll(batch);
+        } else {
+            redisService.warmShards(batch);
+        }
+        batch.clear();
+        return size;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("topN", topN);
+        stats.put("localEntries", localEntries);
+        stats.put("lastWarmUpReason", lastWarmUpReason);
+        stats.put("lastWarmUpAt", lastWarmUpAt);
+        stats.put("lastWarmUpDurationMs", lastWarmUpDurationMs);
+        stats.put("lastWarmUpKeys", lastWarmUpKeys);
+        stats.put("knownRunIds", new LinkedHashMap<>(runIds));
+        return stats;
+    }
+}
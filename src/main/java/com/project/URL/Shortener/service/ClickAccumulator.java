@@ -0,0 +1,339 @@
+package com.project.URL.Shortener.service;
+
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compteurs de clics pré-agrégés en mémoire, flush périodique vers Redis
+ *
+ * ❌ Avant : INCR + EXPIRE synchrones dans le thread de la requête (le @Async ne
+ *    s'appliquait pas : appel interne au bean)
+ * ✅ Après : le redirect fait juste un LongAdder.increment() (striped, sans contention),
+ *    un flush toutes les ~1s envoie des INCRBY pipelinés (1 par code, pas 1 par clic)
+ *
+ * Mémoire bornée : max-keys codes distincts en attente, au-delà les clics sont comptés
+ * comme "dropped". Flush final à l'arrêt (@PreDestroy).
+ *
+ * Clés click:{code} réparties sur le ring des shards (plus tout sur le Redis principal),
+ * 1 pipeline par shard et par flush. Shard indisponible → failover du ring, sinon retenté au flush suivant.
+ * SyncJob draine tous les shards : un compteur écrit sur un shard de failover n'est pas perdu.
+ *
+ * Retrait d'un compteur inactif (drain) : cf. Counter, aucun clic concurrent ne tombe sur un compteur détaché.
+ */
+@Component
+@Slf4j
+public class ClickAccumulator {
+
+    public static final String KEY_PREFIX = "click:";
+    private static final long KEY_TTL_SECONDS = TimeUnit.HOURS.toSeconds(24);
+    private static final int PIPELINE_BATCH_SIZE = 1000;
+
+    private final RedisShardManager shardManager;
+    private final boolean enabled;
+    private final int maxKeys;
+
+    private final ConcurrentHashMap<String, Counter> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Stats
+    private final LongAdder droppedClicks = new LongAdder();
+    private final LongAdder flushedClicks = new LongAdder();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private volatile long lastFlushDurationMs;
+
+    public ClickAccumulator(RedisShardManager shardManager,
+                            @Value("${clicks.accumulator.enabled:true}") boolean enabled,
+                            @Value("${clicks.accumulator.max-keys:100000}") int maxKeys) {
+        this.shardManager = shardManager;
+        this.enabled = enabled;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Compteur d'un code : clics + poignée de main avec drain() pour le retrait
+     *
+     * ❌ Sans : record() lit le compteur, drain() le retire (vide) et lit sa dernière valeur,
+     *    puis record() incrémente un LongAdder détaché → clic perdu
+     * ✅ record() : started++, relit retired, incrémente seulement si actif, finished++
+     *    drain() : retire du map, retired = true, attend started == finished, puis lit les clics
+     *    → soit record() voit retired (et recommence sur un nouveau compteur), soit drain() attend son incrément
+     * Tout reste en LongAdder (striped) : pas de point de contention sur un code viral.
+     */
+    private static final class Counter {
+        private final LongAdder clicks = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder finished = new LongAdder();
+        private volatile boolean retired;
+
+        boolean tryIncrement() {
+            started.increment();
+            try {
+                if (retired) {
+                    return false;
+                }
+                clicks.increment();
+                return true;
+            } finally {
+                finished.increment();
+            }
+        }
+
+        /**
+         * Appelé une seule fois, après le retrait du map
+         *
+         * @return clics arrivés depuis la dernière lecture (à réinjecter)
+         */
+        long retire() {
+            retired = true;
+            // finished lu AVANT started : compteurs monotones → égalité = plus aucun incrément en cours
+            while (finished.sum() != started.sum()) {
+                Thread.onSpinWait();
+            }
+            return clicks.sum();
+        }
+    }
+
+    /**
+     * Hot path : aucune I/O quand l'accumulateur est actif
+     */
+    public void record(String shortCode) {
+        if (!enabled) {
+            writeThrough(shortCode);
+            return;
+        }
+
+        while (true) {
+            Counter counter = pending.get(shortCode);
+            if (counter == null) {
+                if (pending.size() >= maxKeys) {
+                    droppedClicks.increment();
+                    return;
+                }
+                counter = pending.computeIfAbsent(shortCode, k -> new Counter());
+            }
+            if (counter.tryIncrement()) {
+                return;
+            }
+            // Compteur retiré par drain() entre-temps : déjà hors du map → nouveau compteur
+        }
+    }
+
+    /**
+     * Variante pour l'event loop réactive : en mode legacy (accumulateur désactivé),
+     * INCR + EXPIRE via Lettuce réactif au lieu d'un appel bloquant
+     */
+    public Mono<Void> recordReactive(String shortCode) {
+        if (enabled) {
+            record(shortCode);
+            return Mono.empty();
+        }
+        RedisShard shard = shardManager.route(shortCode);
+        if (shard == null) {
+            droppedClicks.increment();
+            return Mono.empty();
+        }
+        String redisKey = key(shortCode);
+        return shard.executeStringReactive(template -> template.opsForValue().increment(redisKey)
+                        .then(template.expire(redisKey, Duration.ofSeconds(KEY_TTL_SECONDS))))
+                .onErrorResume(e -> {
+                    log.error("❌ Click increment failed for {}: {}", shortCode, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Scheduled(fixedDelayString = "${clicks.accumulator.flush-interval-ms:1000}")
+    public void flush() {
+        // Un flush déjà en cours → on laisse passer ce tick
+        if (!enabled || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Flushing {} pending click counters before shutdown", pending.size());
+        flushLock.lock(); // attendre un éventuel flush en cours
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Long> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<RedisShard, List<Map.Entry<String, Long>>> byShard = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            byShard.computeIfAbsent(shardManager.route(entry.getKey()), shard -> new ArrayList<>()).add(entry);
+        }
+
+        byShard.forEach((shard, entries) -> {
+            for (int from = 0; from < entries.size(); from += PIPELINE_BATCH_SIZE) {
+                List<Map.Entry<String, Long>> batch =
+                        entries.subList(from, Math.min(from + PIPELINE_BATCH_SIZE, entries.size()));
+                try {
+                    if (shard == null) {
+                        throw new IllegalStateException("No Redis shard available");
+                    }
+                    writeBatch(shard, batch);
+                    batch.forEach(entry -> flushedClicks.add(entry.getValue()));
+                } catch (Exception e) {
+                    // Remettre les deltas en attente → retentés au prochain flush
+                    flushFailures.incrementAndGet();
+                    batch.forEach(entry -> restore(entry.getKey(), entry.getValue()));
+                    log.error("❌ Click flush failed for {} codes on {}: {}", batch.size(), shard, e.getMessage());
+                }
+            }
+        });
+
+        flushCount.incrementAndGet();
+        lastFlushDurationMs = System.currentTimeMillis() - startTime;
+        log.debug("✅ Click flush: {} codes in {}ms", deltas.size(), lastFlushDurationMs);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingKeys", pending.size());
+        stats.put("maxKeys", maxKeys);
+        stats.put("flushedClicks", flushedClicks.sum());
+        stats.put("droppedClicks", droppedClicks.sum());
+        stats.put("flushes", flushCount.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("lastFlushDurationMs", lastFlushDurationMs);
+        return stats;
+    }
+
+    /**
+     * Récupère les deltas sans perdre de clics concurrents :
+     * on soustrait exactement ce qu'on a lu (add(-count)) au lieu d'un reset.
+     * Les codes sans clic depuis le dernier flush sont retirés pour libérer la mémoire.
+     */
+    private Map<String, Long> drain() {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> entry : pending.entrySet()) {
+            String shortCode = entry.getKey();
+            Counter counter = entry.getValue();
+            long count = counter.clicks.sum();
+
+            if (count == 0) {
+                if (pending.remove(shortCode, counter)) {
+                    // Clics arrivés entre sum() et le retrait → réinjectés (retire() attend les incréments en cours)
+                    long late = counter.retire();
+                    if (late != 0) {
+                        restore(shortCode, late);
+                    }
+                }
+                continue;
+            }
+
+            counter.clicks.add(-count);
+            deltas.put(shortCode, count);
+        }
+        return deltas;
+    }
+
+    /**
+     * Thread du flush uniquement (seul à retirer des compteurs) : le compteur du map n'est jamais retiré ici
+     */
+    private void restore(String shortCode, long count) {
+        pending.computeIfAbsent(shortCode, k -> new Counter()).clicks.add(count);
+    }
+
+    private void writeBatch(RedisShard shard, List<Map.Entry<String, Long>> batch) {
+        shard.executeString(template -> template.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Long> entry : batch) {
+                incrementBy(connection, entry.getKey(), entry.getValue());
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Hash tag : click:{abc123} est placé sur le shard du code (et y reste lors d'une migration)
+     */
+    public static String key(String shortCode) {
+        return KEY_PREFIX + "{" + shortCode + "}";
+    }
+
+    /**
+     * Inverse de key(), accepte aussi l'ancien format click:abc123 (compteurs écrits avant le hash tag)
+     */
+    public static String shortCodeOf(String key) {
+        String code = key.substring(KEY_PREFIX.length());
+        return code.startsWith("{") && code.endsWith("}") ? code.substring(1, code.length() - 1) : code;
+    }
+
+    /**
+     * URL supprimée : clics en attente abandonnés + compteur Redis supprimé (best effort)
+     */
+    public void discard(String shortCode) {
+        pending.remove(shortCode);
+        RedisShard shard = shardManager.route(shortCode);
+        if (shard != null) {
+            shard.executeString(template -> template.delete(key(shortCode)));
+        }
+    }
+
+    private static void incrementBy(RedisConnection connection, String shortCode, long delta) {
+        byte[] key = key(shortCode).getBytes(StandardCharsets.UTF_8);
+        connection.stringCommands().incrBy(key, delta);
+        connection.keyCommands().expire(key, KEY_TTL_SECONDS);
+    }
+
+    /**
+     * Mode legacy (accumulateur désactivé) : INCR + EXPIRE synchrones, utile pour le benchmark
+     * ⚠️ Bloquant : jamais sur l'event loop réactive (cf. recordReactive)
+     */
+    private void writeThrough(String shortCode) {
+        RedisShard shard = shardManager.route(shortCode);
+        if (shard == null) {
+            droppedClicks.increment();
+            return;
+        }
+        try {
+            String redisKey = key(shortCode);
+            shard.executeString(template -> {
+                template.opsForValue().increment(redisKey, 1);
+                return template.expire(redisKey, 24, TimeUnit.HOURS);
+            });
+        } catch (Exception e) {
+            log.error("❌ Click increment failed for {}: {}", shortCode, e.getMessage());
+        }
+    }
+}
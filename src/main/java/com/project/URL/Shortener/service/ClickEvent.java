@@ -0,0 +1,9 @@
+package com.project.URL.Shortener.service;
+
+/**
+ * Un clic (redirect servi) : persisté en lot dans la table click_event
+ *
+ * @param clickedAt epoch ms
+ */
+public record ClickEvent(String shortCode, long clickedAt, String referrer, String userAgent, String clientIp) {
+}
@@ -0,0 +1,307 @@
+package com.project.URL.Shortener.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Événements de clic (timestamp, referrer, user agent, IP) → table click_event, par lots, hors du redirect
+ *
+ * Flow :
+ * 1. Redirect : publish() = 1 offer() dans un ring buffer borné (ClickEventRing), jamais bloquant
+ *    → ring plein (base lente / en panne) : l'événement est perdu et compté (droppedEvents)
+ * 2. N consommateurs (threads dédiés) vident le ring par lots : lot plein ou lot le plus ancien > max-delay
+ * 3. 1 INSERT JDBC batché par lot dans click_event (append-only)
+ *    + pré-agrégats par minute / heure / jour dans Redis (ClickStatsService)
+ *
+ * Table click_event partitionnée par jour (PostgreSQL, PARTITION BY RANGE) :
+ * ✅ Partitions créées à l'avance, rétention = DROP d'une partition (pas de DELETE massif ni de VACUUM)
+ * ✅ Requêtes par période → seules les partitions concernées sont lues
+ * ⚠️ Autre base (H2 en test) : table simple, non partitionnée
+ */
+@Component
+@Slf4j
+public class ClickEventPipeline {
+
+    private static final String TABLE = "click_event";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int MAX_TEXT_LENGTH = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO click_event (clicked_at, short_code, referrer, user_agent, client_ip) VALUES (?, ?, ?, ?, ?)";
+    private static final String COLUMNS = "(clicked_at TIMESTAMP NOT NULL, short_code VARCHAR(16) NOT NULL, "
+            + "referrer VARCHAR(512), user_agent VARCHAR(512), client_ip VARCHAR(45))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClickStatsService clickStatsService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int consumers;
+    private final int partitionsAhead;
+    private final int retentionDays;
+    private final ClickEventRing<ClickEvent> ring;
+
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    private volatile boolean running;
+    private volatile boolean partitioned;
+
+    // Stats
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder persistedEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final Timer flushTimer;
+    private volatile long lastFlushDurationMs;
+    private volatile int lastBatchSize;
+
+    public ClickEventPipeline(DataSource dataSource,
+                              MeterRegistry registry,
+                              ClickStatsService clickStatsService,
+                              @Value("${clicks.events.enabled:true}") boolean enabled,
+                              @Value("${clicks.events.capacity:65536}") int capacity,
+                              @Value("${clicks.events.batch-size:2000}") int batchSize,
+                              @Value("${clicks.events.max-delay-ms:500}") long maxDelayMs,
+                              @Value("${clicks.events.consumers:2}") int consumers,
+                              @Value("${clicks.events.partitions-ahead-days:3}") int partitionsAhead,
+                              @Value("${clicks.events.retention-days:90}") int retentionDays) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.clickStatsService = clickStatsService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.consumers = consumers;
+        this.partitionsAhead = partitionsAhead;
+        this.retentionDays = retentionDays;
+        this.ring = new ClickEventRing<>(capacity);
+
+        FunctionCounter.builder("clicks.events.published", publishedEvents, LongAdder::sum).register(registry);
+        FunctionCounter.builder("clicks.events.dropped", droppedEvents, LongAdder::sum).register(registry);
+        FunctionCounter.builder("clicks.events.persisted", persistedEvents, LongAdder::sum).register(registry);
+        FunctionCounter.builder("clicks.events.failed", failedEvents, LongAdder::sum).register(registry);
+        Gauge.builder("clicks.events.queue.depth", ring, ClickEventRing::size).register(registry);
+        this.flushTimer = Timer.builder("clicks.events.flush")
+                .description("Click event batch insert latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            createTable();
+            maintainPartitions();
+        } catch (Exception e) {
+            // Les événements resteront en échec (comptés) jusqu'à ce que la table existe
+            log.error("❌ click_event table setup failed: {}", e.getMessage());
+        }
+
+        running = true;
+        for (int i = 0; i < consumers; i++) {
+            Thread thread = new Thread(this::consume, "click-events-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            consumerThreads.add(thread);
+        }
+        log.info("✅ Click event pipeline started (capacity={}, consumers={}, partitioned={})",
+                ring.capacity(), consumers, partitioned);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        for (Thread thread : consumerThreads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10)); // les consommateurs vident le ring avant de sortir
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Click event pipeline stopped: {} events left in ring", ring.size());
+    }
+
+    /**
+     * Hot path : 1 allocation + 1 CAS, aucune I/O
+     */
+    public void publish(String shortCode, String referrer, String userAgent, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        if (ring.offer(new ClickEvent(shortCode, System.currentTimeMillis(), referrer, userAgent, clientIp))) {
+            publishedEvents.increment();
+        } else {
+            droppedEvents.increment();
+        }
+    }
+
+    private void consume() {
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        long firstEventAt = 0;
+        while (running || ring.size() > 0) {
+            int drained = ring.drainTo(batch, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            if (firstEventAt == 0) {
+                firstEventAt = System.nanoTime();
+            }
+            boolean due = System.nanoTime() - firstEventAt >= maxDelayNanos;
+            if (batch.size() >= batchSize || due || !running) {
+                persist(batch);
+                batch.clear();
+                firstEventAt = 0;
+            } else if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        if (!batch.isEmpty()) {
+            persist(batch);
+        }
+    }
+
+    private void persist(List<ClickEvent> batch) {
+        // Pré-agrégats Redis (stats par minute / heure / jour) : indépendants du succès de l'INSERT
+        clickStatsService.record(batch);
+
+        long startNanos = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setTimestamp(1, new Timestamp(event.clickedAt()));
+                ps.setString(2, event.shortCode());
+                ps.setString(3, truncate(event.referrer()));
+                ps.setString(4, truncate(event.userAgent()));
+                ps.setString(5, event.clientIp());
+            });
+            persistedEvents.add(batch.size());
+        } catch (Exception e) {
+            // Pas de retry : un lot rejoué pendant une panne DB ferait déborder le ring pour tout le monde
+            failedEvents.add(batch.size());
+            log.error("❌ Click event batch insert failed ({} events): {}", batch.size(), e.getMessage());
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        flushTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        batches.increment();
+        lastFlushDurationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        lastBatchSize = batch.size();
+    }
+
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_TEXT_LENGTH ? value : value.substring(0, MAX_TEXT_LENGTH);
+    }
+
+    // ---------------------- Table / partitions ----------------------
+
+    private void createTable() throws Exception {
+        String product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                DatabaseMetaData::getDatabaseProductName);
+        partitioned = "PostgreSQL".equalsIgnoreCase(product);
+        if (partitioned) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " " + COLUMNS + " PARTITION BY RANGE (clicked_at)");
+            // Filet de sécurité : horloge décalée, job de partitions en retard
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT");
+        } else {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " " + COLUMNS);
+        }
+    }
+
+    /**
+     * 1 partition par jour, créées partitions-ahead-days à l'avance ; au-delà de retention-days → DROP
+     */
+    @Scheduled(initialDelayString = "${clicks.events.partition-check-interval-ms:3600000}",
+            fixedDelayString = "${clicks.events.partition-check-interval-ms:3600000}")
+    public void maintainPartitions() {
+        if (!enabled || !partitioned) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day <= partitionsAhead; day++) {
+            LocalDate from = today.plusDays(day);
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(from) + " PARTITION OF " + TABLE
+                        + " FOR VALUES FROM ('" + from + "') TO ('" + from.plusDays(1) + "')");
+            } catch (Exception e) {
+                log.error("❌ Cannot create click_event partition for {}: {}", from, e.getMessage());
+            }
+        }
+
+        LocalDate oldest = today.minusDays(retentionDays);
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?", String.class, TABLE);
+        for (String partition : partitions) {
+            LocalDate day = partitionDay(partition);
+            if (day != null && day.isBefore(oldest)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                log.info("🧹 Dropped click_event partition {} (retention {} days)", partition, retentionDays);
+            }
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return TABLE + "_p" + PARTITION_SUFFIX.format(day);
+    }
+
+    private static LocalDate partitionDay(String partition) {
+        String prefix = TABLE + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null; // partition par défaut
+        }
+        try {
+            return LocalDate.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        ValueAtPercentile[] percentiles = flushTimer.takeSnapshot().percentileValues();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("partitioned", partitioned);
+        stats.put("queueDepth", ring.size());
+        stats.put("capacity", ring.capacity());
+        stats.put("publishedEvents", publishedEvents.sum());
+        stats.put("droppedEvents", droppedEvents.sum());
+        stats.put("persistedEvents", persistedEvents.sum());
+        stats.put("failedEvents", failedEvents.sum());
+        stats.put("batches", batches.sum());
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("lastFlushDurationMs", lastFlushDurationMs);
+        for (ValueAtPercentile percentile : percentiles) {
+            stats.put("flushP" + Math.round(percentile.percentile() * 100) + "Ms",
+                    percentile.value(TimeUnit.MILLISECONDS));
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,119 @@
+package com.project.URL.Shortener.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring buffer borné, multi-producteurs / multi-consommateurs, sans lock (séquences par slot)
+ *
+ * Pourquoi pas ArrayBlockingQueue ?
+ * ❌ 1 seul ReentrantLock partagé par tous les threads de redirect + les consommateurs
+ * ✅ Ici : 1 CAS sur la position d'écriture, le slot est ensuite publié par sa séquence
+ *    → les producteurs ne se bloquent jamais, offer() échoue immédiatement si le ring est plein
+ *
+ * Principe (file bornée de D. Vyukov) : sequence[i] indique à qui appartient le slot i
+ * - sequence == position          → libre pour le producteur de cette position
+ * - sequence == position + 1      → rempli, lisible par le consommateur de cette position
+ * - sequence == position + capacity → libéré, réutilisable au tour suivant
+ */
+public final class ClickEventRing<T> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+
+    /**
+     * @param capacity arrondie à la puissance de 2 supérieure (index par masque)
+     */
+    public ClickEventRing(int capacity) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Ring capacity must be between 2 and 2^30: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Non bloquant : false si le ring est plein (l'appelant compte le drop)
+     */
+    public boolean offer(T item) {
+        long position = writePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (writePosition.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, item);
+                    sequences.set(index, position + 1); // publication
+                    return true;
+                }
+                position = writePosition.get();
+            } else if (difference < 0) {
+                return false; // slot pas encore libéré par le consommateur du tour précédent → plein
+            } else {
+                position = writePosition.get(); // un autre producteur a pris cette position
+            }
+        }
+    }
+
+    /**
+     * @return l'élément le plus ancien, null si le ring est vide
+     */
+    public T poll() {
+        long position = readPosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (readPosition.compareAndSet(position, position + 1)) {
+                    T item = slots.get(index);
+                    slots.lazySet(index, null);
+                    sequences.set(index, position + capacity); // slot rendu aux producteurs
+                    return item;
+                }
+                position = readPosition.get();
+            } else if (difference < 0) {
+                return null; // rien de publié à cette position
+            } else {
+                position = readPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Vide jusqu'à max éléments dans target
+     *
+     * @return nombre d'éléments ajoutés
+     */
+    public int drainTo(List<T> target, int max) {
+        int drained = 0;
+        T item;
+        while (drained < max && (item = poll()) != null) {
+            target.add(item);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Approximatif sous concurrence (2 lectures non atomiques)
+     */
+    public int size() {
+        long size = writePosition.get() - readPosition.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,282 @@
+package com.project.URL.Shortener.service;
+
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques de clics pré-agrégées dans Redis, sur le shard propriétaire du code
+ *
+ * Par code et par bucket (minute / heure / jour, UTC) :
+ * - stats:{code}:m:{minute}  → compteur (INCRBY)
+ * - stats:{code}:mu:{minute} → HyperLogLog des IPs clientes (PFADD, ~12KB max, 0.81% d'erreur)
+ * (idem :h / :hu et :d / :du)
+ *
+ * Pourquoi ?
+ * ❌ Url.clickCount : 1 total, aucune répartition dans le temps, pas de visiteurs uniques
+ * ❌ Compter sur click_event à la lecture : scan de millions de lignes par requête
+ * ✅ Lecture = 1 pipeline GET + PFCOUNT sur 1 seul shard, quelle que soit la période
+ *
+ * Agrégation : alimenté par les lots de ClickEventPipeline (pas par clic), regroupés par (code, minute)
+ * → 1 pipeline par shard et par lot. Les buckets heure / jour sont incrémentés au même moment que la minute
+ *   (rollup à l'écriture) : pas de job de compaction, pas de fenêtre où une minute close n'est comptée nulle part.
+ *
+ * Mémoire bornée par les TTL : minutes (stats.retention.minute-hours), heures, jours
+ *
+ * Lecture pendant une migration (dual-read) : les buckets pas encore déplacés sont encore sur l'ancien
+ * propriétaire → clics additionnés, visiteurs = max des 2 shards (borne basse : pas d'union HLL entre shards)
+ */
+@Service
+@Slf4j
+public class ClickStatsService {
+
+    public enum Granularity {
+        MINUTE("m", TimeUnit.MINUTES.toMillis(1)),
+        HOUR("h", TimeUnit.HOURS.toMillis(1)),
+        DAY("d", TimeUnit.DAYS.toMillis(1));
+
+        private final String suffix;
+        private final long bucketMillis;
+
+        Granularity(String suffix, long bucketMillis) {
+            this.suffix = suffix;
+            this.bucketMillis = bucketMillis;
+        }
+    }
+
+    private static final String KEY_PREFIX = "stats:";
+    // Borne le pipeline de lecture (1440 minutes = 1 jour)
+    public static final int MAX_BUCKETS = 1440;
+
+    private final RedisShardManager shardManager;
+    private final boolean enabled;
+    private final Map<Granularity, Long> ttlSeconds = new EnumMap<>(Granularity.class);
+
+    private final LongAdder recordedEvents = new LongAdder();
+    private final LongAdder skippedEvents = new LongAdder();
+
+    public ClickStatsService(RedisShardManager shardManager,
+                             @Value("${stats.enabled:true}") boolean enabled,
+                             @Value("${stats.retention.minute-hours:48}") long minuteRetentionHours,
+                             @Value("${stats.retention.hour-days:30}") long hourRetentionDays,
+                             @Value("${stats.retention.day-days:400}") long dayRetentionDays) {
+        this.shardManager = shardManager;
+        this.enabled = enabled;
+        ttlSeconds.put(Granularity.MINUTE, TimeUnit.HOURS.toSeconds(minuteRetentionHours));
+        ttlSeconds.put(Granularity.HOUR, TimeUnit.DAYS.toSeconds(hourRetentionDays));
+        ttlSeconds.put(Granularity.DAY, TimeUnit.DAYS.toSeconds(dayRetentionDays));
+    }
+
+    // ---------------------- Écriture ----------------------
+
+    /**
+     * Un lot d'événements → 1 pipeline par shard propriétaire
+     * Shard indisponible (breaker) : les événements de ses codes sont ignorés (comptés), pas de failover
+     * (des buckets éparpillés sur 2 shards fausseraient les lectures)
+     */
+    public void record(List<ClickEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        Map<RedisShard, Map<String, Map<Long, Bucket>>> byShard = new IdentityHashMap<>();
+        for (ClickEvent event : events) {
+            RedisShard owner = shardManager.owner(event.shortCode());
+            long minute = event.clickedAt() / Granularity.MINUTE.bucketMillis;
+            Bucket bucket = byShard.computeIfAbsent(owner, shard -> new HashMap<>())
+                    .computeIfAbsent(event.shortCode(), code -> new HashMap<>())
+                    .computeIfAbsent(minute, m -> new Bucket());
+            bucket.clicks++;
+            if (event.clientIp() != null) {
+                bucket.visitors.add(event.clientIp());
+            }
+        }
+
+        byShard.forEach((shard, byCode) -> {
+            int count = byCode.values().stream().flatMap(m -> m.values().stream()).mapToInt(b -> b.clicks).sum();
+            if (!shard.isAvailable()) {
+                skippedEvents.add(count);
+                return;
+            }
+            try {
+                shard.execute(template -> template.executePipelined((RedisCallback<Object>) connection -> {
+                    byCode.forEach((code, byMinute) -> byMinute.forEach((minute, bucket) ->
+                            write(connection, code, minute * Granularity.MINUTE.bucketMillis, bucket)));
+                    return null;
+                }, RedisSerializer.byteArray()));
+                recordedEvents.add(count);
+            } catch (Exception e) {
+                skippedEvents.add(count);
+                log.error("❌ Stats write failed on {} ({} events): {}", shard.getName(), count, e.getMessage());
+            }
+        });
+    }
+
+    private void write(RedisConnection connection, String code, long timestamp, Bucket bucket) {
+        byte[][] visitors = bucket.visitors.stream()
+                .map(ip -> ip.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        for (Granularity granularity : Granularity.values()) {
+            long bucketId = timestamp / granularity.bucketMillis;
+            long ttl = ttlSeconds.get(granularity);
+            byte[] counterKey = key(code, granularity.suffix, bucketId);
+            connection.stringCommands().incrBy(counterKey, bucket.clicks);
+            connection.keyCommands().expire(counterKey, ttl);
+            if (visitors.length > 0) {
+                byte[] visitorsKey = key(code, granularity.suffix + "u", bucketId);
+                connection.hyperLogLogCommands().pfAdd(visitorsKey, visitors);
+                connection.keyCommands().expire(visitorsKey, ttl);
+            }
+        }
+    }
+
+    // ---------------------- Lecture ----------------------
+
+    /**
+     * 1 pipeline sur le shard propriétaire : GET + PFCOUNT par bucket, + 1 PFCOUNT multi-clés
+     * (cardinalité de l'union = visiteurs uniques sur toute la période)
+     *
+     * ❌ Shard propriétaire coupé (breaker ouvert) → échec immédiat, pas d'attente du timeout
+     *    (RedisConnectionFailureException → 503 côté contrôleur)
+     * 🔀 Migration en cours → + 1 pipeline sur l'ancien propriétaire, fusionné (partial = true s'il est indisponible)
+     */
+    public Map<String, Object> query(String code, Instant from, Instant to, Granularity granularity) {
+        long firstBucket = from.toEpochMilli() / granularity.bucketMillis;
+        long lastBucket = to.toEpochMilli() / granularity.bucketMillis;
+        if (lastBucket < firstBucket) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (lastBucket - firstBucket + 1 > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Too many " + granularity.name().toLowerCase()
+                    + " buckets (max " + MAX_BUCKETS + "), use a coarser granularity");
+        }
+        int bucketCount = (int) (lastBucket - firstBucket + 1);
+
+        RedisShard shard = shardManager.owner(code);
+        if (!shard.isAvailable()) {
+            throw new RedisConnectionFailureException("Stats shard " + shard.getName() + " unavailable (circuit open)");
+        }
+        List<Object> results = read(shard, code, granularity, firstBucket, bucketCount);
+
+        boolean partial = false;
+        RedisShard previous = shardManager.routePrevious(code);
+        if (previous != null) {
+            List<Object> previousResults = null;
+            if (previous.isAvailable()) {
+                try {
+                    previousResults = read(previous, code, granularity, firstBucket, bucketCount);
+                } catch (Exception e) {
+                    log.warn("⚠️ Stats dual-read failed on {}: {}", previous.getName(), e.getMessage());
+                }
+            }
+            if (previousResults != null) {
+                results = merge(results, previousResults);
+            } else {
+                partial = true;
+            }
+        }
+
+        List<Map<String, Object>> buckets = new ArrayList<>(bucketCount);
+        long totalClicks = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long clicks = clicks(results.get(2 * i));
+            long visitors = visitors(results.get(2 * i + 1));
+            totalClicks += clicks;
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("start", Instant.ofEpochMilli((firstBucket + i) * granularity.bucketMillis).toString());
+            bucket.put("clicks", clicks);
+            bucket.put("uniqueVisitors", visitors);
+            buckets.add(bucket);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("code", code);
+        stats.put("granularity", granularity);
+        stats.put("from", Instant.ofEpochMilli(firstBucket * granularity.bucketMillis).toString());
+        stats.put("to", Instant.ofEpochMilli((lastBucket + 1) * granularity.bucketMillis).toString());
+        stats.put("totalClicks", totalClicks);
+        stats.put("uniqueVisitors", visitors(results.get(2 * bucketCount)));
+        stats.put("partial", partial);
+        stats.put("buckets", buckets);
+        return stats;
+    }
+
+    /**
+     * Résultats du pipeline : [GET, PFCOUNT] par bucket puis le PFCOUNT multi-clés
+     */
+    private List<Object> read(RedisShard shard, String code, Granularity granularity, long firstBucket, int bucketCount) {
+        return shard.execute(template -> template.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    byte[][] visitorKeys = new byte[bucketCount][];
+                    for (int i = 0; i < bucketCount; i++) {
+                        long bucketId = firstBucket + i;
+                        connection.stringCommands().get(key(code, granularity.suffix, bucketId));
+                        visitorKeys[i] = key(code, granularity.suffix + "u", bucketId);
+                        connection.hyperLogLogCommands().pfCount(visitorKeys[i]);
+                    }
+                    connection.hyperLogLogCommands().pfCount(visitorKeys);
+                    return null;
+                }, RedisSerializer.string()));
+    }
+
+    /**
+     * Dual-read : compteurs additionnés (ShardMigrator les fusionne par INCRBY),
+     * visiteurs = max (les HLL ne sont pas fusionnables entre 2 shards sans écriture)
+     */
+    private static List<Object> merge(List<Object> owner, List<Object> previous) {
+        List<Object> merged = new ArrayList<>(owner.size());
+        for (int i = 0; i < owner.size(); i++) {
+            boolean counter = i % 2 == 0 && i < owner.size() - 1;
+            merged.add(counter
+                    ? String.valueOf(clicks(owner.get(i)) + clicks(previous.get(i)))
+                    : Math.max(visitors(owner.get(i)), visitors(previous.get(i))));
+        }
+        return merged;
+    }
+
+    private static long clicks(Object result) {
+        return result instanceof String value ? Long.parseLong(value) : 0;
+    }
+
+    private static long visitors(Object result) {
+        return result instanceof Long value ? value : 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("recordedEvents", recordedEvents.sum());
+        stats.put("skippedEvents", skippedEvents.sum());
+        stats.put("retentionSeconds", new LinkedHashMap<>(ttlSeconds));
+        return stats;
+    }
+
+    private static byte[] key(String code, String granularity, long bucketId) {
+        // Hash tag {code} : placé sur le shard du code, y compris par ShardMigrator
+        return (KEY_PREFIX + "{" + code + "}:" + granularity + ":" + bucketId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Bucket {
+        private int clicks;
+        private final Set<String> visitors = new HashSet<>();
+    }
+}
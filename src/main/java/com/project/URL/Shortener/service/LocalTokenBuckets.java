@@ -0,0 +1,335 @@
+package com.project.URL.Shortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.project.URL.Shortener.config.RateLimitConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tier local du rate limiting : token buckets en mémoire, alimentés par des leases du GCRA Redis
+ *
+ * Pourquoi ?
+ * ❌ Avant : 1 EVALSHA par requête /api/url/** avant tout traitement (même pour un hit L1)
+ * ✅ Ici : le nœud "achète" un lot de jetons au GCRA partagé (rate_limit_lease.lua) puis les dépense
+ *    sans I/O → 1 aller-retour Redis pour ~chunk requêtes
+ *
+ * Flow :
+ * 1. Jetons disponibles dans tous les buckets de la requête (IP/minute, IP/heure, code/minute) → autorisé
+ * 2. Un bucket épuisé récemment (lease refusé) → refusé localement jusqu'au prochain jeton théorique
+ * 3. Sinon lease : 1 seul appel pour les buckets vides, taille en slow start (1, 2, 4... jusqu'à chunk)
+ *    - 1 lease à la fois par clé ; une requête concurrente demande 1 seul jeton (= check GCRA exact)
+ *
+ * chunk = maxRequests × ratelimit.local.lease-fraction (≥ 1) : la part du budget global
+ * qu'un nœud peut détenir à un instant donné, par clé.
+ *
+ * ⚠️ Dépassement maximal (vs 1 GCRA centralisé) :
+ * - Les jetons sont pré-payés : sur la durée, le total admis ne dépasse jamais ce qu'accorde le GCRA
+ * - Mais un jeton acheté à t peut être dépensé jusqu'à t + lease-ttl → sur une fenêtre glissante,
+ *   au plus chunk jetons "en retard" par nœud et par clé
+ *   → dépassement ≤ nœuds × chunk (ex : 4 nœuds, 100/min, fraction 0.1 → +40 sur la fenêtre)
+ * - Un bucket ne détient jamais plus de chunk jetons (le surplus est perdu, jamais reporté)
+ * - Jetons expirés ou évincés (clé inactive, max-keys) : perdus → sous-admission, jamais de dépassement
+ * Vérifié par LocalTokenBucketsTest (plusieurs nœuds simulés sur 1 GCRA en mémoire).
+ *
+ * Mémoire bornée : Caffeine (max-keys), expiration des clés inactives (idle).
+ */
+public final class LocalTokenBuckets {
+
+    public record Limit(String key, RateLimitConfig config) {
+    }
+
+    /**
+     * Achète des jetons au budget global (pré-payés)
+     */
+    @FunctionalInterface
+    public interface LeaseSource {
+        /**
+         * @return jetons accordés par limite, entre 0 et requested[i]
+         */
+        long[] lease(List<Limit> limits, long[] requested);
+    }
+
+    public enum Decision {
+        ALLOWED,
+        DENIED,
+        LEASE_REQUIRED
+    }
+
+    private final double leaseFraction;
+    private final long leaseTtlNanos;
+    private final Ticker ticker;
+    private final Cache<String, Bucket> buckets;
+
+    private final LongAdder localAllowed = new LongAdder();
+    private final LongAdder localDenied = new LongAdder();
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder leasedTokens = new LongAdder();
+    private final LongAdder leaseAllowed = new LongAdder();
+    private final LongAdder leaseDenied = new LongAdder();
+
+    public LocalTokenBuckets(long maxKeys, Duration idleTimeout, double leaseFraction, Duration leaseTtl, Ticker ticker) {
+        if (leaseFraction <= 0 || leaseFraction > 1) {
+            throw new IllegalArgumentException("Lease fraction must be in ]0, 1]: " + leaseFraction);
+        }
+        this.leaseFraction = leaseFraction;
+        this.leaseTtlNanos = leaseTtl.toNanos();
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Décision complète (synchrone) : local, sinon lease via source
+     * Une erreur de la source est propagée (l'appelant choisit fail-open / fail-closed)
+     */
+    public boolean acquire(List<Limit> limits, LeaseSource source) {
+        Decision decision = tryAcquire(limits);
+        if (decision != Decision.LEASE_REQUIRED) {
+            return decision == Decision.ALLOWED;
+        }
+
+        LeaseRequest request = prepareLease(limits);
+        long[] granted;
+        try {
+            granted = request.limits().isEmpty() ? new long[0] : source.lease(request.limits(), request.requested());
+        } catch (RuntimeException e) {
+            abortLease(request);
+            throw e;
+        }
+        return completeLease(request, granted);
+    }
+
+    /**
+     * Sans I/O : consomme 1 jeton dans chaque bucket (tout-ou-rien)
+     */
+    public Decision tryAcquire(List<Limit> limits) {
+        long now = ticker.read();
+        Bucket[] taken = new Bucket[limits.size()];
+        boolean missing = false;
+        boolean exhausted = false;
+        for (int i = 0; i < limits.size(); i++) {
+            Bucket bucket = bucket(limits.get(i).key(), now);
+            if (bucket.tryTake(now)) {
+                taken[i] = bucket;
+            } else {
+                missing = true;
+                exhausted |= bucket.isExhausted(now);
+            }
+        }
+        if (!missing) {
+            localAllowed.increment();
+            return Decision.ALLOWED;
+        }
+
+        refund(taken);
+        if (exhausted) {
+            localDenied.increment();
+            return Decision.DENIED;
+        }
+        return Decision.LEASE_REQUIRED;
+    }
+
+    /**
+     * Buckets vides de la requête + taille de lease demandée pour chacun
+     * (à passer à la source puis à completeLease, ou abortLease en cas d'erreur)
+     */
+    public LeaseRequest prepareLease(List<Limit> limits) {
+        long now = ticker.read();
+        List<Limit> missing = new ArrayList<>(limits.size());
+        List<Bucket> missingBuckets = new ArrayList<>(limits.size());
+        long[] requested = new long[limits.size()];
+        boolean[] owner = new boolean[limits.size()];
+        boolean[] leased = new boolean[limits.size()];
+
+        for (int i = 0; i < limits.size(); i++) {
+            Bucket bucket = bucket(limits.get(i).key(), now);
+            if (bucket.hasTokens(now)) {
+                continue;
+            }
+            int index = missing.size();
+            missing.add(limits.get(i));
+            missingBuckets.add(bucket);
+            leased[i] = true;
+            // 1 seul lease en vol par clé : les requêtes concurrentes font un check exact (1 jeton)
+            owner[index] = bucket.leasing.compareAndSet(false, true);
+            requested[index] = owner[index] ? bucket.nextLease : 1;
+        }
+        long[] trimmed = new long[missing.size()];
+        System.arraycopy(requested, 0, trimmed, 0, missing.size());
+        return new LeaseRequest(limits, leased, missing, missingBuckets, trimmed, owner);
+    }
+
+    /**
+     * Crédite les jetons accordés puis décide : 1 jeton de chaque lease est réservé à la requête courante
+     * (pas de course avec les autres threads entre le crédit et la consommation)
+     */
+    public boolean completeLease(LeaseRequest request, long[] granted) {
+        long now = ticker.read();
+        boolean allGranted = true;
+        long total = 0;
+        for (int i = 0; i < request.limits().size(); i++) {
+            Limit limit = request.limits().get(i);
+            Bucket bucket = request.buckets().get(i);
+            long requested = request.requested()[i];
+            long count = Math.max(0, Math.min(granted[i], requested));
+            total += count;
+
+            if (count > 0) {
+                // Le jeton de la requête courante est gardé à part, le reste va au bucket
+                bucket.credit(count - 1, now, now + leaseTtlNanos, chunk(limit.config()));
+            } else {
+                allGranted = false;
+                bucket.exhaustedUntil = now + TimeUnit.MICROSECONDS.toNanos(limit.config().getEmissionIntervalMicros());
+            }
+            if (request.owner()[i]) {
+                bucket.nextLease = count >= requested ? Math.min(chunk(limit.config()), requested * 2) : Math.max(1, count);
+                bucket.leasing.set(false);
+            }
+        }
+        if (!request.limits().isEmpty()) {
+            leases.increment();
+            leasedTokens.add(total);
+        }
+
+        // Limites qui avaient encore des jetons au moment du prepare
+        Bucket[] taken = new Bucket[request.all().size()];
+        boolean allowed = allGranted;
+        for (int i = 0; allowed && i < request.all().size(); i++) {
+            if (request.leased()[i]) {
+                continue;
+            }
+            Bucket bucket = bucket(request.all().get(i).key(), now);
+            if (bucket.tryTake(now)) {
+                taken[i] = bucket;
+            } else {
+                allowed = false;
+            }
+        }
+
+        if (!allowed) {
+            // Refus : les jetons réservés pour cette requête retournent dans leur bucket
+            refund(taken);
+            for (int i = 0; i < request.limits().size(); i++) {
+                if (granted[i] > 0) {
+                    request.buckets().get(i).credit(1, now, now + leaseTtlNanos, chunk(request.limits().get(i).config()));
+                }
+            }
+            leaseDenied.increment();
+            return false;
+        }
+        leaseAllowed.increment();
+        return true;
+    }
+
+    /**
+     * Lease en échec (Redis indisponible) : libère les clés pour un prochain lease
+     */
+    public void abortLease(LeaseRequest request) {
+        for (int i = 0; i < request.limits().size(); i++) {
+            if (request.owner()[i]) {
+                request.buckets().get(i).leasing.set(false);
+            }
+        }
+    }
+
+    public long chunk(RateLimitConfig config) {
+        return Math.max(1, (long) (config.getMaxRequests() * leaseFraction));
+    }
+
+    public Map<String, Object> getStats() {
+        long local = localAllowed.sum() + localDenied.sum();
+        long leased = leaseAllowed.sum() + leaseDenied.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keys", buckets.estimatedSize());
+        stats.put("localAllowed", localAllowed.sum());
+        stats.put("localDenied", localDenied.sum());
+        stats.put("leaseAllowed", leaseAllowed.sum());
+        stats.put("leaseDenied", leaseDenied.sum());
+        stats.put("leases", leases.sum());
+        stats.put("leasedTokens", leasedTokens.sum());
+        stats.put("localDecisionRatio", local + leased == 0 ? 0.0 : (double) local / (local + leased));
+        return stats;
+    }
+
+    private Bucket bucket(String key, long now) {
+        return buckets.get(key, k -> new Bucket(now));
+    }
+
+    private static void refund(Bucket[] taken) {
+        for (Bucket bucket : taken) {
+            if (bucket != null) {
+                bucket.tokens.incrementAndGet();
+            }
+        }
+    }
+
+    public record LeaseRequest(List<Limit> all, boolean[] leased,
+                               List<Limit> limits, List<Bucket> buckets, long[] requested, boolean[] owner) {
+    }
+
+    /**
+     * Jetons pré-payés d'une clé. Champs volatiles sans lock : les courses possibles ne font que
+     * perdre des jetons (sous-admission), jamais en créer.
+     */
+    public static final class Bucket {
+        private final AtomicLong tokens = new AtomicLong();
+        private final AtomicBoolean leasing = new AtomicBoolean();
+        private volatile long leaseExpiresAt;
+        private volatile long exhaustedUntil;
+        private volatile long nextLease = 1;
+
+        private Bucket(long now) {
+            // Déjà expiré, pas épuisé : le premier accès déclenche un lease
+            this.leaseExpiresAt = now;
+            this.exhaustedUntil = now;
+        }
+
+        private boolean hasTokens(long now) {
+            return now - leaseExpiresAt < 0 && tokens.get() > 0;
+        }
+
+        private boolean isExhausted(long now) {
+            return now - exhaustedUntil < 0;
+        }
+
+        private boolean tryTake(long now) {
+            if (now - leaseExpiresAt >= 0) {
+                return false; // lease expiré : ses jetons ne sont plus dépensables
+            }
+            while (true) {
+                long current = tokens.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (tokens.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void credit(long count, long now, long expiresAt, long cap) {
+            if (count <= 0) {
+                return;
+            }
+            if (now - leaseExpiresAt >= 0) {
+                tokens.set(Math.min(cap, count)); // jetons d'un lease expiré : perdus
+            } else {
+                tokens.updateAndGet(current -> Math.min(cap, current + count));
+            }
+            leaseExpiresAt = expiresAt;
+        }
+    }
+}
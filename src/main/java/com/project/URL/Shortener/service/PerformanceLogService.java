@@ -3,15 +3,41 @@ package com.project.URL.Shortener.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs structurés (MDC) des requêtes, échantillonnés
+ *
+ * ⚠️ Les latences sont mesurées par RedirectMetrics (/actuator/prometheus) : ces lignes ne servent qu'au debug
+ * ✅ performance.log.sample-rate (0.01 = 1 requête sur 100) : pas de formatage ni de MDC pour les autres
+ * ✅ Les erreurs sont toujours loguées
+ */
 @Service
 public class PerformanceLogService {
 
     private static final Logger logger = LoggerFactory.getLogger(PerformanceLogService.class);
 
+    private final double sampleRate;
+
+    public PerformanceLogService(@Value("${performance.log.sample-rate:0.01}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    private boolean sampled() {
+        if (!logger.isInfoEnabled() || sampleRate <= 0) {
+            return false;
+        }
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
     // Cache Operations
     public void logCacheHit(String shortCode, String operation) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", operation);
         MDC.put("shortCode", shortCode);
         logger.info("CACHE_HIT - Retrieved from Redis cache");
@@ -19,6 +45,9 @@ public class PerformanceLogService {
     }
 
     public void logCacheMiss(String shortCode, String operation) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", operation);
         MDC.put("shortCode", shortCode);
         logger.info("CACHE_MISS - Not found in Redis cache");
@@ -26,6 +55,9 @@ public class PerformanceLogService {
     }
 
     public void logCacheStore(String shortCode, String originalUrl) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", "CACHE_STORE");
         MDC.put("shortCode", shortCode);
         logger.info("CACHE_STORE - Stored URL in Redis cache: {}", originalUrl);
@@ -34,6 +66,9 @@ public class PerformanceLogService {
 
     // Database Operations
     public void logDatabaseQuery(String shortCode, String queryType, long executionTimeMs) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", "DB_QUERY");
         MDC.put("queryType", queryType);
         MDC.put("shortCode", shortCode);
@@ -43,6 +78,9 @@ public class PerformanceLogService {
     }
 
     public void logDatabaseSave(String shortCode, String originalUrl, long executionTimeMs) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", "DB_SAVE");
         MDC.put("shortCode", shortCode);
         MDC.put("executionTime", String.valueOf(executionTimeMs));
@@ -52,6 +90,9 @@ public class PerformanceLogService {
 
     // Request Flow
     public void logRequestStart(String endpoint, String shortCode, String clientIp) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", "REQUEST_START");
         MDC.put("endpoint", endpoint);
         MDC.put("shortCode", shortCode);
@@ -61,6 +102,9 @@ public class PerformanceLogService {
     }
 
     public void logRequestComplete(String endpoint, String shortCode, long totalTimeMs) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", "REQUEST_COMPLETE");
         MDC.put("endpoint", endpoint);
         MDC.put("shortCode", shortCode);
@@ -80,6 +124,9 @@ public class PerformanceLogService {
 
     // Performance Metrics
     public void logPerformanceMetrics(String operation, long cacheTime, long dbTime, boolean cacheUsed) {
+        if (!sampled()) {
+            return;
+        }
         MDC.put("operation", "PERFORMANCE_METRICS");
         MDC.put("cacheTime", String.valueOf(cacheTime));
         MDC.put("dbTime", String.valueOf(dbTime));
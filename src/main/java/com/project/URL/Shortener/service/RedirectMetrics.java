@@ -0,0 +1,64 @@
+package com.project.URL.Shortener.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogrammes de latence du redirect (résolution nanoseconde), exposés sur /actuator/prometheus
+ *
+ * Pourquoi ?
+ * ❌ Avant : 2 lignes INFO + MDC par requête, mesures en currentTimeMillis (0ms pour tout ce qui est en cache)
+ * ✅ Timer.record(nanos) : quelques opérations atomiques, aucune allocation, aucune I/O
+ * ✅ Histogramme Prometheus (agrégeable entre nœuds) + p50 / p95 / p99 calculés côté app
+ *
+ * Métrique : redirect.latency{stage=rate_limit|cache|db|total|reactive_total}
+ */
+@Component
+public class RedirectMetrics {
+
+    public enum Stage {
+        RATE_LIMIT("rate_limit"),
+        CACHE("cache"),
+        DATABASE("db"),
+        TOTAL("total"),
+        REACTIVE_TOTAL("reactive_total");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final String METRIC_NAME = "redirect.latency";
+
+    // Timers créés une seule fois : pas de lookup par tags sur le chemin chaud
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+    public RedirectMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder(METRIC_NAME)
+                    .description("Redirect latency by stage")
+                    .tag("stage", stage.tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    // Borne les buckets : 50µs (hit L1) → 5s (timeout DB)
+                    .minimumExpectedValue(Duration.ofNanos(50_000))
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .register(registry));
+        }
+    }
+
+    /**
+     * @param startNanos valeur de System.nanoTime() au début de l'étape
+     */
+    public void record(Stage stage, long startNanos) {
+        timers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,82 +1,331 @@
 package com.project.URL.Shortener.service;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShardTopology;
+import com.project.URL.Shortener.config.RateLimitConfig;
+import com.project.URL.Shortener.service.LocalTokenBuckets.Limit;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Rate limiting GCRA via un script Lua (1 seul aller-retour Redis par check)
+ *
+ * ❌ Avant : ZSET par clé + 4 commandes (ZREMRANGEBYSCORE, ZCARD, ZADD, EXPIRE) × 2 checks
+ *    → 8 round trips, check-then-add non atomique, 1 entrée ZSET par requête
+ * ✅ Après : 1 EVALSHA atomique pour toutes les limites (IP + shortCode),
+ *    1 seule valeur (le TAT) par clé
+ *
+ * Clés réparties sur le ring des shards (hash tags {ip} / {code}) au lieu du seul Redis principal
+ *
+ * Tier local (ratelimit.local.enabled) : LocalTokenBuckets devant le même GCRA
+ * → la plupart des requêtes décidées sans I/O, 1 lease Redis (rate_limit_lease.lua) par lot de jetons
+ * Dépassement maximal documenté dans LocalTokenBuckets (≤ nœuds × chunk par clé et par fenêtre)
+ */
 @Service
 @Slf4j
-
 public class RedisRateLimitService {
 
-    private final RedisTemplate<String, String> redisTemplate;
-    public RedisRateLimitService(@Qualifier("rateLimitRedisTemplate") RedisTemplate<String, String> redisTemplate) {
-        this.redisTemplate = redisTemplate;
-    }
+    private static final String KEY_PREFIX = "rl:";
+
+    private final RedisShardManager shardManager;
+    private final RedisScript<Long> gcraScript;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> leaseScript;
+    // null si le tier local est désactivé → 1 EVALSHA par requête
+    private final LocalTokenBuckets localBuckets;
 
     // Configurations
-    private static final int MAX_REQUESTS_PER_MINUTE = 100;
-    private static final long WINDOW_MS = 60_000; // 1 minute
+    private final RateLimitConfig ipPerMinute;
+    private final RateLimitConfig ipPerHour;
+    private final RateLimitConfig codePerMinute;
+
+    public RedisRateLimitService(RedisShardManager shardManager,
+                                 @Value("${ratelimit.ip.per-minute:100}") int ipRequestsPerMinute,
+                                 @Value("${ratelimit.ip.per-hour:3000}") int ipRequestsPerHour,
+                                 @Value("${ratelimit.code.per-minute:100}") int codeRequestsPerMinute,
+                                 @Value("${ratelimit.local.enabled:true}") boolean localEnabled,
+                                 @Value("${ratelimit.local.lease-fraction:0.1}") double leaseFraction,
+                                 @Value("${ratelimit.local.lease-ttl-ms:1000}") long leaseTtlMs,
+                                 @Value("${ratelimit.local.max-keys:100000}") long localMaxKeys,
+                                 @Value("${ratelimit.local.idle-seconds:120}") long localIdleSeconds) {
+        this.shardManager = shardManager;
+        this.gcraScript = RedisScript.of(new ClassPathResource("scripts/rate_limit_gcra.lua"), Long.class);
+        this.leaseScript = RedisScript.of(new ClassPathResource("scripts/rate_limit_lease.lua"), List.class);
+        this.localBuckets = localEnabled
+                ? new LocalTokenBuckets(localMaxKeys, Duration.ofSeconds(localIdleSeconds), leaseFraction,
+                        Duration.ofMillis(leaseTtlMs), Ticker.systemTicker())
+                : null;
+        this.ipPerMinute = RateLimitConfig.perMinute(ipRequestsPerMinute);
+        this.ipPerHour = RateLimitConfig.perHour(ipRequestsPerHour);
+        this.codePerMinute = RateLimitConfig.perMinute(codeRequestsPerMinute);
+    }
 
     public boolean isAllowed(String key) {
-        String redisKey = "ratelimit:" + key;
-        long now = System.currentTimeMillis();
-        long windowStart = now - WINDOW_MS;
+        return evaluate(List.of(new Limit("{" + key + "}:m", ipPerMinute)));
+    }
 
-        try {
-            // 1. Supprimer les vieilles entrées
-            redisTemplate.opsForZSet().removeRangeByScore(redisKey, 0, windowStart);
+    public boolean isIpAllowed(String ip) {
+        return evaluate(ipLimits(ip, new ArrayList<>()));
+    }
 
-            // 2. Compter les requêtes récentes
-            Long count = redisTemplate.opsForZSet().zCard(redisKey);
+    public boolean isShortCodeAllowed(String shortCode) {
+        return evaluate(codeLimits(shortCode, new ArrayList<>()));
+    }
 
-            if (count == null || count < MAX_REQUESTS_PER_MINUTE) {
-                // 3. Ajouter la requête actuelle
-                redisTemplate.opsForZSet().add(redisKey, String.valueOf(now), now);
+    /**
+     * IP + shortCode évalués ensemble (shortCode null → endpoint sans code, ex : /create, /resolve → limite IP seulement)
+     *
+     * ⚠️ Les clés IP et code vivent sur des shards différents : 1 script par shard, le tout-ou-rien
+     *    ne vaut que par shard. Un refus sur le 2e shard laisse consommé le jeton du 1er
+     *    → au pire 1 jeton perdu par requête refusée (sous-admission, jamais de dépassement)
+     */
+    public boolean checkAllRateLimits(String ip, String shortCode) {
+        List<Limit> limits = ipLimits(ip, new ArrayList<>());
+        if (shortCode != null) {
+            codeLimits(shortCode, limits);
+        }
+        return evaluate(limits);
+    }
 
-                // 4. Expiration automatique
-                redisTemplate.expire(redisKey, 2, TimeUnit.MINUTES);
+    /**
+     * Même script, sans bloquer de thread (redirect réactif)
+     */
+    public Mono<Boolean> checkAllRateLimitsReactive(String ip, String shortCode) {
+        List<Limit> limits = ipLimits(ip, new ArrayList<>());
+        if (shortCode != null) {
+            codeLimits(shortCode, limits);
+        }
+        if (limits.isEmpty()) {
+            return Mono.just(true);
+        }
+        if (localBuckets != null) {
+            return checkLocalReactive(limits);
+        }
 
-                log.debug("✅ RateLimit ALLOWED - Key: {}, Count: {}", key, count);
-                return true;
-            }
+        // Shards évalués l'un après l'autre, arrêt au premier refus
+        return Flux.fromIterable(groups(limits))
+                .concatMap(this::evaluateReactive)
+                .all(Boolean::booleanValue);
+    }
 
-            log.debug("❌ RateLimit BLOCKED - Key: {}, Count: {}", key, count);
-            return false;
+    private Mono<Boolean> evaluateReactive(ShardGroup group) {
+        if (group.shard() == null) {
+            return Mono.just(true); // Fail-open : aucun shard disponible
+        }
+        List<String> keys = keys(group.limits());
+        return group.shard().executeStringReactive(template -> template.execute(gcraScript, keys, args(group.limits())).next())
+                .map(blockedIndex -> isAllowed(group.limits(), keys, blockedIndex))
+                .defaultIfEmpty(true)
+                .onErrorResume(e -> {
+                    log.error("❌ RateLimit ERROR - Keys: {}, Error: {}", keys, e.getMessage());
+                    return Mono.just(true); // Fail-open
+                });
+    }
+
+    /**
+     * Tier local sans bloquer : décision en mémoire, sinon lease réactif (même script que la version synchrone)
+     */
+    private Mono<Boolean> checkLocalReactive(List<Limit> limits) {
+        LocalTokenBuckets.Decision decision = localBuckets.tryAcquire(limits);
+        if (decision != LocalTokenBuckets.Decision.LEASE_REQUIRED) {
+            return Mono.just(decision == LocalTokenBuckets.Decision.ALLOWED);
+        }
 
-        } catch (Exception e) {
-            log.error("❌ RateLimit ERROR - Key: {}, Error: {}", key, e.getMessage());
-            return true; // Fail-open
+        LocalTokenBuckets.LeaseRequest request = localBuckets.prepareLease(limits);
+        if (request.limits().isEmpty()) {
+            return Mono.just(localBuckets.completeLease(request, new long[0]));
         }
+        long[] granted = new long[request.limits().size()];
+        return Flux.fromIterable(groups(request.limits()))
+                .flatMap(group -> leaseReactive(group, request.requested(), granted))
+                .then(Mono.fromCallable(() -> localBuckets.completeLease(request, granted)))
+                .onErrorResume(e -> {
+                    localBuckets.abortLease(request);
+                    log.error("❌ RateLimit lease ERROR - Keys: {}, Error: {}", keys(request.limits()), e.getMessage());
+                    return Mono.just(true); // Fail-open
+                });
     }
 
-    public boolean isIpAllowed(String ip) {
-        return isAllowed("ip:" + ip);
+    private Mono<Void> leaseReactive(ShardGroup group, long[] requested, long[] granted) {
+        if (group.shard() == null) {
+            return Mono.error(new IllegalStateException("No Redis shard available"));
+        }
+        List<String> keys = keys(group.limits());
+        List<String> args = leaseArgs(group.limits(), group.select(requested));
+        return group.shard().executeStringReactive(template -> template.execute(leaseScript, keys, args)
+                        // MULTI : selon le driver, 1 élément List ou les éléments un par un
+                        .flatMapIterable(result -> result instanceof List<?> list ? list : List.of(result))
+                        .collectList())
+                .doOnNext(result -> group.scatter(granted(result, keys.size()), granted))
+                .then();
     }
 
-    public boolean isShortCodeAllowed(String shortCode) {
-        return isAllowed("code:" + shortCode);
+    /**
+     * Hash tags : les 2 limites d'une IP partagent {ip} (même shard, 1 script),
+     * la limite d'un code est placée avec {code}, sur le shard de son entrée de cache
+     */
+    private List<Limit> ipLimits(String ip, List<Limit> limits) {
+        if (ipPerMinute.isEnabled()) {
+            limits.add(new Limit("ip:{" + ip + "}:m", ipPerMinute));
+        }
+        if (ipPerHour.isEnabled()) {
+            limits.add(new Limit("ip:{" + ip + "}:h", ipPerHour));
+        }
+        return limits;
     }
 
-    // ⭐ MÉTHODE MANQUANTE - AJOUTE ÇA !
-    public boolean checkAllRateLimits(String ip, String shortCode) {
-        // Vérifier rate limiting par IP
-        if (!isIpAllowed(ip)) {
-            log.warn("🚨 Rate limit exceeded for IP: {}", ip);
-            return false;
+    private List<Limit> codeLimits(String shortCode, List<Limit> limits) {
+        if (codePerMinute.isEnabled()) {
+            limits.add(new Limit("code:{" + shortCode + "}:m", codePerMinute));
         }
+        return limits;
+    }
 
-        // Vérifier rate limiting par shortCode
-        if (!isShortCodeAllowed(shortCode)) {
-            log.warn("🚨 Rate limit exceeded for ShortCode: {}", shortCode);
-            return false;
+    private boolean evaluate(List<Limit> limits) {
+        if (limits.isEmpty()) {
+            return true;
+        }
+        if (localBuckets != null) {
+            try {
+                return localBuckets.acquire(limits, this::lease);
+            } catch (Exception e) {
+                log.error("❌ RateLimit lease ERROR - Keys: {}, Error: {}", keys(limits), e.getMessage());
+                return true; // Fail-open
+            }
         }
 
-        log.debug("✅ All rate limits passed for IP: {}, ShortCode: {}", ip, shortCode);
+        for (ShardGroup group : groups(limits)) {
+            if (group.shard() == null) {
+                continue; // Fail-open : aucun shard disponible
+            }
+            List<String> keys = keys(group.limits());
+            try {
+                Long blockedIndex = group.shard().executeString(
+                        template -> template.execute(gcraScript, keys, args(group.limits()).toArray()));
+                if (!isAllowed(group.limits(), keys, blockedIndex)) {
+                    return false;
+                }
+            } catch (Exception e) {
+                log.error("❌ RateLimit ERROR - Keys: {}, Error: {}", keys, e.getMessage());
+                // Fail-open
+            }
+        }
         return true;
     }
-}
\ No newline at end of file
+
+    private long[] lease(List<Limit> limits, long[] requested) {
+        long[] granted = new long[limits.size()];
+        for (ShardGroup group : groups(limits)) {
+            if (group.shard() == null) {
+                throw new IllegalStateException("No Redis shard available");
+            }
+            List<String> keys = keys(group.limits());
+            List<String> args = leaseArgs(group.limits(), group.select(requested));
+            List<?> result = group.shard().executeString(template -> template.execute(leaseScript, keys, args.toArray()));
+            group.scatter(granted(result, keys.size()), granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Limites regroupées par shard (health-aware, même routage que le cache) en gardant leur position
+     */
+    private List<ShardGroup> groups(List<Limit> limits) {
+        Map<RedisShard, ShardGroup> groups = new LinkedHashMap<>();
+        for (int i = 0; i < limits.size(); i++) {
+            Limit limit = limits.get(i);
+            RedisShard shard = shardManager.route(ShardTopology.routingKey(limit.key()));
+            groups.computeIfAbsent(shard, s -> new ShardGroup(s, new ArrayList<>(), new ArrayList<>()));
+            groups.get(shard).limits().add(limit);
+            groups.get(shard).positions().add(i);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    public Map<String, Object> getLocalStats() {
+        if (localBuckets == null) {
+            return Map.of("enabled", false);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", true);
+        stats.putAll(localBuckets.getStats());
+        return stats;
+    }
+
+    private static List<String> keys(List<Limit> limits) {
+        List<String> keys = new ArrayList<>(limits.size());
+        for (Limit limit : limits) {
+            keys.add(KEY_PREFIX + limit.key());
+        }
+        return keys;
+    }
+
+    private static List<String> args(List<Limit> limits) {
+        List<String> args = new ArrayList<>(limits.size() * 2);
+        for (Limit limit : limits) {
+            args.add(String.valueOf(limit.config().getEmissionIntervalMicros()));
+            args.add(String.valueOf(limit.config().getToleranceMicros()));
+        }
+        return args;
+    }
+
+    private static List<String> leaseArgs(List<Limit> limits, long[] requested) {
+        List<String> args = new ArrayList<>(limits.size() * 3);
+        for (int i = 0; i < limits.size(); i++) {
+            args.add(String.valueOf(limits.get(i).config().getEmissionIntervalMicros()));
+            args.add(String.valueOf(limits.get(i).config().getToleranceMicros()));
+            args.add(String.valueOf(requested[i]));
+        }
+        return args;
+    }
+
+    private static long[] granted(List<?> result, int size) {
+        long[] granted = new long[size];
+        for (int i = 0; result != null && i < size && i < result.size(); i++) {
+            granted[i] = result.get(i) instanceof Number count ? count.longValue() : 0;
+        }
+        return granted;
+    }
+
+    private record ShardGroup(RedisShard shard, List<Limit> limits, List<Integer> positions) {
+
+        long[] select(long[] values) {
+            long[] selected = new long[positions.size()];
+            for (int i = 0; i < positions.size(); i++) {
+                selected[i] = values[positions.get(i)];
+            }
+            return selected;
+        }
+
+        void scatter(long[] values, long[] target) {
+            for (int i = 0; i < positions.size(); i++) {
+                target[positions.get(i)] = values[i];
+            }
+        }
+    }
+
+    private boolean isAllowed(List<Limit> limits, List<String> keys, Long blockedIndex) {
+        if (blockedIndex == null || blockedIndex == 0) {
+            log.debug("✅ RateLimit ALLOWED - Keys: {}", keys);
+            return true;
+        }
+
+        Limit blocked = limits.get(blockedIndex.intValue() - 1);
+        log.warn("🚨 Rate limit exceeded - Key: {}, Limit: {} req / {}ms", blocked.key(),
+                blocked.config().getMaxRequests(), blocked.config().getWindowMs());
+        return false;
+    }
+}
@@ -1,56 +1,154 @@
 package com.project.URL.Shortener.service;
 
+import com.project.URL.Shortener.cache.CacheInvalidationBus;
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.HotKeyTracker;
+import com.project.URL.Shortener.cache.LocalUrlCache;
+import com.project.URL.Shortener.cache.RedisShard;
 import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.config.VirtualThreads;
 import com.project.URL.Shortener.entity.Url;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Redis Service avec sharding + observabilité
+ *
+ * Lecture : cache local (L1) → shard Redis (L2) → null (fallback DB côté appelant)
+ * Pendant une migration de shards : si miss chez le nouveau propriétaire, lecture chez l'ancien
+ * (+ recopie chez le nouveau) → pas de cache froid pendant le déplacement des clés
+ * Shard en panne (breaker OPEN) : nœud suivant du ring ou miss immédiat, jamais d'attente de timeout
+ * Code hot (HotKeyTracker) : lecture sur un réplica au hasard, invalidation sur tous les réplicas
+ * TTL avec jitter : des entrées écrites au même moment (deploy, import) n'expirent pas toutes ensemble
  */
 @Service
 public class RedisService {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisService.class);
+
     private final RedisShardManager shardManager;
+    private final LocalUrlCache localUrlCache;
+    private final CacheInvalidationBus invalidationBus;
+    private final HotKeyTracker hotKeyTracker;
+    // Fan-out des opérations batch : 1 tâche par shard
+    private final ExecutorService shardExecutor;
+
+    // Écriture sur un shard de failover : TTL court (copie orpheline quand le propriétaire revient)
+    private final long failoverTtlSeconds;
+    private final long ttlSeconds;
+    // TTL tiré dans [ttl × (1 - jitter), ttl]
+    private final double ttlJitter;
 
-    public RedisService(RedisShardManager shardManager) {
+    public RedisService(RedisShardManager shardManager,
+                        LocalUrlCache localUrlCache,
+                        CacheInvalidationBus invalidationBus,
+                        HotKeyTracker hotKeyTracker,
+                        @Value("${cache.batch.threads:8}") int batchThreads,
+                        @Value("${redis.breaker.failover-ttl-seconds:300}") long failoverTtlSeconds,
+                        @Value("${cache.redis.ttl-seconds:86400}") long ttlSeconds,
+                        @Value("${cache.redis.ttl-jitter:0.1}") double ttlJitter,
+                        @Value(VirtualThreads.ENABLED_PROPERTY) boolean virtualThreads) {
         this.shardManager = shardManager;
+        this.failoverTtlSeconds = failoverTtlSeconds;
+        this.ttlSeconds = ttlSeconds;
+        this.ttlJitter = Math.min(Math.max(ttlJitter, 0), 1);
+        this.localUrlCache = localUrlCache;
+        this.invalidationBus = invalidationBus;
+        this.hotKeyTracker = hotKeyTracker;
+        this.shardExecutor = VirtualThreads.newExecutor("cache-batch", batchThreads, virtualThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        shardExecutor.shutdown();
     }
 
     /**
-     * Set URL in cache avec TTL de 24h
+     * Set URL in cache avec TTL de 24h (moins le jitter)
      *
      * Pourquoi 24h ?
      * ✅ Balance entre freshness et cache efficiency
      * ✅ Si URL change, max 24h avant sync
      */
     public void set(String shortCode, Url url) {
+        set(shortCode, CachedRedirect.from(url));
+    }
+
+    public void set(String shortCode, CachedRedirect redirect) {
+        RedisShard shard = shardManager.route(shortCode);
+        // L1 toujours avec l'échéance (refresh anticipé), même si le shard est indisponible
+        long ttlSeconds = ttlSeconds(shard != null ? shard : shardManager.owner(shortCode), shortCode);
+        CachedRedirect stamped = stamp(redirect, ttlSeconds);
+        localUrlCache.put(shortCode, stamped);
+        if (shard == null) {
+            return; // Shard indisponible : L1 seulement
+        }
         try {
-            shardManager.getShard(shortCode)
-                    .opsForValue()
-                    .set(shortCode, url, 24, TimeUnit.HOURS);
+            shard.execute(template -> {
+                template.opsForValue().set(shortCode, stamped, ttlSeconds, TimeUnit.SECONDS);
+                return null;
+            });
 
-            logger.debug("✅ Cache SET: {} → {}", shortCode,
-                    shardManager.getShardDebugInfo(shortCode));
+            // getShardDebugInfo re-hash + String.format : seulement si DEBUG actif
+            if (logger.isDebugEnabled()) {
+                logger.debug("✅ Cache SET: {} → {}", shortCode, shardManager.getShardDebugInfo(shortCode));
+            }
         } catch (Exception e) {
             logger.error("❌ Cache SET failed for {}: {}", shortCode, e.getMessage());
         }
     }
 
     /**
-     * Get URL from cache
+     * Get URL from cache (valeur read-only, pas l'entité JPA)
      */
-    public Url get(String shortCode) {
+    public CachedRedirect get(String shortCode) {
+        // 1. L1 : pas d'aller-retour réseau
+        CachedRedirect local = localUrlCache.get(shortCode);
+        if (local != null) {
+            return local;
+        }
+
+        // 2. Code hot : 1 réplica au hasard → la charge du code est répartie sur K shards
+        CachedRedirect replicated = readHotReplica(shortCode);
+        if (replicated != null) {
+            localUrlCache.put(shortCode, replicated);
+            return replicated;
+        }
+
+        RedisShard shard = shardManager.route(shortCode);
+        if (shard == null) {
+            logger.debug("⚡ Cache SKIP (shard breaker open): {}", shortCode);
+            return null; // Fallback DB immédiat
+        }
+
         try {
-            Url url = shardManager.getShard(shortCode)
-                    .opsForValue()
-                    .get(shortCode);
+            CachedRedirect url = shard.execute(template -> template.opsForValue().get(shortCode));
+
+            if (url == null) {
+                url = readFromPreviousOwner(shortCode);
+            }
 
             if (url != null) {
+                localUrlCache.put(shortCode, url);
                 logger.debug("✅ Cache HIT: {}", shortCode);
             } else {
                 logger.debug("❌ Cache MISS: {}", shortCode);
@@ -63,16 +161,276 @@ public class RedisService {
         }
     }
 
+    /**
+     * Réplica d'un code hot. Miss → null (lecture normale), puis read-repair du réplica
+     */
+    private CachedRedirect readHotReplica(String shortCode) {
+        RedisShard replica = hotKeyTracker.readReplica(shortCode);
+        if (replica == null || replica == shardManager.route(shortCode)) {
+            return null; // pas hot, ou réplica = shard routé : lecture normale
+        }
+        try {
+            CachedRedirect url = replica.execute(template -> template.opsForValue().get(shortCode));
+            if (url == null) {
+                RedisShard shard = shardManager.route(shortCode);
+                url = shard != null ? shard.execute(template -> template.opsForValue().get(shortCode)) : null;
+                if (url != null) {
+                    hotKeyTracker.repair(replica, shortCode, url);
+                }
+            }
+            return url;
+        } catch (Exception e) {
+            logger.error("❌ Cache GET failed for {} on replica {}: {}", shortCode, replica.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Dual-read : la clé n'a peut-être pas encore été migrée
+     */
+    private CachedRedirect readFromPreviousOwner(String shortCode) {
+        RedisShard previous = shardManager.routePrevious(shortCode);
+        if (previous == null) {
+            return null;
+        }
+        CachedRedirect url = previous.execute(template -> template.opsForValue().get(shortCode));
+        RedisShard shard = shardManager.route(shortCode);
+        if (url != null && shard != null) {
+            // Read-repair : le prochain GET tombe directement sur le nouveau propriétaire
+            long ttlSeconds = ttlSeconds(shard, shortCode);
+            shard.execute(template -> template.opsForValue()
+                    .setIfAbsent(shortCode, url, ttlSeconds, TimeUnit.SECONDS));
+        }
+        return url;
+    }
+
+    /**
+     * Refresh anticipé (CacheRefresher) : SET XX → une invalidation pendant le rechargement DB
+     * a supprimé la clé, l'ancienne valeur relue n'est pas ressuscitée
+     *
+     * @return false si la clé n'existe plus (expirée ou invalidée) : rechargement normal au prochain miss
+     */
+    public boolean refresh(String shortCode, CachedRedirect redirect) {
+        RedisShard shard = shardManager.route(shortCode);
+        if (shard == null) {
+            return false;
+        }
+        try {
+            long ttlSeconds = ttlSeconds(shard, shortCode);
+            CachedRedirect stamped = stamp(redirect, ttlSeconds);
+            Boolean updated = shard.execute(template -> template.opsForValue()
+                    .setIfPresent(shortCode, stamped, ttlSeconds, TimeUnit.SECONDS));
+            if (Boolean.TRUE.equals(updated)) {
+                localUrlCache.put(shortCode, stamped);
+                return true;
+            }
+        } catch (Exception e) {
+            logger.error("❌ Cache REFRESH failed for {}: {}", shortCode, e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * TTL tiré au hasard sous le TTL nominal : étale les expirations d'entrées écrites ensemble
+     */
+    private long ttlSeconds(RedisShard shard, String shortCode) {
+        long base = shard == shardManager.owner(shortCode) ? ttlSeconds : failoverTtlSeconds;
+        return Math.max(1, base - (long) (base * ttlJitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Échéance logique portée par la valeur (codec v2) : le refresh anticipé n'a pas besoin de PTTL
+     */
+    private static CachedRedirect stamp(CachedRedirect redirect, long ttlSeconds) {
+        return redirect.withExpiresAt(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
     /**
      * Delete from cache (invalidation)
      */
     public void delete(String shortCode) {
+        localUrlCache.invalidate(shortCode);
         try {
-            shardManager.getShard(shortCode)
-                    .delete(shortCode);
+            RedisShard owner = shardManager.owner(shortCode);
+            RedisShard shard = shardManager.route(shortCode);
+            if (shard != owner) {
+                // Propriétaire indisponible : DEL rejoué quand son breaker se referme
+                owner.deferDelete(shortCode);
+            }
+            if (shard != null) {
+                shard.execute(template -> template.delete(shortCode));
+            }
+            // Migration en cours : sinon l'ancienne valeur serait relue (dual-read) ou recopiée
+            RedisShard previous = shardManager.routePrevious(shortCode);
+            if (previous != null) {
+                previous.execute(template -> template.delete(shortCode));
+            }
+            deleteReplicas(shortCode, owner, shard);
             logger.debug("✅ Cache DELETE: {}", shortCode);
         } catch (Exception e) {
             logger.error("❌ Cache DELETE failed for {}: {}", shortCode, e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Copies hot : DEL sur tous les réplicas, même si le code n'est plus hot (il a pu refroidir
+     * avant l'expiration de ses copies). Réplica indisponible → DEL différé comme pour le propriétaire
+     */
+    private void deleteReplicas(String shortCode, RedisShard owner, RedisShard routed) {
+        for (RedisShard replica : hotKeyTracker.replicaShards(shortCode)) {
+            if (replica == owner || replica == routed) {
+                continue;
+            }
+            if (!replica.isAvailable()) {
+                replica.deferDelete(shortCode);
+                continue;
+            }
+            try {
+                replica.execute(template -> template.delete(shortCode));
+            } catch (Exception e) {
+                replica.deferDelete(shortCode);
+                logger.error("❌ Cache DELETE failed for {} on replica {}: {}", shortCode, replica.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Invalidation complète : shard Redis + cache local de TOUS les nœuds (pub/sub)
+     */
+    public void invalidate(String shortCode) {
+        delete(shortCode);
+        invalidationBus.publish(shortCode);
+    }
+
+    /**
+     * Batch GET : L1 d'abord, puis 1 MGET par shard, tous les shards en parallèle
+     *
+     * @return uniquement les codes trouvés (les absents sont des miss → DB)
+     */
+    public Map<String, CachedRedirect> getAll(Collection<String> shortCodes) {
+        Map<String, CachedRedirect> found = new HashMap<>();
+        Map<RedisShard, List<String>> byShard = new IdentityHashMap<>();
+        List<String> unrouted = new ArrayList<>();
+
+        for (String shortCode : shortCodes) {
+            CachedRedirect local = localUrlCache.get(shortCode);
+            if (local != null) {
+                found.put(shortCode, local);
+                continue;
+            }
+            RedisShard shard = shardManager.route(shortCode);
+            if (shard != null) {
+                byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(shortCode);
+            } else {
+                unrouted.add(shortCode); // breaker ouvert → miss direct, sauf dual-read
+            }
+        }
+
+        List<CompletableFuture<Map<String, CachedRedirect>>> futures = new ArrayList<>(byShard.size());
+        byShard.forEach((shard, keys) -> futures.add(
+                CompletableFuture.supplyAsync(() -> multiGet(shard, keys), shardExecutor)));
+
+        for (CompletableFuture<Map<String, CachedRedirect>> future : futures) {
+            Map<String, CachedRedirect> shardResult = future.join();
+            shardResult.forEach(localUrlCache::put);
+            found.putAll(shardResult);
+        }
+
+        if (shardManager.getTopology().isMigrating()) {
+            byShard.values().forEach(unrouted::addAll);
+            getAllFromPreviousOwners(unrouted, found);
+        }
+        return found;
+    }
+
+    /**
+     * Dual-read batch : les miss sont re-demandés à leur ancien propriétaire (1 MGET par ancien shard)
+     */
+    private void getAllFromPreviousOwners(List<String> requested, Map<String, CachedRedirect> found) {
+        Map<RedisShard, List<String>> byPreviousShard = new IdentityHashMap<>();
+        for (String shortCode : requested) {
+            if (found.containsKey(shortCode)) {
+                continue;
+            }
+            RedisShard previous = shardManager.routePrevious(shortCode);
+            if (previous != null) {
+                byPreviousShard.computeIfAbsent(previous, shard -> new ArrayList<>()).add(shortCode);
+            }
+        }
+
+        Map<String, CachedRedirect> recovered = new HashMap<>();
+        byPreviousShard.forEach((shard, keys) -> recovered.putAll(multiGet(shard, keys)));
+        recovered.forEach(localUrlCache::put);
+        found.putAll(recovered);
+    }
+
+    /**
+     * Batch SET : 1 pipeline par shard, en parallèle
+     * L1 reçoit les mêmes instances que Redis (avec échéance, comme set) → refresh anticipé aussi pour ces entrées
+     */
+    public void setAll(Map<String, CachedRedirect> redirects) {
+        warmShards(redirects).forEach(localUrlCache::put);
+    }
+
+    /**
+     * Batch SET sur les shards uniquement (import en masse) : des millions de codes
+     * ne doivent pas chasser les entrées chaudes du cache L1
+     *
+     * @return les valeurs avec leur échéance (1 seul stamp par code), pour un L1 identique à Redis
+     *         (shard indisponible → échéance du propriétaire, comme set)
+     */
+    public Map<String, CachedRedirect> warmShards(Map<String, CachedRedirect> redirects) {
+        Map<String, CachedRedirect> stamped = new HashMap<>(redirects.size() * 2);
+        Map<RedisShard, Map<String, Long>> byShard = new IdentityHashMap<>();
+        redirects.forEach((shortCode, redirect) -> {
+            RedisShard shard = shardManager.route(shortCode);
+            // TTL par entrée : jitter + TTL court pour les entrées de failover (shard ≠ propriétaire)
+            long ttlSeconds = ttlSeconds(shard != null ? shard : shardManager.owner(shortCode), shortCode);
+            stamped.put(shortCode, stamp(redirect, ttlSeconds));
+            if (shard != null) {
+                byShard.computeIfAbsent(shard, s -> new HashMap<>()).put(shortCode, ttlSeconds);
+            }
+        });
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(byShard.size());
+        byShard.forEach((shard, ttls) -> futures.add(
+                CompletableFuture.runAsync(() -> pipelinedSet(shard, ttls, stamped), shardExecutor)));
+        futures.forEach(CompletableFuture::join);
+        return stamped;
+    }
+
+    private Map<String, CachedRedirect> multiGet(RedisShard shard, List<String> keys) {
+        Map<String, CachedRedirect> result = new HashMap<>();
+        try {
+            List<CachedRedirect> values = shard.execute(template -> template.opsForValue().multiGet(keys));
+            if (values != null) {
+                for (int i = 0; i < keys.size(); i++) {
+                    if (values.get(i) != null) {
+                        result.put(keys.get(i), values.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("❌ Cache MGET failed for {} keys: {}", keys.size(), e.getMessage());
+        }
+        return result; // Shard en erreur → tout en miss (fallback DB)
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pipelinedSet(RedisShard shard, Map<String, Long> ttls, Map<String, CachedRedirect> stamped) {
+        RedisSerializer<CachedRedirect> valueSerializer =
+                (RedisSerializer<CachedRedirect>) shard.getTemplate().getValueSerializer();
+        try {
+            shard.execute(template -> template.executePipelined((RedisCallback<Object>) connection -> {
+                ttls.forEach((shortCode, ttlSeconds) -> connection.stringCommands().set(
+                        shortCode.getBytes(StandardCharsets.UTF_8),
+                        valueSerializer.serialize(stamped.get(shortCode)),
+                        Expiration.seconds(ttlSeconds),
+                        RedisStringCommands.SetOption.upsert()));
+                return null;
+            }));
+        } catch (Exception e) {
+            logger.error("❌ Cache pipelined SET failed for {} keys: {}", ttls.size(), e.getMessage());
+        }
+    }
+}
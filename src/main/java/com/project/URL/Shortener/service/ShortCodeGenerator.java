@@ -0,0 +1,154 @@
+package com.project.URL.Shortener.service;
+
+import com.project.URL.Shortener.entity.CodeSequence;
+import com.project.URL.Shortener.repository.CodeSequenceRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Générateur de short codes côté serveur (hi/lo sur un compteur en base)
+ *
+ * Algorithm :
+ * 1. Chaque nœud loue un bloc d'IDs [start, start + blockSize) en 1 transaction (SELECT FOR UPDATE)
+ * 2. Les IDs du bloc sont distribués en mémoire sans lock (AtomicLong)
+ * 3. ID → "0" + base62 décalé de 62^4 : toujours 6 à 8 caractères (cf. @Size sur Url.shortCode)
+ *
+ * ✅ 2 nœuds n'ont jamais le même bloc, et le compteur est en base → pas de réutilisation après un redémarrage
+ *    (les IDs non utilisés d'un bloc sont simplement perdus)
+ *
+ * Namespace réservé : les codes générés commencent par "0" (GENERATED_PREFIX), jamais suivi d'un autre "0"
+ * ❌ Sans : les codes choisis par le client (POST /create, import) tombent dans la même plage
+ *    → collision = violation de la contrainte unique au moment de l'INSERT
+ * ✅ Les codes client commençant par "0" sont refusés (isReserved : POST /create, import)
+ *    + chaque ID est loué une seule fois → un code généré est unique sans aller-retour ni retry
+ * ⚠️ Prérequis de déploiement : aucune ligne antérieure au namespace réservé ne doit occuper un code "0…"
+ *    (SELECT short_code FROM url WHERE short_code LIKE '0%' → à renommer avant la mise en service).
+ *    Sinon la violation de contrainte remonte comme une erreur, elle n'est pas masquée par un nouveau tirage
+ */
+@Component
+@Slf4j
+public class ShortCodeGenerator {
+
+    private static final String SEQUENCE_NAME = "short_code";
+    private static final char[] ALPHABET =
+            "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    public static final String GENERATED_PREFIX = "0";
+    private static final long MIN_CODE_VALUE = pow62(4);           // 10000 en base62 → 5 caractères + préfixe
+    private static final long MAX_ID = pow62(7) - MIN_CODE_VALUE;   // au-delà → 9 caractères avec le préfixe
+
+    private final CodeSequenceRepo codeSequenceRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+
+    private final AtomicReference<Block> currentBlock = new AtomicReference<>();
+    private final ReentrantLock leaseLock = new ReentrantLock();
+
+    public ShortCodeGenerator(CodeSequenceRepo codeSequenceRepo,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${shortcode.block-size:1000}") int blockSize) {
+        this.codeSequenceRepo = codeSequenceRepo;
+        this.transactionTemplate = transactionTemplate;
+        this.blockSize = blockSize;
+    }
+
+    public String nextCode() {
+        return encode(nextId());
+    }
+
+    /**
+     * Code choisi par le client dans le namespace des codes générés → à refuser
+     */
+    public static boolean isReserved(String shortCode) {
+        return shortCode != null && shortCode.startsWith(GENERATED_PREFIX);
+    }
+
+    private long nextId() {
+        while (true) {
+            Block block = currentBlock.get();
+            if (block != null) {
+                long id = block.next.getAndIncrement();
+                if (id < block.end) {
+                    return id;
+                }
+            }
+            // Bloc épuisé : un seul thread loue le suivant, les autres attendent
+            refill(block);
+        }
+    }
+
+    /**
+     * Préfixe + base62, au moins 6 caractères
+     */
+    private static String encode(long id) {
+        if (id < 0 || id >= MAX_ID) {
+            throw new IllegalStateException("Short code space exhausted (id " + id + ")");
+        }
+        long value = id + MIN_CODE_VALUE;
+        char[] buffer = new char[8];
+        int position = buffer.length;
+        do {
+            buffer[--position] = ALPHABET[(int) (value % 62)];
+            value /= 62;
+        } while (value > 0);
+        buffer[--position] = GENERATED_PREFIX.charAt(0);
+        return new String(buffer, position, buffer.length - position);
+    }
+
+    private void refill(Block exhausted) {
+        leaseLock.lock();
+        try {
+            // Un autre thread a déjà loué un nouveau bloc
+            if (currentBlock.get() != exhausted) {
+                return;
+            }
+            currentBlock.set(leaseBlock());
+        } finally {
+            leaseLock.unlock();
+        }
+    }
+
+    private Block leaseBlock() {
+        try {
+            return transactionTemplate.execute(status -> lease());
+        } catch (DataIntegrityViolationException e) {
+            // Premier démarrage : 2 nœuds ont créé la ligne en même temps → elle existe maintenant
+            return transactionTemplate.execute(status -> lease());
+        }
+    }
+
+    private Block lease() {
+        CodeSequence sequence = codeSequenceRepo.findForUpdate(SEQUENCE_NAME)
+                .orElseGet(() -> codeSequenceRepo.saveAndFlush(new CodeSequence(SEQUENCE_NAME, 0L)));
+
+        long start = sequence.getNextValue();
+        sequence.setNextValue(start + blockSize); // flush au commit (dirty checking)
+
+        log.info("🔢 Leased short code block [{}, {})", start, start + blockSize);
+        return new Block(start, start + blockSize);
+    }
+
+    private static long pow62(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 62;
+        }
+        return result;
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
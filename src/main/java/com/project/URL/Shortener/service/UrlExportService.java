@@ -0,0 +1,79 @@
+package com.project.URL.Shortener.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.URL.Shortener.entity.Url;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Export de toute la table url en NDJSON (1 objet Url par ligne)
+ *
+ * Pourquoi pas findAll() ?
+ * ❌ findAll() charge toutes les entités (+ le contexte de persistance JPA) avant d'écrire 1 octet → OOM
+ * ✅ Curseur JDBC forward-only (fetch size) : chaque ligne est écrite puis oubliée → mémoire constante
+ */
+@Service
+@Slf4j
+public class UrlExportService {
+
+    private static final int FETCH_SIZE = 1_000;
+    // Flush régulier : le client reçoit les lignes au fil de l'eau
+    private static final int FLUSH_EVERY_ROWS = 1_000;
+
+    private static final String EXPORT_SQL =
+            "SELECT id, original_url, short_code, click_count, created_at FROM url ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public UrlExportService(DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper) {
+        // JdbcTemplate dédié : le fetch size ne doit pas s'appliquer au reste de l'app
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        // PostgreSQL ne streame (curseur) qu'en dehors de l'autocommit
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return nombre de lignes écrites
+     */
+    public long exportNdjson(OutputStream outputStream) throws IOException {
+        AtomicLong rows = new AtomicLong();
+        try {
+            readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query(EXPORT_SQL, rs -> {
+                        Url url = new Url(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                rs.getLong(4), rs.getTimestamp(5));
+                        try {
+                            outputStream.write(objectMapper.writeValueAsBytes(url));
+                            outputStream.write('\n');
+                            if (rows.incrementAndGet() % FLUSH_EVERY_ROWS == 0) {
+                                outputStream.flush();
+                            }
+                        } catch (IOException e) {
+                            // Client déconnecté → on arrête le curseur
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+        } catch (UncheckedIOException e) {
+            log.warn("⚠️ Export interrupted after {} rows: {}", rows.get(), e.getCause().getMessage());
+            throw e.getCause();
+        }
+        outputStream.flush();
+        return rows.get();
+    }
+}
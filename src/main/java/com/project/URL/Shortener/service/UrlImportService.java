@@ -0,0 +1,432 @@
+package com.project.URL.Shortener.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import com.project.URL.Shortener.config.VirtualThreads;
+import com.project.URL.Shortener.entity.Url;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Import en masse de mappings (migration depuis un autre shortener), CSV ou NDJSON en streaming
+ *
+ * ❌ POST /create par URL : 1 INSERT unitaire (IDENTITY → Hibernate ne batche pas) + 1 SET Redis par ligne
+ * ✅ Ici :
+ *    1. Lecture ligne par ligne (mémoire bornée par le nombre de lots en vol)
+ *    2. Validation avec les règles de l'entité Url (Bean Validation) ; code absent → généré
+ *    3. INSERT JDBC batché par lot (1 transaction par lot)
+ *    4. Warm-up des shards : 1 SET pipeliné par shard et par lot + bloom filter (1 message pub/sub par lot)
+ *    5. Les lots sont traités en parallèle (import.parallelism)
+ *
+ * Une ligne invalide ou en conflit (code déjà pris) est reportée avec son numéro de ligne,
+ * l'import continue : un lot rejeté par la base est rejoué ligne par ligne pour isoler les fautives
+ * Un lot perdu entièrement (erreur hors base) est compté en échec, reporté avec sa plage de lignes
+ *
+ * Codes importés : même règle que POST /create, le préfixe des codes générés est refusé
+ * (cf. ShortCodeGenerator.isReserved) → un import massif ne peut pas entrer en collision avec les codes générés
+ *
+ * ⚠️ Débit : non mesuré (objectif : centaines de milliers de lignes/s). Le rowsPerSecond de la réponse
+ *    donne le chiffre réel d'un import, aucun n'a encore été relevé sur une vraie base.
+ */
+@Service
+@Slf4j
+public class UrlImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final String INSERT_SQL =
+            "INSERT INTO url (original_url, short_code, click_count, created_at) VALUES (?, ?, 0, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final RedisService redisService;
+    private final ShortCodeBloomFilter bloomFilter;
+    private final int batchSize;
+    private final int maxReportedErrors;
+    private final int parallelism;
+    private final ExecutorService batchExecutor;
+
+    @Autowired
+    public UrlImportService(DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            Validator validator,
+                            ObjectMapper objectMapper,
+                            ShortCodeGenerator shortCodeGenerator,
+                            RedisService redisService,
+                            ShortCodeBloomFilter bloomFilter,
+                            @Value("${import.batch-size:5000}") int batchSize,
+                            @Value("${import.parallelism:4}") int parallelism,
+                            @Value("${import.max-reported-errors:1000}") int maxReportedErrors,
+                            @Value(VirtualThreads.ENABLED_PROPERTY) boolean virtualThreads) {
+        this(new JdbcTemplate(dataSource), new TransactionTemplate(transactionManager), validator, objectMapper,
+                shortCodeGenerator, redisService, bloomFilter, batchSize, parallelism, maxReportedErrors,
+                VirtualThreads.newExecutor("url-import", parallelism, virtualThreads));
+    }
+
+    /**
+     * JDBC et transactions fournis de l'extérieur, platform threads (tests)
+     */
+    public UrlImportService(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            Validator validator,
+                            ObjectMapper objectMapper,
+                            ShortCodeGenerator shortCodeGenerator,
+                            RedisService redisService,
+                            ShortCodeBloomFilter bloomFilter,
+                            int batchSize,
+                            int parallelism,
+                            int maxReportedErrors) {
+        this(jdbcTemplate, transactionTemplate, validator, objectMapper, shortCodeGenerator, redisService,
+                bloomFilter, batchSize, parallelism, maxReportedErrors,
+                VirtualThreads.newExecutor("url-import", parallelism, false));
+    }
+
+    private UrlImportService(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             ShortCodeGenerator shortCodeGenerator,
+                             RedisService redisService,
+                             ShortCodeBloomFilter bloomFilter,
+                             int batchSize,
+                             int parallelism,
+                             int maxReportedErrors,
+                             ExecutorService batchExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.redisService = redisService;
+        this.bloomFilter = bloomFilter;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.maxReportedErrors = maxReportedErrors;
+        this.batchExecutor = batchExecutor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    public Map<String, Object> importStream(InputStream inputStream, Format format) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Report report = new Report(maxReportedErrors);
+        // Borne le nombre de lots en mémoire : la lecture attend si la base est en retard
+        Semaphore inFlightBatches = new Semaphore(parallelism * 2);
+        Map<Batch, Future<?>> futures = new LinkedHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8), 64 * 1024)) {
+            List<Row> batch = new ArrayList<>(batchSize);
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && isCsvHeader(line))) {
+                    continue;
+                }
+                report.rows.increment();
+                Row row = parse(line, lineNumber, format, report);
+                if (row == null) {
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() >= batchSize) {
+                    Batch submitted = new Batch(batch);
+                    futures.put(submitted, submit(submitted, report, inFlightBatches));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                Batch submitted = new Batch(batch);
+                futures.put(submitted, submit(submitted, report, inFlightBatches));
+            }
+        } finally {
+            awaitAll(futures, report);
+        }
+
+        long durationMs = Math.max(1, System.currentTimeMillis() - startTime);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rows", report.rows.sum());
+        result.put("imported", report.imported.sum());
+        result.put("failed", report.failed.sum());
+        result.put("durationMs", durationMs);
+        result.put("rowsPerSecond", report.rows.sum() * 1000 / durationMs);
+        result.put("errors", new ArrayList<>(report.errors));
+        log.info("✅ Import finished: {} rows, {} imported, {} failed in {}ms",
+                report.rows.sum(), report.imported.sum(), report.failed.sum(), durationMs);
+        return result;
+    }
+
+    // ---------------------- Parsing / validation ----------------------
+
+    private Row parse(String line, long lineNumber, Format format, Report report) {
+        String originalUrl;
+        String shortCode;
+        try {
+            if (format == Format.CSV) {
+                List<String> columns = parseCsvLine(line);
+                originalUrl = columns.get(0);
+                shortCode = columns.size() > 1 ? columns.get(1) : null;
+            } else {
+                JsonNode node = objectMapper.readTree(line);
+                originalUrl = node.path("originalUrl").isTextual() ? node.get("originalUrl").asText() : null;
+                shortCode = node.path("shortCode").isTextual() ? node.get("shortCode").asText() : null;
+            }
+        } catch (Exception e) {
+            report.fail(lineNumber, null, "Malformed " + format + " line: " + e.getMessage());
+            return null;
+        }
+        if (shortCode != null && shortCode.isBlank()) {
+            shortCode = null;
+        }
+
+        // Mêmes règles que POST /create (@Valid sur l'entité)
+        Url candidate = new Url();
+        candidate.setOriginalUrl(originalUrl);
+        candidate.setShortCode(shortCode);
+        Set<ConstraintViolation<Url>> violations = validator.validate(candidate);
+        if (!violations.isEmpty()) {
+            report.fail(lineNumber, shortCode, violations.iterator().next().getMessage());
+            return null;
+        }
+        if (ShortCodeGenerator.isReserved(shortCode)) {
+            report.fail(lineNumber, shortCode,
+                    "Short codes starting with '" + ShortCodeGenerator.GENERATED_PREFIX + "' are reserved");
+            return null;
+        }
+        return shortCode != null
+                ? new Row(lineNumber, originalUrl, shortCode)
+                : new Row(lineNumber, originalUrl, shortCodeGenerator.nextCode());
+    }
+
+    private static boolean isCsvHeader(String line) {
+        // En-tête optionnel : originalUrl,shortCode
+        return line.regionMatches(true, 0, "original", 0, 8);
+    }
+
+    /**
+     * Colonnes : originalUrl[,shortCode] ; champs entre guillemets autorisés (URLs avec virgules, "" = guillemet)
+     */
+    public static List<String> parseCsvLine(String line) {
+        List<String> columns = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        columns.add(field.toString().trim());
+        return columns;
+    }
+
+    // ---------------------- Insert + warm-up ----------------------
+
+    private Future<?> submit(Batch batch, Report report, Semaphore inFlightBatches) throws IOException {
+        try {
+            inFlightBatches.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+        return batchExecutor.submit(() -> {
+            try {
+                importBatch(batch, report);
+            } finally {
+                inFlightBatches.release();
+            }
+        });
+    }
+
+    private void importBatch(Batch batch, Report report) {
+        Timestamp createdAt = new Timestamp(System.currentTimeMillis());
+        List<Row> rows = batch.rows;
+        List<Row> inserted;
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+                        ps.setString(1, row.originalUrl());
+                        ps.setString(2, row.shortCode());
+                        ps.setTimestamp(3, createdAt);
+                    }));
+            inserted = rows;
+        } catch (DataAccessException e) {
+            // Lot entier annulé (code déjà pris, valeur trop longue...) → rejoué ligne par ligne
+            inserted = insertOneByOne(rows, createdAt, report);
+        }
+        report.imported.add(inserted.size());
+        // Chaque ligne est comptée (importée ou en échec) : le warm-up ne peut plus faire perdre le lot
+        batch.accounted = true;
+        if (inserted.isEmpty()) {
+            return;
+        }
+
+        Map<String, CachedRedirect> redirects = new HashMap<>(inserted.size() * 2);
+        List<String> codes = new ArrayList<>(inserted.size());
+        for (Row row : inserted) {
+            redirects.put(row.shortCode(), new CachedRedirect(row.originalUrl()));
+            codes.add(row.shortCode());
+        }
+        try {
+            bloomFilter.addAllAndPublish(codes);
+            redisService.warmShards(redirects);
+        } catch (Exception e) {
+            // Lignes déjà en base : le cache se remplira à la lecture
+            log.warn("⚠️ Import warm-up failed for lines {}-{}: {}", batch.firstLine(), batch.lastLine(), e.getMessage());
+        }
+    }
+
+    private List<Row> insertOneByOne(List<Row> batch, Timestamp createdAt, Report report) {
+        List<Row> inserted = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, row.originalUrl(), row.shortCode(), createdAt);
+                inserted.add(row);
+            } catch (DuplicateKeyException e) {
+                // Code client déjà pris. Un code généré n'arrive ici que si une ligne antérieure occupe
+                // le namespace réservé (cf. ShortCodeGenerator) : reporté, pas de nouveau tirage
+                report.fail(row.line(), row.shortCode(), "Short code already exists");
+            } catch (DataAccessException e) {
+                report.fail(row.line(), row.shortCode(), e.getMostSpecificCause().getMessage());
+            }
+        }
+        return inserted;
+    }
+
+    private void awaitAll(Map<Batch, Future<?>> futures, Report report) throws IOException {
+        for (Map.Entry<Batch, Future<?>> entry : futures.entrySet()) {
+            Batch batch = entry.getKey();
+            try {
+                entry.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            } catch (ExecutionException e) {
+                // Lot perdu (erreur hors base, avant le décompte par ligne) : tout le lot en échec, les autres continuent
+                if (!batch.accounted) {
+                    String error = "Batch failed: " + e.getCause().getMessage();
+                    report.failBatch(batch.firstLine(), batch.lastLine(), batch.rows.size(), error);
+                }
+                log.error("❌ Import batch failed (lines {}-{}): {}", batch.firstLine(), batch.lastLine(),
+                        e.getCause().getMessage());
+            }
+        }
+    }
+
+    private record Row(long line, String originalUrl, String shortCode) {
+    }
+
+    /**
+     * accounted : écrit par le thread du lot, lu après Future.get() (happens-before)
+     */
+    private static final class Batch {
+        private final List<Row> rows;
+        private boolean accounted;
+
+        private Batch(List<Row> rows) {
+            this.rows = rows;
+        }
+
+        private long firstLine() {
+            return rows.get(0).line();
+        }
+
+        private long lastLine() {
+            return rows.get(rows.size() - 1).line();
+        }
+    }
+
+    private static final class Report {
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        // Seules les N premières erreurs sont détaillées (un fichier entièrement invalide ne doit pas exploser la réponse)
+        private final ConcurrentLinkedQueue<Map<String, Object>> errors = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger reportedErrors = new AtomicInteger();
+        private final int maxReportedErrors;
+
+        private Report(int maxReportedErrors) {
+            this.maxReportedErrors = maxReportedErrors;
+        }
+
+        private void fail(long line, String shortCode, String error) {
+            failed.increment();
+            if (reportedErrors.incrementAndGet() <= maxReportedErrors) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("line", line);
+                entry.put("shortCode", shortCode);
+                entry.put("error", error);
+                errors.add(entry);
+            }
+        }
+
+        private void failBatch(long firstLine, long lastLine, int rowCount, String error) {
+            failed.add(rowCount);
+            if (reportedErrors.incrementAndGet() <= maxReportedErrors) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("line", firstLine);
+                entry.put("lastLine", lastLine);
+                entry.put("rows", rowCount);
+                entry.put("error", error);
+                errors.add(entry);
+            }
+        }
+    }
+}
@@ -2,14 +2,17 @@ package com.project.URL.Shortener.service;
 
 import com.project.URL.Shortener.entity.Url;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UrlService {
     Url saveUrl(Url url);
-    List<Url> getAll();
+    List<Url> getPage(long afterId, int size);
     Url getUrlByShortCode(String code);
     Url updateUrl(String shortCode, Url updatedUrl);
     boolean deleteUrl(String shortCode);
+    Map<String, String> resolveAll(Collection<String> codes);
 
 
 }
@@ -1,16 +1,22 @@
 package com.project.URL.Shortener.service;
 
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import com.project.URL.Shortener.cache.SingleFlight;
 import com.project.URL.Shortener.entity.Url;
 import com.project.URL.Shortener.repository.UrlRepo;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 @Service
 public class UrlServiceImpl implements UrlService {
@@ -18,81 +24,115 @@ public class UrlServiceImpl implements UrlService {
 
     private final UrlRepo urlRepo;
     private final PerformanceLogService performanceLogService;
-    private final RedisTemplate<String, Long> clickRedisTemplate;
+    private final ClickAccumulator clickAccumulator;
     private  final RedisService redisService;
-    public UrlServiceImpl(RedisService redisService,UrlRepo urlRepo,@Qualifier("clickCounterRedisTemplate") RedisTemplate<String, Long> clickRedisTemplate
-, PerformanceLogService performanceLogService) {
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ShortCodeBloomFilter bloomFilter;
+    private final SingleFlight<String, Url> urlLoads = new SingleFlight<>();
+    public UrlServiceImpl(RedisService redisService,UrlRepo urlRepo,ClickAccumulator clickAccumulator
+, PerformanceLogService performanceLogService, ShortCodeGenerator shortCodeGenerator,
+                          ShortCodeBloomFilter bloomFilter) {
         this.urlRepo = urlRepo;
         this.performanceLogService = performanceLogService;
-        this.clickRedisTemplate=clickRedisTemplate;
+        this.clickAccumulator = clickAccumulator;
         this.redisService=redisService;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.bloomFilter = bloomFilter;
 
     }
 
     @Override
     public Url  saveUrl(Url url) {
+        // Pas de shortCode fourni → généré côté serveur (namespace réservé, cf. ShortCodeGenerator)
+        if (url.getShortCode() == null || url.getShortCode().isBlank()) {
+            url.setShortCode(shortCodeGenerator.nextCode());
+        }
+
         long dbStartTime = System.currentTimeMillis();
+        // Pas de retry : un code généré est unique par construction (cf. ShortCodeGenerator),
+        // une violation de contrainte remonte telle quelle (GlobalExceptionHandler)
         Url savedUrl = urlRepo.save(url);
         long dbTime = System.currentTimeMillis() - dbStartTime;
         performanceLogService.logDatabaseSave(url.getShortCode(), url.getOriginalUrl(), dbTime);
+
+        // Visible dans le bloom filter de tous les nœuds
+        bloomFilter.addAndPublish(savedUrl.getShortCode());
         return savedUrl;
     }
 
     @Override
-    public List<Url> getAll() {
-
-        // Return all URLs
-        return urlRepo.findAll();
+    public List<Url> getPage(long afterId, int size) {
+        // Curseur sur l'id (index PK) : pas d'OFFSET, pas de table entière en mémoire
+        return urlRepo.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.ofSize(size));
     }
 
+    /**
+     * Chargement DB après un cache miss (le controller a déjà consulté RedisService)
+     *
+     * Single-flight : si N requêtes ratent le cache en même temps pour le même code,
+     * une seule fait la requête DB + le SET Redis, les autres attendent son résultat.
+     */
     @Override
-    // SOLUTION : Modifier UrlServiceImpl pour utiliser RedisService
-
     public Url getUrlByShortCode(String code) {
-        long startTime = System.currentTimeMillis();
-
-        // ✅ UTILISER RedisService (sharding) au lieu de redisTemplate direct
-        Url cachedUrl = redisService.get(code);  // ← CHANGEMENT CRITIQUE
-
-        if (cachedUrl != null) {
-            // Cache HIT - return
-            incrementClickAsync(code);
-            return cachedUrl;
-        }
+        return urlLoads.execute(code, () -> loadFromDatabase(code));
+    }
 
-        // Cache MISS - query database
+    private Url loadFromDatabase(String code) {
+        long dbStartTime = System.currentTimeMillis();
         Optional<Url> urlOptional = urlRepo.findByShortCode(code);
+        performanceLogService.logDatabaseQuery(code, "FIND_BY_SHORT_CODE",
+                System.currentTimeMillis() - dbStartTime);
 
-        if (urlOptional.isPresent()) {
-            Url urlFromDb = urlOptional.get();
-
-            // ✅ UTILISER RedisService pour stocker
-            redisService.set(code, urlFromDb);  // ← CHANGEMENT CRITIQUE
-
-            incrementClickAsync(code);
-            return urlFromDb;
+        if (urlOptional.isEmpty()) {
+            return null;
         }
 
-        return null;
+        // Populate cache avant de libérer les followers → les requêtes suivantes font un HIT
+        Url urlFromDb = urlOptional.get();
+        redisService.set(code, urlFromDb);
+        return urlFromDb;
     }
 
 
     /**
-     * Async click increment - separates click tracking from read path
-     * This prevents click updates from slowing down redirects
+     * Batch resolve : bloom filter → cache (1 MGET par shard, en parallèle) → 1 seule requête IN (...)
+     *
+     * @return code → originalUrl (null si le code n'existe pas), dans l'ordre de la requête
      */
+    @Override
+    public Map<String, String> resolveAll(Collection<String> codes) {
+        Map<String, String> result = new LinkedHashMap<>();
+        List<String> candidates = new ArrayList<>();
+        for (String code : new LinkedHashSet<>(codes)) {
+            result.put(code, null);
+            if (bloomFilter.mightContain(code)) {
+                candidates.add(code);
+            }
+        }
 
-    @Async
-    public void incrementClickAsync(String code) {
-        try {
-            String redisKey = "click:" + code;
-            clickRedisTemplate.opsForValue().increment(redisKey, 1);
-            clickRedisTemplate.expire(redisKey, 24, TimeUnit.HOURS);
-        } catch (Exception e) {
-            performanceLogService.logError("INCREMENT_CLICKS", code, e);
+        // 1. Cache
+        Map<String, CachedRedirect> cached = redisService.getAll(candidates);
+        cached.forEach((code, redirect) -> result.put(code, redirect.originalUrl()));
+
+        List<String> misses = candidates.stream().filter(code -> !cached.containsKey(code)).toList();
+        if (misses.isEmpty()) {
+            return result;
         }
-    }
 
+        // 2. DB : tous les miss en 1 requête, puis re-remplir le cache (pipeline par shard)
+        long dbStartTime = System.currentTimeMillis();
+        List<Url> urls = urlRepo.findByShortCodeIn(misses);
+        performanceLogService.logDatabaseQuery("N/A", "FIND_BY_SHORT_CODE_IN(" + misses.size() + ")",
+                System.currentTimeMillis() - dbStartTime);
+
+        Map<String, CachedRedirect> loaded = new HashMap<>();
+        for (Url url : urls) {
+            loaded.put(url.getShortCode(), CachedRedirect.from(url));
+            result.put(url.getShortCode(), url.getOriginalUrl());
+        }
+        redisService.setAll(loaded);
+        return result;
+    }
 
     // Ajouter ces méthodes dans UrlServiceImpl:
 
@@ -122,9 +162,9 @@ public class UrlServiceImpl implements UrlService {
 
             performanceLogService.logDatabaseQuery(shortCode, "UPDATE", dbTime);
 
-            // 3. 🚨 CACHE INVALIDATION - Supprimer de Redis
+            // 3. 🚨 CACHE INVALIDATION - Supprimer de Redis + caches locaux (pub/sub)
             long cacheStartTime = System.currentTimeMillis();
-            redisService.delete(shortCode);
+            redisService.invalidate(shortCode);
             long cacheTime = System.currentTimeMillis() - cacheStartTime;
 
 
@@ -163,16 +203,15 @@ public class UrlServiceImpl implements UrlService {
 
             performanceLogService.logDatabaseQuery(shortCode, "DELETE", dbTime);
 
-            // 3. 🚨 CACHE INVALIDATION - Supprimer de Redis
+            // 3. 🚨 CACHE INVALIDATION - Supprimer de Redis + caches locaux (pub/sub)
             long cacheStartTime = System.currentTimeMillis();
-            redisService.delete(shortCode);
+            redisService.invalidate(shortCode);
             long cacheTime = System.currentTimeMillis() - cacheStartTime;
 
 
 
             // 4. Aussi supprimer les compteurs de clics Redis
-            String clickKey = "click:" + shortCode;
-            clickRedisTemplate.delete(clickKey);
+            clickAccumulator.discard(shortCode);
 
             // 5. Log completion
             long totalTime = System.currentTimeMillis() - startTime;
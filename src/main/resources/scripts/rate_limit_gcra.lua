@@ -0,0 +1,35 @@
+-- Rate limiting GCRA (Generic Cell Rate Algorithm), plusieurs limites en 1 seul aller-retour
+--
+-- KEYS[i]       : clé de la limite i (contient uniquement le TAT = "theoretical arrival time")
+-- ARGV[2i - 1]  : intervalle d'émission en µs (window / maxRequests)
+-- ARGV[2i]      : tolérance en µs (window → burst de maxRequests autorisé)
+--
+-- Tout-ou-rien : si une limite bloque, aucune n'est consommée.
+-- Retour : 0 si autorisé, sinon l'index (1-based) de la première limite dépassée.
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local newTats = {}
+for i, key in ipairs(KEYS) do
+    local interval = tonumber(ARGV[2 * i - 1])
+    local tolerance = tonumber(ARGV[2 * i])
+
+    local tat = tonumber(redis.call('GET', key))
+    if tat == nil or tat < now then
+        tat = now
+    end
+
+    local newTat = tat + interval
+    if newTat - now > tolerance then
+        return i
+    end
+    newTats[i] = newTat
+end
+
+for i, key in ipairs(KEYS) do
+    local ttlMs = math.ceil((newTats[i] - now) / 1000)
+    redis.call('SET', key, string.format('%.0f', newTats[i]), 'PX', ttlMs)
+end
+
+return 0
@@ -0,0 +1,37 @@
+-- Lease de jetons GCRA pour le tier local (LocalTokenBuckets), plusieurs limites en 1 seul aller-retour
+--
+-- KEYS[i]       : clé de la limite i (mêmes clés / même TAT que rate_limit_gcra.lua)
+-- ARGV[3i - 2]  : intervalle d'émission en µs
+-- ARGV[3i - 1]  : tolérance en µs
+-- ARGV[3i]      : nombre de jetons demandés
+--
+-- Chaque limite est servie indépendamment (pas de tout-ou-rien) : les jetons accordés sont pré-payés
+-- (TAT avancé de n intervalles) et restent dans le bucket local du nœud jusqu'à leur expiration.
+-- Retour : jetons accordés par limite (0 si la limite est atteinte).
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local granted = {}
+for i, key in ipairs(KEYS) do
+    local interval = tonumber(ARGV[3 * i - 2])
+    local tolerance = tonumber(ARGV[3 * i - 1])
+    local requested = tonumber(ARGV[3 * i])
+
+    local tat = tonumber(redis.call('GET', key))
+    if tat == nil or tat < now then
+        tat = now
+    end
+
+    -- Même condition que le GCRA (tat + interval - now <= tolerance), pour n jetons
+    local available = math.floor((tolerance - (tat - now)) / interval)
+    local n = math.min(requested, math.max(available, 0))
+    if n > 0 then
+        local newTat = tat + n * interval
+        local ttlMs = math.ceil((newTat - now) / 1000)
+        redis.call('SET', key, string.format('%.0f', newTat), 'PX', ttlMs)
+    end
+    granted[i] = n
+end
+
+return granted
@@ -0,0 +1,85 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.service.ClickEventRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ring borné : offer() échoue quand il est plein, aucun événement perdu ni dupliqué sous concurrence
+ */
+public class ClickEventRingTest {
+
+    @Test
+    public void testOfferFailsWhenFull() {
+        ClickEventRing<Integer> ring = new ClickEventRing<>(5); // arrondi à 8
+        assertThat(ring.capacity()).isEqualTo(8);
+        for (int i = 0; i < 8; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+        assertThat(ring.offer(8)).isFalse();
+        assertThat(ring.size()).isEqualTo(8);
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(ring.drainTo(drained, 3)).isEqualTo(3);
+        assertThat(drained).containsExactly(0, 1, 2);
+        // Slots libérés → réutilisables au tour suivant
+        assertThat(ring.offer(8)).isTrue();
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        ClickEventRing<Integer> ring = new ClickEventRing<>(1024);
+        int producers = 4;
+        int perProducer = 50_000;
+        AtomicInteger dropped = new AtomicInteger();
+        Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+        AtomicInteger consumedCount = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch producersDone = new CountDownLatch(producers);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 2);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!ring.offer(base + i)) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                producersDone.countDown();
+            });
+        }
+        for (int c = 0; c < 2; c++) {
+            executor.execute(() -> {
+                List<Integer> batch = new ArrayList<>();
+                while (producersDone.getCount() > 0 || ring.size() > 0) {
+                    batch.clear();
+                    ring.drainTo(batch, 100);
+                    for (Integer item : batch) {
+                        if (!consumed.add(item)) {
+                            duplicates.incrementAndGet();
+                        }
+                        consumedCount.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // Tout ce qui a été accepté a été consommé exactement une fois
+        assertThat(consumedCount.get() + dropped.get()).isEqualTo(producers * perProducer);
+        assertThat(duplicates.get()).isZero();
+    }
+}
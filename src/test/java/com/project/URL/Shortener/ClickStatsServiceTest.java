@@ -0,0 +1,84 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.service.ClickStatsService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lecture des stats : breaker du shard propriétaire et dual-read pendant une migration
+ */
+public class ClickStatsServiceTest {
+
+    private static final Instant FROM = Instant.parse("2026-10-17T10:00:00Z");
+    private static final Instant TO = Instant.parse("2026-10-17T11:59:59Z");
+
+    private final RedisShardManager shardManager = Mockito.mock(RedisShardManager.class);
+    private final RedisShard owner = shard("localhost:6379");
+    private final ClickStatsService service = new ClickStatsService(shardManager, true, 48, 30, 400);
+
+    @Test
+    public void testFailsFastWhenOwnerCircuitIsOpen() {
+        when(shardManager.owner("google")).thenReturn(owner);
+        when(owner.isAvailable()).thenReturn(false);
+
+        assertThatThrownBy(() -> service.query("google", FROM, TO, ClickStatsService.Granularity.HOUR))
+                .isInstanceOf(RedisConnectionFailureException.class);
+        verify(owner, never()).execute(any());
+    }
+
+    @Test
+    public void testMergesPreviousOwnerDuringMigration() {
+        RedisShard previous = shard("localhost:6380");
+        when(shardManager.owner("google")).thenReturn(owner);
+        when(shardManager.routePrevious("google")).thenReturn(previous);
+        // 2 buckets heure : [GET, PFCOUNT] × 2 + PFCOUNT de l'union
+        when(owner.execute(any())).thenReturn(Arrays.asList("5", 3L, null, 0L, 3L));
+        when(previous.execute(any())).thenReturn(Arrays.asList("2", 4L, "7", 6L, 9L));
+
+        Map<String, Object> stats = service.query("google", FROM, TO, ClickStatsService.Granularity.HOUR);
+
+        assertThat(stats.get("totalClicks")).isEqualTo(14L);
+        assertThat(stats.get("uniqueVisitors")).isEqualTo(9L);
+        assertThat(stats.get("partial")).isEqualTo(false);
+        List<Map<String, Object>> buckets = (List<Map<String, Object>>) stats.get("buckets");
+        assertThat(buckets).extracting(bucket -> bucket.get("clicks")).containsExactly(7L, 7L);
+        assertThat(buckets).extracting(bucket -> bucket.get("uniqueVisitors")).containsExactly(4L, 6L);
+    }
+
+    @Test
+    public void testFlagsPartialResultWhenPreviousOwnerIsDown() {
+        RedisShard previous = shard("localhost:6380");
+        when(shardManager.owner("google")).thenReturn(owner);
+        when(shardManager.routePrevious("google")).thenReturn(previous);
+        when(previous.isAvailable()).thenReturn(false);
+        when(owner.execute(any())).thenReturn(Arrays.asList("5", 3L, null, 0L, 3L));
+
+        Map<String, Object> stats = service.query("google", FROM, TO, ClickStatsService.Granularity.HOUR);
+
+        assertThat(stats.get("totalClicks")).isEqualTo(5L);
+        assertThat(stats.get("partial")).isEqualTo(true);
+        verify(previous, never()).execute(any());
+    }
+
+    private static RedisShard shard(String name) {
+        RedisShard shard = Mockito.mock(RedisShard.class);
+        when(shard.getName()).thenReturn(name);
+        when(shard.isAvailable()).thenReturn(true);
+        return shard;
+    }
+}
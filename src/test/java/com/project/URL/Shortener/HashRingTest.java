@@ -0,0 +1,102 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.HashRing;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ring primitif : placement MD5 historique reproduit à l'identique, migration MD5 → FAST mesurée
+ */
+public class HashRingTest {
+
+    private static final int KEYS = 200_000;
+    private static final List<String> ADDRESSES =
+            List.of("localhost:6379", "localhost:6380", "localhost:6381", "localhost:6382");
+
+    @Test
+    public void testLegacyRingMatchesHistoricalTreeMapPlacement() throws Exception {
+        HashRing legacy = HashRing.legacy(4);
+        TreeMap<Long, Integer> historical = historicalRing(4);
+
+        assertThat(legacy.getVirtualNodeCount()).isEqualTo(historical.size());
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key" + i;
+            Map.Entry<Long, Integer> entry = historical.ceilingEntry(md5(key));
+            int expected = (entry != null ? entry : historical.firstEntry()).getValue();
+            assertThat(legacy.ownerIndex(key)).as(key).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testFastRingBalanceAndKeysMovedFromLegacy() {
+        HashRing legacy = HashRing.legacy(4);
+        HashRing fast = new HashRing(ADDRESSES, 1500, HashRing.Algorithm.FAST);
+
+        int[] perShard = new int[4];
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key" + i;
+            int owner = fast.ownerIndex(key);
+            perShard[owner]++;
+            if (owner != legacy.ownerIndex(key)) {
+                moved++;
+            }
+        }
+
+        // 1500 virtual nodes : chaque shard à ±5% de N/4
+        for (int count : perShard) {
+            assertThat(count).isBetween((int) (KEYS / 4 * 0.95), (int) (KEYS / 4 * 1.05));
+        }
+        // Ring indépendant de l'ancien → ~3/4 des clés changent de shard (autant de cache miss au switch)
+        assertThat((double) moved / KEYS).isBetween(0.70, 0.80);
+    }
+
+    @Test
+    public void testAddingShardMovesAboutOneFifthOfKeys() {
+        List<String> grown = new ArrayList<>(ADDRESSES);
+        grown.add("localhost:6383");
+        HashRing before = new HashRing(ADDRESSES, 1500, HashRing.Algorithm.FAST);
+        HashRing after = new HashRing(grown, 1500, HashRing.Algorithm.FAST);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key" + i;
+            if (!ADDRESSES.get(before.ownerIndex(key)).equals(grown.get(after.ownerIndex(key)))) {
+                moved++;
+            }
+        }
+
+        // Positions calculées sur l'adresse : seules les clés du nouveau shard bougent (~1/N)
+        assertThat((double) moved / KEYS).isBetween(0.17, 0.23);
+    }
+
+    /**
+     * Copie de l'ancien RedisShardManager : TreeMap, "shard-i#j", 150 virtual nodes, MD5
+     */
+    private static TreeMap<Long, Integer> historicalRing(int shardCount) throws Exception {
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int i = 0; i < shardCount; i++) {
+            for (int j = 0; j < 150; j++) {
+                ring.put(md5("shard-" + i + "#" + j), i);
+            }
+        }
+        return ring;
+    }
+
+    private static long md5(String key) throws Exception {
+        byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,62 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.HotKeyTracker;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Estimation du débit sous contention : les échantillons perdus au tryLock ne biaisent pas le débit vers le bas
+ */
+public class HotKeyTrackerTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 20_000;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSkippedSamplesAreCompensatedInEstimatedRate() throws Exception {
+        RedisShardManager shardManager = new RedisShardManager(List.of(
+                RedisShard.of("localhost:6379", Mockito.mock(RedisTemplate.class))));
+        // sample-every = 1 : chaque appel est tiré, seuls les tryLock perdus manquent au sketch
+        HotKeyTracker tracker = new HotKeyTracker(shardManager, true, 16, 1, Double.MAX_VALUE, 1, 300);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    tracker.record("viral");
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        tracker.rotateWindow();
+
+        Map<String, Object> stats = tracker.getStats();
+        long recorded = (long) stats.get("lastWindowSamples");
+        long skipped = (long) stats.get("lastWindowSkippedSamples");
+        assertThat(recorded + skipped).isEqualTo((long) THREADS * CALLS_PER_THREAD);
+        // Estimation = appels réels, même si une partie des échantillons a été perdue
+        assertThat(stats.get("lastWindowEstimatedRequests")).isEqualTo((long) THREADS * CALLS_PER_THREAD);
+    }
+}
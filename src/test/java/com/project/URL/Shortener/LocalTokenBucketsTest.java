@@ -0,0 +1,119 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.config.RateLimitConfig;
+import com.project.URL.Shortener.service.LocalTokenBuckets;
+import com.project.URL.Shortener.service.LocalTokenBuckets.Limit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Plusieurs nœuds simulés (1 LocalTokenBuckets chacun) devant 1 GCRA partagé en mémoire (= rate_limit_lease.lua),
+ * horloge simulée : le dépassement reste ≤ nœuds × chunk sur toute fenêtre glissante
+ */
+public class LocalTokenBucketsTest {
+
+    private static final Duration LEASE_TTL = Duration.ofSeconds(1);
+
+    @Test
+    public void testOvershootBoundedAcrossNodes() {
+        AtomicLong clock = new AtomicLong();
+        SharedGcra gcra = new SharedGcra(clock);
+        RateLimitConfig config = RateLimitConfig.perMinute(100);
+        List<Limit> limits = List.of(new Limit("ip:1.2.3.4:m", config));
+
+        int nodeCount = 4;
+        List<LocalTokenBuckets> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new LocalTokenBuckets(1000, Duration.ofMinutes(2), 0.1, LEASE_TTL, clock::get));
+        }
+        long chunk = nodes.get(0).chunk(config);
+        assertThat(chunk).isEqualTo(10);
+
+        // 1 requête toutes les 5ms sur un nœud aléatoire pendant 5 minutes : ~100× la limite
+        Random random = new Random(42);
+        long duration = TimeUnit.MINUTES.toNanos(5);
+        List<Long> admitted = new ArrayList<>();
+        for (long now = 0; now < duration; now += TimeUnit.MILLISECONDS.toNanos(5)) {
+            clock.set(now);
+            if (nodes.get(random.nextInt(nodeCount)).acquire(limits, gcra)) {
+                admitted.add(now);
+            }
+        }
+
+        // 1 GCRA centralisé : burst de maxRequests + maxRequests par fenêtre, +1 pour l'arrondi
+        long window = TimeUnit.MILLISECONDS.toNanos(config.getWindowMs());
+        long centralBound = 2L * config.getMaxRequests() + 1;
+        int maxInWindow = 0;
+        for (int start = 0, end = 0; start < admitted.size(); start++) {
+            while (end < admitted.size() && admitted.get(end) - admitted.get(start) < window) {
+                end++;
+            }
+            maxInWindow = Math.max(maxInWindow, end - start);
+        }
+        assertThat(maxInWindow).isLessThanOrEqualTo((int) (centralBound + nodeCount * chunk));
+
+        // Jetons pré-payés : sur la durée totale, jamais plus que ce qu'accorde le GCRA
+        long centralTotal = config.getMaxRequests() + duration / TimeUnit.MICROSECONDS.toNanos(config.getEmissionIntervalMicros()) + 1;
+        assertThat((long) admitted.size()).isLessThanOrEqualTo(centralTotal);
+        // Sous-admission bornée : les jetons perdus (lease expiré) ne vident pas le quota
+        assertThat((long) admitted.size()).isGreaterThan(centralTotal / 2);
+    }
+
+    @Test
+    public void testMostDecisionsAreLocal() {
+        AtomicLong clock = new AtomicLong();
+        SharedGcra gcra = new SharedGcra(clock);
+        List<Limit> limits = List.of(
+                new Limit("ip:1.2.3.4:m", RateLimitConfig.perMinute(10_000)),
+                new Limit("code:abc:m", RateLimitConfig.perMinute(10_000)));
+        LocalTokenBuckets node = new LocalTokenBuckets(1000, Duration.ofMinutes(2), 0.1, LEASE_TTL, clock::get);
+
+        // 5000 requêtes en 1 minute, sous la limite : toutes autorisées, quasiment sans I/O
+        int requests = 5000;
+        for (int i = 0; i < requests; i++) {
+            clock.set(i * TimeUnit.MILLISECONDS.toNanos(12));
+            assertThat(node.acquire(limits, gcra)).isTrue();
+        }
+        assertThat(gcra.calls.get()).isLessThan(requests / 20);
+    }
+
+    /**
+     * Même algorithme que rate_limit_lease.lua (TAT en µs par clé)
+     */
+    private static final class SharedGcra implements LocalTokenBuckets.LeaseSource {
+        private final AtomicLong clock;
+        private final Map<String, Long> tats = new HashMap<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private SharedGcra(AtomicLong clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public long[] lease(List<Limit> limits, long[] requested) {
+            calls.incrementAndGet();
+            long now = TimeUnit.NANOSECONDS.toMicros(clock.get());
+            long[] granted = new long[limits.size()];
+            for (int i = 0; i < limits.size(); i++) {
+                long interval = limits.get(i).config().getEmissionIntervalMicros();
+                long tolerance = limits.get(i).config().getToleranceMicros();
+                long tat = Math.max(now, tats.getOrDefault(limits.get(i).key(), now));
+                long available = Math.floorDiv(tolerance - (tat - now), interval);
+                granted[i] = Math.min(requested[i], Math.max(available, 0));
+                tats.put(limits.get(i).key(), tat + granted[i] * interval);
+            }
+            return granted;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.RedirectCodec;
+import com.project.URL.Shortener.entity.Url;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Format binaire des entrées de cache : round trip, lecture des anciennes entrées JSON,
+ * taille vs Jackson2JsonRedisSerializer, et benchmark encode/decode (@Tag("benchmark"), exclu par défaut)
+ */
+public class RedirectCodecTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectCodecTest.class);
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private final RedirectCodec codec = new RedirectCodec(false);
+    private final Jackson2JsonRedisSerializer<Url> jsonSerializer = new Jackson2JsonRedisSerializer<>(Url.class);
+
+    @Test
+    public void testRoundTrip() {
+        CachedRedirect redirect = new CachedRedirect("https://www.google.com/search?q=été");
+        assertThat(codec.deserialize(codec.serialize(redirect))).isEqualTo(redirect);
+
+        // URL > 127 octets → longueur varint sur 2 octets
+        CachedRedirect longRedirect = new CachedRedirect("https://example.com/" + "a".repeat(500));
+        assertThat(codec.deserialize(codec.serialize(longRedirect))).isEqualTo(longRedirect);
+    }
+
+    @Test
+    public void testRoundTripWithFreshnessMetadata() {
+        CachedRedirect redirect = new CachedRedirect("https://www.google.com", 1_700_000_000_000L, 12);
+        byte[] bytes = codec.serialize(redirect);
+
+        assertThat(bytes[0]).isEqualTo(RedirectCodec.VERSION_2);
+        assertThat(codec.deserialize(bytes)).isEqualTo(redirect);
+
+        // Rollout : binary-v1 n'écrit que l'URL (lisible par les nœuds qui ne connaissent pas v2)
+        byte[] v1 = new RedirectCodec(RedirectCodec.WriteFormat.parse("binary-v1")).serialize(redirect);
+        assertThat(v1[0]).isEqualTo(RedirectCodec.VERSION_1);
+        assertThat(codec.deserialize(v1)).isEqualTo(new CachedRedirect("https://www.google.com"));
+    }
+
+    @Test
+    public void testReadsLegacyJsonEntries() {
+        byte[] legacy = jsonSerializer.serialize(sampleUrl());
+
+        assertThat(codec.deserialize(legacy).originalUrl()).isEqualTo("https://www.google.com");
+
+        // Mode rollout : écrit du JSON lisible par les anciens nœuds
+        byte[] rollout = new RedirectCodec(true).serialize(new CachedRedirect("https://www.google.com"));
+        assertThat(jsonSerializer.deserialize(rollout).getOriginalUrl()).isEqualTo("https://www.google.com");
+    }
+
+    @Test
+    public void testBinaryEntryIsSmallerThanJson() {
+        Url url = sampleUrl();
+        assertThat(codec.serialize(CachedRedirect.from(url)).length)
+                .isLessThan(jsonSerializer.serialize(url).length);
+    }
+
+    /**
+     * Temps encode + decode vs Jackson (~7s) : hors du mvn test par défaut, lancé avec mvn -Pbenchmark test
+     */
+    @Test
+    @Tag("benchmark")
+    public void benchmarkAgainstJackson() {
+        Url url = sampleUrl();
+        CachedRedirect redirect = CachedRedirect.from(url);
+
+        // Warm-up JIT
+        runJson(url, WARMUP);
+        runBinary(redirect, WARMUP);
+
+        long jsonNanos = runJson(url, ITERATIONS);
+        long binaryNanos = runBinary(redirect, ITERATIONS);
+
+        log.info("📊 Bytes/entry : JSON={}, binary={} | Encode+decode : JSON={} ns/op, binary={} ns/op",
+                jsonSerializer.serialize(url).length, codec.serialize(redirect).length,
+                jsonNanos / ITERATIONS, binaryNanos / ITERATIONS);
+
+        assertThat(binaryNanos).isLessThan(jsonNanos);
+    }
+
+    private long runJson(Url url, int iterations) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += jsonSerializer.deserialize(jsonSerializer.serialize(url)).getOriginalUrl().length();
+        }
+        assertThat(sink).isPositive();
+        return System.nanoTime() - start;
+    }
+
+    private long runBinary(CachedRedirect redirect, int iterations) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.deserialize(codec.serialize(redirect)).originalUrl().length();
+        }
+        assertThat(sink).isPositive();
+        return System.nanoTime() - start;
+    }
+
+    private static Url sampleUrl() {
+        return new Url(42L, "https://www.google.com", "google", 1234L,
+                new Timestamp(1_700_000_000_000L));
+    }
+}
@@ -0,0 +1,74 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.CacheInvalidationBus;
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.HotKeyTracker;
+import com.project.URL.Shortener.cache.LocalUrlCache;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.service.RedisService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batch SET : L1 reçoit exactement les valeurs écrites dans Redis, avec leur échéance (refresh anticipé)
+ */
+public class RedisServiceSetAllTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSetAllWritesSameStampedValuesToRedisAndL1() {
+        Map<String, CachedRedirect> written = new ConcurrentHashMap<>();
+        RedisTemplate<String, CachedRedirect> template = Mockito.mock(RedisTemplate.class);
+        RedisSerializer<CachedRedirect> serializer = Mockito.mock(RedisSerializer.class);
+        when(template.getValueSerializer()).thenReturn((RedisSerializer) serializer);
+
+        // Pipeline simulé : le SET sérialise la valeur → on garde l'instance envoyée à Redis
+        RedisConnection connection = Mockito.mock(RedisConnection.class);
+        RedisStringCommands commands = Mockito.mock(RedisStringCommands.class);
+        when(connection.stringCommands()).thenReturn(commands);
+        when(serializer.serialize(any())).thenAnswer(invocation -> {
+            CachedRedirect value = invocation.getArgument(0);
+            written.put(value.originalUrl(), value);
+            return value.originalUrl().getBytes();
+        });
+        when(template.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+
+        LocalUrlCache localUrlCache = Mockito.mock(LocalUrlCache.class);
+        RedisService redisService = new RedisService(
+                new RedisShardManager(List.of(RedisShard.of("localhost:6379", template))),
+                localUrlCache, Mockito.mock(CacheInvalidationBus.class), Mockito.mock(HotKeyTracker.class),
+                2, 300, 86400, 0.1, false);
+
+        long before = System.currentTimeMillis();
+        redisService.setAll(Map.of("google", new CachedRedirect("https://google.com"),
+                "github", new CachedRedirect("https://github.com")));
+
+        ArgumentCaptor<CachedRedirect> local = ArgumentCaptor.forClass(CachedRedirect.class);
+        verify(localUrlCache).put(eq("google"), local.capture());
+        verify(localUrlCache).put(eq("github"), local.capture());
+        for (CachedRedirect value : local.getAllValues()) {
+            assertThat(value).isSameAs(written.get(value.originalUrl()));
+            assertThat(value.expiresAtMillis()).isGreaterThan(before); // onHit ne saute plus ces entrées
+        }
+    }
+}
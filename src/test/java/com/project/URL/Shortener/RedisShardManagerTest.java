@@ -1,12 +1,14 @@
 package com.project.URL.Shortener;
 
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.RedisShard;
 import com.project.URL.Shortener.cache.RedisShardManager;
-import com.project.URL.Shortener.entity.Url;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.data.redis.core.RedisTemplate;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -19,13 +21,17 @@ public class RedisShardManagerTest {
     @Test
     public void testKeyDistribution() {
         // Créer des mocks pour les 4 shards
-        RedisTemplate<String, Url> shard1 = Mockito.mock(RedisTemplate.class);
-        RedisTemplate<String, Url> shard2 = Mockito.mock(RedisTemplate.class);
-        RedisTemplate<String, Url> shard3 = Mockito.mock(RedisTemplate.class);
-        RedisTemplate<String, Url> shard4 = Mockito.mock(RedisTemplate.class);
+        RedisTemplate<String, CachedRedirect> shard1 = Mockito.mock(RedisTemplate.class);
+        RedisTemplate<String, CachedRedirect> shard2 = Mockito.mock(RedisTemplate.class);
+        RedisTemplate<String, CachedRedirect> shard3 = Mockito.mock(RedisTemplate.class);
+        RedisTemplate<String, CachedRedirect> shard4 = Mockito.mock(RedisTemplate.class);
 
         // Instanciation du manager avec mocks
-        RedisShardManager shardManager = new RedisShardManager(shard1, shard2, shard3, shard4);
+        RedisShardManager shardManager = new RedisShardManager(List.of(
+                RedisShard.of("localhost:6379", shard1),
+                RedisShard.of("localhost:6380", shard2),
+                RedisShard.of("localhost:6381", shard3),
+                RedisShard.of("localhost:6382", shard4)));
 
         int numKeys = 1000;
         Map<String, Integer> shardCounts = new HashMap<>();
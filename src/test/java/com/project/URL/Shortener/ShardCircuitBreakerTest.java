@@ -0,0 +1,148 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShardCircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Breaker ouvert → la clé est routée vers le shard suivant du ring, sans appeler le shard en panne
+ * HALF_OPEN : permis d'essai pris uniquement par les commandes, pas par le routage
+ */
+public class ShardCircuitBreakerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOpenBreakerSkipsToNextLiveShard() {
+        List<RedisShard> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(RedisShard.of("localhost:" + (6379 + i), Mockito.mock(RedisTemplate.class)));
+        }
+        RedisShardManager shardManager = new RedisShardManager(shards);
+
+        String key = "abc123";
+        RedisShard owner = shardManager.owner(key);
+        assertThat(shardManager.route(key)).isSameAs(owner);
+
+        // 20 erreurs (minimumCalls) → OPEN
+        ShardCircuitBreaker breaker = owner.getBreaker();
+        for (int i = 0; i < 20; i++) {
+            breaker.onError(1_000_000);
+        }
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.OPEN);
+
+        RedisShard failover = shardManager.route(key);
+        assertThat(failover).isNotNull().isNotSameAs(owner);
+        // Toujours le même shard de failover pour la même clé
+        assertThat(shardManager.route(key)).isSameAs(failover);
+
+        // Toutes les autres clés du shard restent sur leur propriétaire
+        for (int i = 0; i < 1000; i++) {
+            String other = "key" + i;
+            if (shardManager.owner(other) != owner) {
+                assertThat(shardManager.route(other)).isSameAs(shardManager.owner(other));
+            }
+        }
+
+        // Tous les shards en panne → null (fallback DB)
+        for (RedisShard shard : shards) {
+            for (int i = 0; i < 20; i++) {
+                shard.getBreaker().onError(1_000_000);
+            }
+        }
+        assertThat(shardManager.route(key)).isNull();
+    }
+
+    @Test
+    public void testSlowCallsOpenBreaker() {
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker("slow", ShardCircuitBreaker.Settings.defaults());
+        for (int i = 0; i < 20; i++) {
+            breaker.onSuccess(500_000_000L); // 500ms > slow-call 200ms
+        }
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.OPEN);
+        assertThat(breaker.isRoutable()).isFalse();
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void testHalfOpenClosesAfterTrialCallsSucceed() {
+        ShardCircuitBreaker breaker = openBreaker();
+
+        // Probe réussie après open-duration (0ms ici) → HALF_OPEN, 5 appels d'essai
+        breaker.onProbe(true, 1_000_000);
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.HALF_OPEN);
+
+        // Routage / filtres : aucun permis consommé, quel que soit le nombre d'appels
+        for (int i = 0; i < 100; i++) {
+            assertThat(breaker.isRoutable()).isTrue();
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+        }
+        assertThat(breaker.tryAcquire()).isFalse(); // 6e commande refusée : permis épuisés
+        assertThat(breaker.isRoutable()).isFalse();
+
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess(1_000_000);
+        }
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.CLOSED);
+        assertThat(breaker.isRoutable()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void testHalfOpenReopensOnFailedTrialCall() {
+        ShardCircuitBreaker breaker = openBreaker();
+        breaker.onProbe(true, 1_000_000);
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.HALF_OPEN);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess(1_000_000);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onError(1_000_000);
+
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.OPEN);
+        assertThat(breaker.isRoutable()).isFalse();
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testShardTakesPermitOnlyWhenExecuting() {
+        RedisShard shard = RedisShard.of("localhost:6379", Mockito.mock(RedisTemplate.class));
+        ShardCircuitBreaker breaker = shard.getBreaker();
+        for (int i = 0; i < 20; i++) {
+            breaker.onError(1_000_000);
+        }
+        assertThat(shard.isAvailable()).isFalse();
+        assertThatThrownBy(() -> shard.execute(template -> "never sent"))
+                .isInstanceOf(RedisConnectionFailureException.class);
+    }
+
+    /**
+     * Breaker OPEN avec open-duration = 0 : la prochaine probe réussie passe en HALF_OPEN
+     */
+    private static ShardCircuitBreaker openBreaker() {
+        ShardCircuitBreaker.Settings defaults = ShardCircuitBreaker.Settings.defaults();
+        ShardCircuitBreaker breaker = new ShardCircuitBreaker("trial", new ShardCircuitBreaker.Settings(
+                defaults.windowSize(), defaults.minimumCalls(), defaults.failureRateThreshold(),
+                defaults.slowCallThresholdMs(), defaults.slowCallRateThreshold(), 0,
+                defaults.halfOpenTrialCalls(), defaults.probeFailuresToOpen()));
+        for (int i = 0; i < 20; i++) {
+            breaker.onError(1_000_000);
+        }
+        assertThat(breaker.getState()).isEqualTo(ShardCircuitBreaker.State.OPEN);
+        return breaker;
+    }
+}
@@ -0,0 +1,152 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.RedisShard;
+import com.project.URL.Shortener.cache.RedisShardManager;
+import com.project.URL.Shortener.cache.ShardMigrator;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Migration en ligne avec un nœud encore sur l'ancien ring : il écrit chez l'ancien propriétaire
+ * tant qu'il n'a pas appliqué (et acquitté) la nouvelle topologie
+ */
+public class ShardMigrationTest {
+
+    private static final String CHANNEL = "shards:topology";
+    private static final String KEY = "click:{abc123}";
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final RedisTemplate<String, CachedRedirect> kept = Mockito.mock(RedisTemplate.class);
+    private final RedisTemplate<String, CachedRedirect> removed = Mockito.mock(RedisTemplate.class);
+
+    @Test
+    public void testWritesFromLaggingNodeHappenBeforeTheCopy() throws Exception {
+        stubSource();
+        // Nœud en retard : INCRBY sur l'ancien propriétaire pendant 200ms après la diffusion, puis acquitte
+        RedisShardManager manager = manager(5_000, (token, ack) -> {
+            for (int i = 0; i < 20; i++) {
+                events.add("INCRBY");
+                sleep(10);
+            }
+            ack.accept(token);
+        });
+
+        manager.removeShard("localhost:6380");
+        awaitMigrationEnd(manager);
+
+        assertThat(manager.getStatus().get("migrating")).isEqualTo(false);
+        assertThat(events).containsSubsequence("DUMP", "DEL");
+        assertThat(events.lastIndexOf("INCRBY")).isLessThan(events.indexOf("DUMP"));
+    }
+
+    @Test
+    public void testNothingIsCopiedWithoutEveryAcknowledgement() throws Exception {
+        stubSource();
+        // Nœud qui ne bascule jamais : il continue d'écrire sur la source
+        RedisShardManager manager = manager(200, (token, ack) -> events.add("INCRBY"));
+
+        manager.removeShard("localhost:6380");
+        awaitMigrationEnd(manager);
+
+        assertThat(manager.getStatus().get("migrating")).isEqualTo(true); // dual-read conservé, retry admin
+        assertThat(events).doesNotContain("DUMP", "DEL");
+        verify(removed, never()).scan(any(ScanOptions.class));
+    }
+
+    private interface LaggingNode {
+        void onMigrating(String token, Consumer<String> ack);
+    }
+
+    /**
+     * Pub/sub simulé : ce nœud + 1 nœud en retard abonnés au canal de topologie, livraison asynchrone
+     */
+    private RedisShardManager manager(long ackTimeoutMs, LaggingNode laggingNode) {
+        StringRedisTemplate pubSub = Mockito.mock(StringRedisTemplate.class);
+        RedisShardManager[] self = new RedisShardManager[1];
+        when(pubSub.convertAndSend(anyString(), anyString())).thenAnswer(invocation -> {
+            String channel = invocation.getArgument(0);
+            String body = invocation.getArgument(1);
+            CompletableFuture.runAsync(() -> self[0].onMessage(message(channel, body), null));
+            if (channel.equals(CHANNEL) && body.startsWith("MIGRATING")) {
+                String token = body.substring(body.lastIndexOf('|') + 1);
+                CompletableFuture.runAsync(() -> laggingNode.onMigrating(token,
+                        ack -> self[0].onMessage(message(CHANNEL + ":ack", ack), null)));
+                return 2L;
+            }
+            return 1L;
+        });
+        self[0] = new RedisShardManager(List.of(RedisShard.of("localhost:6379", kept),
+                RedisShard.of("localhost:6380", removed)), new ShardMigrator(100, 0), pubSub, CHANNEL, ackTimeoutMs);
+        return self[0];
+    }
+
+    private void stubSource() {
+        // Shard conservé : aucune clé à déplacer
+        Cursor<String> empty = Mockito.mock(Cursor.class);
+        when(kept.scan(any(ScanOptions.class))).thenReturn(empty);
+
+        Cursor<String> cursor = Mockito.mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(true, false);
+        when(cursor.next()).thenReturn(KEY);
+        when(removed.scan(any(ScanOptions.class))).thenReturn(cursor);
+        // DUMP + PTTL
+        when(removed.executePipelined(any(RedisCallback.class), any(RedisSerializer.class))).thenAnswer(invocation -> {
+            events.add("DUMP");
+            return Arrays.asList(new byte[]{1, 2, 3}, -1L);
+        });
+        // DEL
+        when(removed.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            events.add("DEL");
+            return List.of(1L);
+        });
+    }
+
+    private static void awaitMigrationEnd(RedisShardManager manager) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Object state = ((Map<?, ?>) manager.getStatus().get("migration")).get("state");
+            if (state == ShardMigrator.State.COMPLETED || state == ShardMigrator.State.FAILED) {
+                Thread.sleep(50); // onFinished (swap vers la topologie stable) juste après le changement d'état
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Migration did not finish");
+    }
+
+    private static DefaultMessage message(String channel, String body) {
+        return new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.SpaceSavingSketch;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Heavy hitters noyés dans une longue traîne : tous retrouvés en tête, bornes count / error respectées
+ */
+public class SpaceSavingSketchTest {
+
+    @Test
+    public void testHeavyHittersFoundAmongNoise() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(64);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(7);
+
+        // 3 codes viraux (~10 %, 5 %, 3 %) + 100 000 codes de bruit
+        for (int i = 0; i < 200_000; i++) {
+            int draw = random.nextInt(100);
+            String key = draw < 10 ? "viral1" : draw < 15 ? "viral2" : draw < 18 ? "viral3"
+                    : "noise" + random.nextInt(100_000);
+            sketch.offer(key);
+            actual.merge(key, 1L, Long::sum);
+        }
+
+        assertThat(sketch.getTotal()).isEqualTo(200_000);
+        assertThat(sketch.size()).isEqualTo(64);
+
+        List<SpaceSavingSketch.Entry> entries = sketch.drain();
+        assertThat(entries.subList(0, 3)).extracting(SpaceSavingSketch.Entry::key)
+                .containsExactly("viral1", "viral2", "viral3");
+
+        for (SpaceSavingSketch.Entry entry : entries) {
+            long real = actual.get(entry.key());
+            assertThat(entry.count()).isGreaterThanOrEqualTo(real);
+            assertThat(entry.guaranteed()).isLessThanOrEqualTo(real);
+            // Erreur ≤ N / capacity
+            assertThat(entry.error()).isLessThanOrEqualTo(200_000 / 64);
+        }
+        // Les viraux sont bien au-dessus du bruit : borne basse toujours positive
+        assertThat(entries.get(2).guaranteed()).isGreaterThan(200_000 / 64);
+
+        // drain = nouvelle fenêtre
+        assertThat(sketch.size()).isZero();
+        assertThat(sketch.getTotal()).isZero();
+    }
+}
@@ -0,0 +1,29 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.service.UrlImportService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Parsing CSV de l'import en masse : URLs avec virgules / guillemets, code optionnel
+ */
+public class UrlImportCsvTest {
+
+    @Test
+    public void testParseCsvLine() {
+        assertThat(UrlImportService.parseCsvLine("https://example.com/a,abc123"))
+                .containsExactly("https://example.com/a", "abc123");
+        assertThat(UrlImportService.parseCsvLine("https://example.com/b"))
+                .containsExactly("https://example.com/b");
+        assertThat(UrlImportService.parseCsvLine("\"https://example.com/?q=1,2&t=\"\"x\"\"\", code99"))
+                .containsExactly("https://example.com/?q=1,2&t=\"x\"", "code99");
+        assertThat(UrlImportService.parseCsvLine("https://example.com/c,"))
+                .isEqualTo(List.of("https://example.com/c", ""));
+        assertThatThrownBy(() -> UrlImportService.parseCsvLine("\"https://example.com/d,abc123"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
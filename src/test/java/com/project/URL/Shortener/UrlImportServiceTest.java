@@ -0,0 +1,182 @@
+package com.project.URL.Shortener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.URL.Shortener.cache.CachedRedirect;
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import com.project.URL.Shortener.service.RedisService;
+import com.project.URL.Shortener.service.ShortCodeGenerator;
+import com.project.URL.Shortener.service.UrlImportService;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Import en masse avec JDBC / transactions / Redis mockés : repli ligne par ligne, erreurs reportées,
+ * lots perdus comptés en échec, bloom filter + warm-up des shards après l'INSERT
+ */
+public class UrlImportServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+    private final ShortCodeGenerator shortCodeGenerator = Mockito.mock(ShortCodeGenerator.class);
+    private final RedisService redisService = Mockito.mock(RedisService.class);
+    private final ShortCodeBloomFilter bloomFilter = Mockito.mock(ShortCodeBloomFilter.class);
+    private final UrlImportService service = new UrlImportService(jdbcTemplate, transactionTemplate,
+            Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), shortCodeGenerator,
+            redisService, bloomFilter, 3, 1, 100);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testImportsBatchThenWarmsBloomFilterAndShards() throws Exception {
+        runTransactions();
+        when(shortCodeGenerator.nextCode()).thenReturn("0bcdef");
+
+        Map<String, Object> result = importCsv("""
+                originalUrl,shortCode
+                https://example.com/a,code01
+                https://example.com/b,code02
+                https://example.com/c
+                """);
+
+        assertThat(result.get("imported")).isEqualTo(3L);
+        assertThat(result.get("failed")).isEqualTo(0L);
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), any());
+
+        ArgumentCaptor<Collection<String>> codes = ArgumentCaptor.forClass(Collection.class);
+        verify(bloomFilter).addAllAndPublish(codes.capture());
+        assertThat(codes.getValue()).containsExactlyInAnyOrder("code01", "code02", "0bcdef");
+
+        ArgumentCaptor<Map<String, CachedRedirect>> redirects = ArgumentCaptor.forClass(Map.class);
+        verify(redisService).warmShards(redirects.capture());
+        assertThat(redirects.getValue()).containsOnlyKeys("code01", "code02", "0bcdef");
+        assertThat(redirects.getValue().get("0bcdef").originalUrl()).isEqualTo("https://example.com/c");
+    }
+
+    @Test
+    public void testRejectedBatchIsReplayedRowByRowAndReportsEachFailure() throws Exception {
+        runTransactions();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DuplicateKeyException("duplicate key value violates unique constraint"));
+        // Ligne par ligne : code02 déjà pris, code03 trop long pour la colonne
+        doAnswer(invocation -> {
+            String shortCode = invocation.getArgument(2);
+            if (shortCode.equals("code02")) {
+                throw new DuplicateKeyException("duplicate key");
+            }
+            if (shortCode.equals("code03")) {
+                throw new DataIntegrityViolationException("value too long for type character varying");
+            }
+            return 1;
+        }).when(jdbcTemplate).update(anyString(), any(), any(), any());
+
+        Map<String, Object> result = importCsv("""
+                https://example.com/a,code01
+                https://example.com/b,code02
+                https://example.com/c,code03
+                not-a-url,code04
+                https://example.com/e,0reser
+                """);
+
+        assertThat(result.get("rows")).isEqualTo(5L);
+        assertThat(result.get("imported")).isEqualTo(1L);
+        assertThat(result.get("failed")).isEqualTo(4L);
+        assertThat(errors(result)).extracting(error -> error.get("line"))
+                .containsExactlyInAnyOrder(2L, 3L, 4L, 5L);
+        assertThat(errorAt(result, 2L)).containsEntry("shortCode", "code02")
+                .containsEntry("error", "Short code already exists");
+        assertThat(errorAt(result, 3L)).containsEntry("shortCode", "code03")
+                .containsEntry("error", "value too long for type character varying");
+        assertThat(errorAt(result, 5L).get("error").toString()).contains("reserved");
+
+        // Seule la ligne insérée est publiée / poussée dans le cache
+        verify(bloomFilter).addAllAndPublish(List.of("code01"));
+    }
+
+    @Test
+    public void testLostBatchIsCountedAsFailedAndOthersContinue() throws Exception {
+        // 1er lot (lignes 1-3) : la transaction ne peut même pas démarrer ; 2e lot (ligne 4) : OK
+        doThrow(new CannotCreateTransactionException("Could not open JDBC connection"))
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                    return null;
+                })
+                .when(transactionTemplate).executeWithoutResult(any());
+
+        Map<String, Object> result = importCsv("""
+                https://example.com/a,code01
+                https://example.com/b,code02
+                https://example.com/c,code03
+                https://example.com/d,code04
+                """);
+
+        assertThat(result.get("imported")).isEqualTo(1L);
+        assertThat(result.get("failed")).isEqualTo(3L);
+        assertThat(errors(result)).singleElement().satisfies(error -> {
+            assertThat(error).containsEntry("line", 1L).containsEntry("lastLine", 3L).containsEntry("rows", 3);
+            assertThat(error.get("error").toString()).startsWith("Batch failed").contains("JDBC connection");
+        });
+    }
+
+    @Test
+    public void testWarmUpFailureDoesNotFailInsertedRows() throws Exception {
+        runTransactions();
+        doThrow(new IllegalStateException("Redis down")).when(redisService).warmShards(any());
+
+        Map<String, Object> result = importCsv("""
+                https://example.com/a,code01
+                https://example.com/b,code02
+                """);
+
+        assertThat(result.get("imported")).isEqualTo(2L);
+        assertThat(result.get("failed")).isEqualTo(0L);
+        assertThat(errors(result)).isEmpty();
+    }
+
+    private void runTransactions() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private Map<String, Object> importCsv(String csv) throws Exception {
+        return service.importStream(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                UrlImportService.Format.CSV);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> errors(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("errors");
+    }
+
+    private static Map<String, Object> errorAt(Map<String, Object> result, long line) {
+        return errors(result).stream().filter(error -> error.get("line").equals(line)).findFirst().orElseThrow();
+    }
+}
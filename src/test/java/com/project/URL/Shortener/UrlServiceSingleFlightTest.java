@@ -0,0 +1,77 @@
+package com.project.URL.Shortener;
+
+import com.project.URL.Shortener.cache.ShortCodeBloomFilter;
+import com.project.URL.Shortener.entity.Url;
+import com.project.URL.Shortener.repository.UrlRepo;
+import com.project.URL.Shortener.service.ClickAccumulator;
+import com.project.URL.Shortener.service.PerformanceLogService;
+import com.project.URL.Shortener.service.RedisService;
+import com.project.URL.Shortener.service.ShortCodeGenerator;
+import com.project.URL.Shortener.service.UrlServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test de concurrence : N cache miss simultanés → 1 seul appel repository
+ */
+public class UrlServiceSingleFlightTest {
+
+    private static final int THREADS = 50;
+
+    @Test
+    public void testParallelMissesHitDatabaseOnce() throws Exception {
+        UrlRepo urlRepo = Mockito.mock(UrlRepo.class);
+        RedisService redisService = Mockito.mock(RedisService.class);
+        ClickAccumulator clickAccumulator = Mockito.mock(ClickAccumulator.class);
+        PerformanceLogService performanceLogService = Mockito.mock(PerformanceLogService.class);
+
+        Url url = new Url();
+        url.setShortCode("google");
+        url.setOriginalUrl("https://www.google.com");
+
+        // Requête DB lente → tous les threads arrivent pendant le chargement
+        when(urlRepo.findByShortCode("google")).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return Optional.of(url);
+        });
+
+        UrlServiceImpl urlService = new UrlServiceImpl(redisService, urlRepo, clickAccumulator, performanceLogService,
+                Mockito.mock(ShortCodeGenerator.class), Mockito.mock(ShortCodeBloomFilter.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Url>> results = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                startGate.await();
+                return urlService.getUrlByShortCode("google");
+            }));
+        }
+
+        startGate.countDown();
+        for (Future<Url> result : results) {
+            assertThat(result.get().getOriginalUrl()).isEqualTo("https://www.google.com");
+        }
+        executor.shutdown();
+
+        // Une seule requête DB et un seul SET Redis pour les 50 miss
+        verify(urlRepo, times(1)).findByShortCode("google");
+        verify(redisService, times(1)).set(eq("google"), any(Url.class));
+    }
+}
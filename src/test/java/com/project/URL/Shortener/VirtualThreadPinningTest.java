@@ -0,0 +1,49 @@
+package com.project.URL.Shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Garde-fou virtual threads : pas de synchronized dans notre code
+ *
+ * Un virtual thread qui bloque (Redis, JDBC) dans un bloc synchronized reste "pinned"
+ * sur son carrier thread → en mode vthreads, quelques requêtes lentes suffisent à bloquer
+ * tous les carriers. Utiliser ReentrantLock (cf. ClickAccumulator, ShortCodeGenerator).
+ * En exécution : -Djdk.tracePinnedThreads=short / événement JFR jdk.VirtualThreadPinned (mvn -Pvthreads).
+ */
+public class VirtualThreadPinningTest {
+
+    private static final Pattern SYNCHRONIZED = Pattern.compile("\\bsynchronized\\s*[({]|\\bsynchronized\\s+\\w");
+
+    @Test
+    public void testNoSynchronizedInMainSources() throws IOException {
+        List<String> offenders;
+        try (Stream<Path> files = Files.walk(Path.of("src/main/java"))) {
+            offenders = files
+                    .filter(path -> path.toString().endsWith(".java"))
+                    .filter(VirtualThreadPinningTest::usesSynchronized)
+                    .map(Path::toString)
+                    .toList();
+        }
+        assertThat(offenders).as("synchronized pins virtual threads, use ReentrantLock").isEmpty();
+    }
+
+    private static boolean usesSynchronized(Path path) {
+        try {
+            return Files.readAllLines(path).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.startsWith("*") && !line.startsWith("//"))
+                    .anyMatch(line -> SYNCHRONIZED.matcher(line).find());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
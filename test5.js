@@ -0,0 +1,36 @@
+import http from 'k6/http';
+import { check } from 'k6';
+
+// Benchmark du débit de redirect : accumulateur de clics ON vs OFF
+//
+// 1. ./mvnw spring-boot:run                                                        → k6 run test5.js
+// 2. ./mvnw spring-boot:run -Dspring-boot.run.arguments=--clicks.accumulator.enabled=false → k6 run test5.js
+// Comparer http_reqs (req/s) et http_req_duration p(95)/p(99) entre les 2 runs.
+// Les rate limits doivent être relevés (ex : --ratelimit.ip.per-minute=0 --ratelimit.code.per-minute=0)
+//
+// ⚠️ Résultats : NON MESURÉS. Script écrit mais jamais exécuté (ni k6 ni Redis / PostgreSQL dans l'environnement
+// de développement) : aucun chiffre de gain de l'accumulateur n'existe encore, à compléter après un run réel.
+
+export let options = {
+    scenarios: {
+        redirects: {
+            executor: 'constant-vus',
+            vus: 100,
+            duration: '1m',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(95)', 'p(99)', 'max'],
+};
+
+const hotKeys = ['google', 'github', 'stack', 'blog', 'test'];
+
+export default function () {
+    const key = hotKeys[Math.floor(Math.random() * hotKeys.length)];
+    const params = { redirects: 0, timeout: '10s' };
+
+    let res = http.get(`http://localhost:8081/api/url/${key}`, params);
+
+    check(res, {
+        'status is 302': (r) => r.status === 302,
+    });
+}
@@ -0,0 +1,106 @@
+import http from 'k6/http';
+import { check } from 'k6';
+
+// Benchmark platform threads vs virtual threads, côte à côte (mêmes Redis / PostgreSQL)
+//
+// 1. ./mvnw spring-boot:run -Dspring-boot.run.arguments="--ratelimit.ip.per-minute=0 --ratelimit.ip.per-hour=0 --ratelimit.code.per-minute=0"
+//    → platform threads sur :8081
+// 2. ./mvnw -Pvthreads spring-boot:run -Dspring-boot.run.arguments="--server.port=8082 --ratelimit.ip.per-minute=0 --ratelimit.ip.per-hour=0 --ratelimit.code.per-minute=0"
+//    → virtual threads sur :8082 (Java 21)
+// 3. k6 run test6.js
+//
+// Les 2 scénarios tournent l'un après l'autre (même charge : rampe 100 → 400 VUs, au-delà des
+// 200 threads Tomcat), mélange redirects (cache) + batch resolve (I/O Redis + DB).
+// Le résumé final affiche req/s et p99 par mode.
+//
+// 🚨 Résultats : NON MESURÉS — le mode virtual threads n'est pas validé tant que ce script n'a pas tourné.
+//    Le script n'a jamais été exécuté : l'environnement de développement est en JDK 17 (pas de virtual threads,
+//    VirtualThreads retombe sur des platform threads), sans k6 / Redis / PostgreSQL ni accès réseau.
+//    Seul le pinning est vérifié (VirtualThreadPinningTest). À relever en Java 21 puis à reporter ici :
+//      mode       | req/s | p99 redirect | p99 batch resolve | erreurs
+//      platform   |   ?   |      ?       |         ?         |    ?
+//      virtual    |   ?   |      ?       |         ?         |    ?
+
+const PLATFORM_URL = __ENV.PLATFORM_URL || 'http://localhost:8081';
+const VIRTUAL_URL = __ENV.VIRTUAL_URL || 'http://localhost:8082';
+
+const stages = [
+    { duration: '30s', target: 100 },
+    { duration: '1m', target: 400 },
+    { duration: '30s', target: 0 },
+];
+const SCENARIO_SECONDS = 120;
+
+export let options = {
+    scenarios: {
+        platform: {
+            executor: 'ramping-vus',
+            stages: stages,
+            env: { BASE_URL: PLATFORM_URL },
+            tags: { mode: 'platform' },
+        },
+        virtual: {
+            executor: 'ramping-vus',
+            stages: stages,
+            startTime: '2m30s',
+            env: { BASE_URL: VIRTUAL_URL },
+            tags: { mode: 'virtual' },
+        },
+    },
+    // Seuils "toujours vrais" : servent uniquement à créer les sous-métriques par mode
+    thresholds: {
+        'http_req_duration{mode:platform}': ['p(99)>=0'],
+        'http_req_duration{mode:virtual}': ['p(99)>=0'],
+        'http_reqs{mode:platform}': ['count>=0'],
+        'http_reqs{mode:virtual}': ['count>=0'],
+        'http_req_failed{mode:platform}': ['rate>=0'],
+        'http_req_failed{mode:virtual}': ['rate>=0'],
+    },
+    summaryTrendStats: ['avg', 'p(95)', 'p(99)', 'max'],
+};
+
+const hotKeys = ['google', 'github', 'stack', 'blog', 'test'];
+const params = { redirects: 0, timeout: '30s' };
+
+export default function () {
+    const baseUrl = __ENV.BASE_URL;
+
+    if (Math.random() < 0.9) {
+        const key = hotKeys[Math.floor(Math.random() * hotKeys.length)];
+        const res = http.get(`${baseUrl}/api/url/${key}`, params);
+        check(res, { 'status is 302': (r) => r.status === 302 });
+    } else {
+        const res = http.post(`${baseUrl}/api/url/resolve`, JSON.stringify(hotKeys),
+            { headers: { 'Content-Type': 'application/json' }, timeout: '30s' });
+        check(res, { 'status is 200': (r) => r.status === 200 });
+    }
+}
+
+export function handleSummary(data) {
+    const row = (mode) => {
+        const duration = data.metrics[`http_req_duration{mode:${mode}}`];
+        const reqs = data.metrics[`http_reqs{mode:${mode}}`];
+        const failed = data.metrics[`http_req_failed{mode:${mode}}`];
+        if (!duration || !reqs) {
+            return `${mode.padEnd(10)} | no data`;
+        }
+        return [
+            mode.padEnd(10),
+            (reqs.values.count / SCENARIO_SECONDS).toFixed(0).padStart(8),
+            duration.values['p(95)'].toFixed(1).padStart(9),
+            duration.values['p(99)'].toFixed(1).padStart(9),
+            ((failed ? failed.values.rate : 0) * 100).toFixed(2).padStart(7),
+        ].join(' | ');
+    };
+
+    const table = [
+        '',
+        '📊 Platform threads vs virtual threads',
+        'mode       |    req/s |  p95 (ms) |  p99 (ms) | err (%)',
+        row('platform'),
+        row('virtual'),
+        '',
+    ].join('\n');
+
+    return { stdout: table };
+}
@@ -0,0 +1,102 @@
+import http from 'k6/http';
+import { check } from 'k6';
+
+// Benchmark redirect MVC (Tomcat, bloquant) vs redirect réactif (reactor-netty + Lettuce réactif)
+//
+// 1. ./mvnw spring-boot:run -Dspring-boot.run.arguments="--ratelimit.ip.per-minute=0 --ratelimit.ip.per-hour=0 --ratelimit.code.per-minute=0"
+//    → MVC sur :8081, réactif sur :8090 (même JVM, mêmes Redis / PostgreSQL)
+// 2. k6 run test7.js
+//
+// Les 2 scénarios tournent l'un après l'autre avec un débit d'arrivée fixe croissant (jusqu'à 20k req/s) :
+// le nombre de VUs monte tout seul quand la latence augmente → montre où chaque stack sature.
+// Le résumé final affiche req/s, p95, p99 et erreurs par mode.
+//
+// 🚨 Résultats : NON MESURÉS — le redirect réactif n'est pas validé tant que ce script n'a pas tourné.
+//    Le script n'a jamais été exécuté : l'environnement de développement n'a ni k6, ni Redis, ni PostgreSQL
+//    (et pas d'accès réseau pour les installer). Aucun chiffre req/s / p99 n'existe pour aucun des 2 modes.
+//    À relever sur une vraie stack (docker-compose up + app), puis à reporter ici :
+//      mode       | req/s max soutenu | p95 | p99 | erreurs
+//      mvc        |         ?         |  ?  |  ?  |    ?
+//      reactive   |         ?         |  ?  |  ?  |    ?
+
+const MVC_URL = __ENV.MVC_URL || 'http://localhost:8081';
+const REACTIVE_URL = __ENV.REACTIVE_URL || 'http://localhost:8090';
+
+const stages = [
+    { duration: '30s', target: 5000 },
+    { duration: '1m', target: 20000 },
+    { duration: '30s', target: 0 },
+];
+const SCENARIO_SECONDS = 120;
+
+const scenario = (baseUrl, mode, startTime) => ({
+    executor: 'ramping-arrival-rate',
+    startRate: 500,
+    timeUnit: '1s',
+    preAllocatedVUs: 500,
+    maxVUs: 3000,
+    stages: stages,
+    startTime: startTime,
+    env: { BASE_URL: baseUrl },
+    tags: { mode: mode },
+});
+
+export let options = {
+    scenarios: {
+        mvc: scenario(MVC_URL, 'mvc', '0s'),
+        reactive: scenario(REACTIVE_URL, 'reactive', '2m30s'),
+    },
+    // Seuils "toujours vrais" : servent uniquement à créer les sous-métriques par mode
+    thresholds: {
+        'http_req_duration{mode:mvc}': ['p(99)>=0'],
+        'http_req_duration{mode:reactive}': ['p(99)>=0'],
+        'http_reqs{mode:mvc}': ['count>=0'],
+        'http_reqs{mode:reactive}': ['count>=0'],
+        'http_req_failed{mode:mvc}': ['rate>=0'],
+        'http_req_failed{mode:reactive}': ['rate>=0'],
+    },
+    summaryTrendStats: ['avg', 'p(95)', 'p(99)', 'max'],
+};
+
+// Clés chaudes (L1) + clés froides (shard Redis / DB)
+const hotKeys = ['google', 'github', 'stack', 'blog', 'test'];
+const params = { redirects: 0, timeout: '30s' };
+
+export default function () {
+    const baseUrl = __ENV.BASE_URL;
+    const key = Math.random() < 0.8
+        ? hotKeys[Math.floor(Math.random() * hotKeys.length)]
+        : `test${Math.floor(Math.random() * 1000)}`;
+
+    const res = http.get(`${baseUrl}/api/url/${key}`, params);
+    check(res, { 'status is 302 or 404': (r) => r.status === 302 || r.status === 404 });
+}
+
+export function handleSummary(data) {
+    const row = (mode) => {
+        const duration = data.metrics[`http_req_duration{mode:${mode}}`];
+        const reqs = data.metrics[`http_reqs{mode:${mode}}`];
+        const failed = data.metrics[`http_req_failed{mode:${mode}}`];
+        if (!duration || !reqs) {
+            return `${mode.padEnd(10)} | no data`;
+        }
+        return [
+            mode.padEnd(10),
+            (reqs.values.count / SCENARIO_SECONDS).toFixed(0).padStart(8),
+            duration.values['p(95)'].toFixed(1).padStart(9),
+            duration.values['p(99)'].toFixed(1).padStart(9),
+            ((failed ? failed.values.rate : 0) * 100).toFixed(2).padStart(7),
+        ].join(' | ');
+    };
+
+    const table = [
+        '',
+        '📊 Redirect MVC vs réactif',
+        'mode       |    req/s |  p95 (ms) |  p99 (ms) | err (%)',
+        row('mvc'),
+        row('reactive'),
+        '',
+    ].join('\n');
+
+    return { stdout: table };
+}